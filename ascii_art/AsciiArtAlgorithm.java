@@ -1,29 +1,93 @@
 package ascii_art;
 
+import ascii_output.AsciiOutput;
+import ascii_output.ColorAsciiOutput;
+import image.GreyShadeSource;
 import image.Image;
+import image_char_matching.BrightnessCharMapping;
+import image_char_matching.CharsetProfile;
+import image_char_matching.ConversionCancelledException;
+import image_char_matching.ConversionControl;
+import image_char_matching.KernelGreyShadeSource;
+import image_char_matching.LuminanceKernel;
+import image_char_matching.MatchingMode;
+import image_char_matching.SampledBrightness;
+import image_char_matching.SubImageGrid;
 import image_char_matching.SubImagesControl;
 import image_char_matching.SubImgCharMatcher;
 
 /**
  * The AsciiArtAlgorithm class is responsible for converting an Image object
  * into ASCII art using a given resolution and a SubImgCharMatcher for character matching.
+ * Instead of a resolution, a SubImageGrid may divide the image into independent numbers of rows and columns.
  * It utilizes the SubImagesControl class to transform the image into a 2D array of brightness values.
  * The ASCII art result is stored in a 2D char array.
+ * In brightness matching, the last grid is kept together with the mapping it was matched with, so running
+ * again after the character set was edited only matches again the cells whose brightness falls in an
+ * interval whose character changed, found through an index of the cells bucketed by brightness.
+ * A ConversionControl may be given to stop a long conversion and follow its progress, row by row, both
+ * while the sub-images are computed and while they are matched.
  */
 public class AsciiArtAlgorithm {
     /**
-     * Resolution of the ASCII art grid
+     * Number of brightness buckets in the index of cells by brightness
      */
-    private final int resolution;
+    private static final int BRIGHTNESS_BUCKETS = 4096;
+    /**
+     * Margin around a changed interval, so that rounding of its boundaries never leaves out a cell
+     */
+    private static final double INTERVAL_MARGIN = 1e-9;
+
+    /**
+     * Number of rows of the ASCII art grid
+     */
+    private final int rows;
+    /**
+     * Number of columns of the ASCII art grid
+     */
+    private final int columns;
     /**
      * 2D array to store brightness values of sub-images
      */
     private final double[][] subImagesBrightnessList;
+    /**
+     * 2D array to store the bit-packed shape masks of sub-images, used in shape matching mode
+     */
+    private final long[][][] subImagesShapeList;
+    /**
+     * 2D array to store the average colors of sub-images as packed RGB, or null if colors are not kept
+     */
+    private final int[][] subImagesColorList;
+    /**
+     * How sub-images are matched to characters
+     */
+    private final MatchingMode matchingMode;
 
     /**
      * SubImgCharMatcher for character matching
      */
-    private final SubImgCharMatcher subImgCharMatcher;
+    private SubImgCharMatcher subImgCharMatcher;
+    /**
+     * The control of the runs, or null
+     */
+    private ConversionControl conversionControl;
+
+    /**
+     * The last grid matched by brightness, or null before the first run
+     */
+    private char[][] previousAsciiArt;
+    /**
+     * The brightness to character mapping the last grid was matched with
+     */
+    private BrightnessCharMapping previousCharMapping;
+    /**
+     * Cells (row * columns + column) ordered by brightness bucket, built on the first incremental run
+     */
+    private int[] cellsByBrightness;
+    /**
+     * Index in cellsByBrightness of the first cell of every brightness bucket, followed by the number of cells
+     */
+    private int[] bucketStarts;
 
     /**
      * Constructs an AsciiArtAlgorithm object with the given Image, resolution, and SubImgCharMatcher.
@@ -33,26 +97,364 @@ public class AsciiArtAlgorithm {
      * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
      */
     public AsciiArtAlgorithm(Image image, int resolution, SubImgCharMatcher subImgCharMatcher) {
-        this.resolution = resolution;
-        // Transform the image into a 2D array of brightness values
-        subImagesBrightnessList = SubImagesControl.imageToBrightnessArray(image, resolution);
+        this(image, resolution, subImgCharMatcher, MatchingMode.BRIGHTNESS, LuminanceKernel.DOUBLE);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object with the given Image, resolution, SubImgCharMatcher,
+     * matching mode and luminance kernel.
+     *
+     * @param image               The Image object to be converted to ASCII art.
+     * @param resolution          The resolution of the ASCII art grid.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     * @param matchingMode        How sub-images are matched to characters.
+     * @param luminanceKernel     The kernel used to compute the grey shades of pixels.
+     */
+    public AsciiArtAlgorithm(Image image, int resolution, SubImgCharMatcher subImgCharMatcher,
+                             MatchingMode matchingMode, LuminanceKernel luminanceKernel) {
+        this(image, resolution, subImgCharMatcher, matchingMode, luminanceKernel, false);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object with the given Image, resolution, SubImgCharMatcher,
+     * matching mode and luminance kernel, optionally keeping the average color of every sub-image for
+     * color outputs.
+     *
+     * @param image               The Image object to be converted to ASCII art.
+     * @param resolution          The resolution of the ASCII art grid.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     * @param matchingMode        How sub-images are matched to characters.
+     * @param luminanceKernel     The kernel used to compute the grey shades of pixels.
+     * @param withColors          Whether to compute the average colors of the sub-images.
+     */
+    public AsciiArtAlgorithm(Image image, int resolution, SubImgCharMatcher subImgCharMatcher,
+                             MatchingMode matchingMode, LuminanceKernel luminanceKernel, boolean withColors) {
+        this(image, SubImageGrid.square(image.getWidth(), image.getHeight(), resolution), subImgCharMatcher,
+                matchingMode, luminanceKernel, withColors);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object with the given Image divided by a grid, SubImgCharMatcher,
+     * matching mode and luminance kernel, optionally keeping the average color of every sub-image for
+     * color outputs.
+     *
+     * @param image               The Image object to be converted to ASCII art.
+     * @param grid                The division of the image into the sub-images of the ASCII art grid.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     * @param matchingMode        How sub-images are matched to characters.
+     * @param luminanceKernel     The kernel used to compute the grey shades of pixels.
+     * @param withColors          Whether to compute the average colors of the sub-images.
+     */
+    public AsciiArtAlgorithm(Image image, SubImageGrid grid, SubImgCharMatcher subImgCharMatcher,
+                             MatchingMode matchingMode, LuminanceKernel luminanceKernel, boolean withColors) {
+        this(image, grid, subImgCharMatcher, matchingMode, luminanceKernel, withColors, null);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object with the given Image divided by a grid, SubImgCharMatcher,
+     * matching mode and luminance kernel, optionally keeping the average color of every sub-image for
+     * color outputs, under the control of the caller. The control is checked after every row of
+     * sub-images computed here and matched by the runs.
+     *
+     * @param image               The Image object to be converted to ASCII art.
+     * @param grid                The division of the image into the sub-images of the ASCII art grid.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     * @param matchingMode        How sub-images are matched to characters.
+     * @param luminanceKernel     The kernel used to compute the grey shades of pixels.
+     * @param withColors          Whether to compute the average colors of the sub-images.
+     * @param conversionControl   The control of the conversion, or null.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    public AsciiArtAlgorithm(Image image, SubImageGrid grid, SubImgCharMatcher subImgCharMatcher,
+                             MatchingMode matchingMode, LuminanceKernel luminanceKernel, boolean withColors,
+                             ConversionControl conversionControl) {
+        this(new KernelGreyShadeSource(image, luminanceKernel), grid, subImgCharMatcher, matchingMode,
+                withColors ? SubImagesControl.imageToColorArray(image, grid, conversionControl) : null,
+                conversionControl);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object from the grey shades of an image, such as a LuminancePlane
+     * computed when the image was loaded.
+     *
+     * @param greyShadeSource     The grey shades of the image to be converted to ASCII art.
+     * @param resolution          The resolution of the ASCII art grid.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     * @param matchingMode        How sub-images are matched to characters.
+     */
+    public AsciiArtAlgorithm(GreyShadeSource greyShadeSource, int resolution,
+                             SubImgCharMatcher subImgCharMatcher, MatchingMode matchingMode) {
+        this(greyShadeSource, SubImageGrid.square(greyShadeSource.getWidth(), greyShadeSource.getHeight(),
+                resolution), subImgCharMatcher, matchingMode);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object from the grey shades of an image divided by a grid.
+     *
+     * @param greyShadeSource     The grey shades of the image to be converted to ASCII art.
+     * @param grid                The division of the image into the sub-images of the ASCII art grid.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     * @param matchingMode        How sub-images are matched to characters.
+     */
+    public AsciiArtAlgorithm(GreyShadeSource greyShadeSource, SubImageGrid grid,
+                             SubImgCharMatcher subImgCharMatcher, MatchingMode matchingMode) {
+        this(greyShadeSource, grid, subImgCharMatcher, matchingMode, null, null);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object from the grey shades of an image divided by a grid, under the
+     * control of the caller. The control is checked after every row of sub-images computed here and
+     * matched by the runs.
+     *
+     * @param greyShadeSource     The grey shades of the image to be converted to ASCII art.
+     * @param grid                The division of the image into the sub-images of the ASCII art grid.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     * @param matchingMode        How sub-images are matched to characters.
+     * @param conversionControl   The control of the conversion, or null.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    public AsciiArtAlgorithm(GreyShadeSource greyShadeSource, SubImageGrid grid,
+                             SubImgCharMatcher subImgCharMatcher, MatchingMode matchingMode,
+                             ConversionControl conversionControl) {
+        this(greyShadeSource, grid, subImgCharMatcher, matchingMode, null, conversionControl);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object from the grey shades of an image and, optionally, the average
+     * colors of its sub-images.
+     *
+     * @param greyShadeSource     The grey shades of the image to be converted to ASCII art.
+     * @param grid                The division of the image into the sub-images of the ASCII art grid.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     * @param matchingMode        How sub-images are matched to characters.
+     * @param subImagesColorList  The average colors of the sub-images, or null.
+     * @param conversionControl   The control of the conversion, or null.
+     */
+    private AsciiArtAlgorithm(GreyShadeSource greyShadeSource, SubImageGrid grid,
+                              SubImgCharMatcher subImgCharMatcher, MatchingMode matchingMode,
+                              int[][] subImagesColorList, ConversionControl conversionControl) {
+        this.subImagesColorList = subImagesColorList;
+        this.conversionControl = conversionControl;
+        this.rows = grid.getRows();
+        this.columns = grid.getColumns();
+        this.matchingMode = matchingMode;
+        if (matchingMode == MatchingMode.SHAPE) {
+            // Transform the image into a 2D array of thresholded shape masks
+            subImagesShapeList = SubImagesControl.imageToShapeArray(greyShadeSource, grid, conversionControl);
+            subImagesBrightnessList = null;
+        } else {
+            // Transform the image into a 2D array of brightness values
+            subImagesBrightnessList = SubImagesControl.imageToBrightnessArray(greyShadeSource, grid,
+                    conversionControl);
+            subImagesShapeList = null;
+        }
+        this.subImgCharMatcher = subImgCharMatcher;
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object from brightness values estimated from a sample of the pixels
+     * of an image, for fast previews. Characters are matched by brightness.
+     *
+     * @param sampledBrightness   The estimated brightness of every sub-image.
+     * @param subImgCharMatcher   The SubImgCharMatcher used for character matching.
+     */
+    public AsciiArtAlgorithm(SampledBrightness sampledBrightness, SubImgCharMatcher subImgCharMatcher) {
+        this(sampledBrightness.getBrightness(), subImgCharMatcher);
+    }
+
+    /**
+     * Constructs an AsciiArtAlgorithm object from brightness values computed elsewhere, such as those
+     * aggregated from a finer grid. Characters are matched by brightness.
+     *
+     * @param subImagesBrightnessList The brightness of every sub-image, one row per row of the grid.
+     * @param subImgCharMatcher       The SubImgCharMatcher used for character matching.
+     */
+    public AsciiArtAlgorithm(double[][] subImagesBrightnessList, SubImgCharMatcher subImgCharMatcher) {
+        this.subImagesBrightnessList = subImagesBrightnessList;
+        this.rows = subImagesBrightnessList.length;
+        this.columns = rows == 0 ? 0 : subImagesBrightnessList[0].length;
+        this.matchingMode = MatchingMode.BRIGHTNESS;
+        this.subImagesShapeList = null;
+        this.subImagesColorList = null;
         this.subImgCharMatcher = subImgCharMatcher;
     }
 
     /**
      * Runs the ASCII art conversion algorithm and returns the result as a 2D char array.
+     * In brightness matching, a run after edits of the character set only matches again the cells whose
+     * brightness is in an interval whose character changed.
      *
      * @return A 2D char array representing the ASCII art.
+     * @throws ConversionCancelledException If the conversion control is cancelled or its deadline passes.
      */
     public char[][] run() {
-        char[][] asciiArt = new char[resolution][resolution];
-        // Iterate through each pixel in the ASCII art grid
-        for (int i = 0; i < resolution; i++) {
-            for (int j = 0; j < resolution; j++) {
-                // Get the character based on the brightness value using the SubImgCharMatcher
-                asciiArt[i][j] = subImgCharMatcher.getCharByImageBrightness(subImagesBrightnessList[i][j]);
+        if (matchingMode == MatchingMode.SHAPE) {
+            char[][] asciiArt = new char[rows][columns];
+            startStage();
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    // Get the character whose glyph is closest to the sub-image shape
+                    asciiArt[i][j] = subImgCharMatcher.getCharByShape(subImagesShapeList[i][j]);
+                }
+                rowsDone(i + 1);
+            }
+            return asciiArt;
+        }
+        BrightnessCharMapping charMapping = subImgCharMatcher.getCharMapping();
+        if (previousAsciiArt == null) {
+            char[][] asciiArt = new char[rows][columns];
+            startStage();
+            // Iterate through each pixel in the ASCII art grid
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    // Get the character based on the brightness value using the SubImgCharMatcher
+                    asciiArt[i][j] = subImgCharMatcher.getCharByImageBrightness(subImagesBrightnessList[i][j]);
+                }
+                rowsDone(i + 1);
             }
+            // Kept only once complete, so that a cancelled run leaves nothing half matched
+            previousAsciiArt = asciiArt;
+        } else if (charMapping != previousCharMapping) {
+            if (cellsByBrightness == null) {
+                indexCellsByBrightness();
+            }
+            for (double[] interval : subImgCharMatcher.changedBrightnessIntervals(previousCharMapping)) {
+                rematchInterval(interval[0] - INTERVAL_MARGIN, interval[1] + INTERVAL_MARGIN);
+            }
+        }
+        previousCharMapping = charMapping;
+        // Outputs may keep the grid, so hand out a copy of the one kept for the next run
+        char[][] asciiArt = new char[rows][];
+        for (int i = 0; i < rows; i++) {
+            asciiArt[i] = previousAsciiArt[i].clone();
         }
         return asciiArt;
     }
+
+    /**
+     * Runs the ASCII art conversion algorithm with the matcher of a charset profile, which is kept for
+     * later runs.
+     *
+     * @param charsetProfile The charset profile to match characters from.
+     * @return A 2D char array representing the ASCII art.
+     */
+    public char[][] run(CharsetProfile charsetProfile) {
+        setSubImgCharMatcher(charsetProfile.getMatcher());
+        return run();
+    }
+
+    /**
+     * Changes the matcher of the following runs, keeping the computed sub-images. In brightness matching,
+     * the next run only matches again the cells whose character differs between the two matchers.
+     *
+     * @param subImgCharMatcher The SubImgCharMatcher used for character matching.
+     */
+    public void setSubImgCharMatcher(SubImgCharMatcher subImgCharMatcher) {
+        this.subImgCharMatcher = subImgCharMatcher;
+    }
+
+    /**
+     * Changes the control of the following runs, such as a new deadline for every run.
+     *
+     * @param conversionControl The control of the runs, or null.
+     */
+    public void setConversionControl(ConversionControl conversionControl) {
+        this.conversionControl = conversionControl;
+    }
+
+    /**
+     * Starts the matching stage of a run on the conversion control, if there is one.
+     */
+    private void startStage() {
+        if (conversionControl != null) {
+            conversionControl.startStage(rows);
+        }
+    }
+
+    /**
+     * Records matched rows of a run on the conversion control, if there is one.
+     *
+     * @param rowsDone The number of rows matched so far.
+     */
+    private void rowsDone(int rowsDone) {
+        if (conversionControl != null) {
+            conversionControl.rowsDone(rowsDone);
+        }
+    }
+
+    /**
+     * Matches again the cells whose brightness is within an interval.
+     *
+     * @param from The lowest brightness of the interval.
+     * @param to   The highest brightness of the interval.
+     */
+    private void rematchInterval(double from, double to) {
+        int lastBucket = bucketOf(to);
+        for (int cell = bucketStarts[bucketOf(from)]; cell < bucketStarts[lastBucket + 1]; cell++) {
+            int i = cellsByBrightness[cell] / columns;
+            int j = cellsByBrightness[cell] % columns;
+            double brightness = subImagesBrightnessList[i][j];
+            if (brightness >= from && brightness <= to) {
+                previousAsciiArt[i][j] = subImgCharMatcher.getCharByImageBrightness(brightness);
+            }
+        }
+    }
+
+    /**
+     * Builds the index of the cells by brightness, by counting sort into brightness buckets.
+     */
+    private void indexCellsByBrightness() {
+        bucketStarts = new int[BRIGHTNESS_BUCKETS + 1];
+        for (double[] row : subImagesBrightnessList) {
+            for (double brightness : row) {
+                bucketStarts[bucketOf(brightness) + 1]++;
+            }
+        }
+        for (int bucket = 0; bucket < BRIGHTNESS_BUCKETS; bucket++) {
+            bucketStarts[bucket + 1] += bucketStarts[bucket];
+        }
+        int[] nextInBucket = bucketStarts.clone();
+        cellsByBrightness = new int[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                cellsByBrightness[nextInBucket[bucketOf(subImagesBrightnessList[i][j])]++] = i * columns + j;
+            }
+        }
+    }
+
+    /**
+     * Finds the bucket of a brightness value in the index of cells by brightness.
+     *
+     * @param brightness The brightness value; values outside 0 to 1 fall in the first or last bucket.
+     * @return The bucket of the brightness value.
+     */
+    private static int bucketOf(double brightness) {
+        if (!(brightness > 0)) {
+            return 0;
+        }
+        return (int) Math.min(brightness * BRIGHTNESS_BUCKETS, BRIGHTNESS_BUCKETS - 1);
+    }
+
+    /**
+     * Gets the average colors of the sub-images.
+     *
+     * @return A 2D array of packed RGB colors, or null if the colors were not computed.
+     */
+    public int[][] getSubImagesColors() {
+        return subImagesColorList;
+    }
+
+    /**
+     * Runs the ASCII art conversion algorithm and writes the result to an output, together with the
+     * sub-image colors if the output draws colors and the colors were computed.
+     *
+     * @param asciiOutput The output to write the ASCII art to.
+     */
+    public void run(AsciiOutput asciiOutput) {
+        if (subImagesColorList != null && asciiOutput instanceof ColorAsciiOutput) {
+            ((ColorAsciiOutput) asciiOutput).out(run(), subImagesColorList);
+        } else {
+            asciiOutput.out(run());
+        }
+    }
 }
\ No newline at end of file
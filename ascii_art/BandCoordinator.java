@@ -0,0 +1,301 @@
+package ascii_art;
+
+import image.Image;
+import image_char_matching.ConversionCancelledException;
+import image_char_matching.ConversionControl;
+import image_char_matching.LuminanceKernel;
+import image_char_matching.MatchingMode;
+import image_char_matching.SubImageGrid;
+
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * The BandCoordinator class converts very large image files with several local worker processes, so that no
+ * single JVM holds the whole image. The ASCII art grid is split into horizontal bands of whole rows of
+ * sub-images, every band is converted by a BandWorker process that decodes only its pixel rows, and the rows
+ * returned by the workers are merged in order. Requests and results go through the pipes of the workers.
+ * A band whose worker fails, runs out of time, or returns a malformed result, is retried in a new process.
+ * Results are read on a separate thread, so a worker that hangs before writing its whole band is stopped
+ * when its time runs out. An optional ConversionControl is told the progress as bands are merged and checked
+ * while waiting for them; if it stops the conversion, the running workers are destroyed.
+ */
+public class BandCoordinator {
+    /**
+     * Default number of attempts per band.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    /**
+     * Number of bands per worker, so that a slow band does not leave the other workers idle.
+     */
+    private static final int BANDS_PER_WORKER = 2;
+    /**
+     * Longest time a worker may take to convert its band and exit, in minutes.
+     */
+    private static final long BAND_TIMEOUT_MINUTES = 30;
+    /**
+     * Interval at which the control is checked while waiting for a band, in milliseconds.
+     */
+    private static final long CONTROL_POLL_MILLIS = 50;
+    /**
+     * Prefix of the JVM options passed on to the workers of the vectorized kernel.
+     */
+    private static final String ADD_MODULES_OPTION = "--add-modules";
+
+    /**
+     * Number of worker processes running at the same time.
+     */
+    private final int workers;
+    /**
+     * Number of attempts per band before the conversion fails.
+     */
+    private final int maxAttempts;
+    /**
+     * Number of bands that were retried in the last conversion.
+     */
+    private int retriedBands;
+
+    /**
+     * Constructs a BandCoordinator.
+     *
+     * @param workers     Number of worker processes running at the same time, at least 1.
+     * @param maxAttempts Number of attempts per band before the conversion fails, at least 1.
+     */
+    public BandCoordinator(int workers, int maxAttempts) {
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Converts an image file into ASCII art with the worker processes.
+     *
+     * @param filename     The path to the image file.
+     * @param resolution   The resolution of the ASCII art grid (its number of columns in the aspect grid).
+     * @param cellAspect   The cell aspect of the aspect grid, or 0 for the square grid.
+     * @param matchingMode How sub-images are matched to characters.
+     * @param kernel       The kernel used to compute grey shades.
+     * @param charset      The characters to match.
+     * @param control      The control of the conversion, or null.
+     * @return A 2D char array representing the ASCII art.
+     * @throws IOException                  If the image cannot be read, or a band failed in every attempt.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    public char[][] convert(String filename, int resolution, double cellAspect, MatchingMode matchingMode,
+                            LuminanceKernel kernel, char[] charset, ConversionControl control)
+            throws IOException {
+        Dimension size = Image.readSize(filename);
+        SubImageGrid grid = SubImageGrid.of(size.width, size.height, resolution, cellAspect);
+        int rows = grid.getRows();
+        int bands = Math.max(1, Math.min(rows, workers * BANDS_PER_WORKER));
+        int columns = grid.getColumns();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        ExecutorService readers = Executors.newCachedThreadPool();
+        retriedBands = 0;
+        try {
+            List<Future<char[][]>> results = new ArrayList<>();
+            for (int band = 0; band < bands; band++) {
+                int firstRow = (int) ((long) band * rows / bands);
+                int rowCount = (int) ((long) (band + 1) * rows / bands) - firstRow;
+                results.add(pool.submit(() -> convertBand(filename, resolution, cellAspect, firstRow, rowCount,
+                        columns, matchingMode, kernel, charset, readers)));
+            }
+            // Merge the bands in order
+            char[][] asciiArt = new char[rows][];
+            int row = 0;
+            if (control != null) {
+                control.startStage(rows);
+            }
+            for (Future<char[][]> result : results) {
+                for (char[] bandRow : await(result, control)) {
+                    asciiArt[row++] = bandRow;
+                }
+                if (control != null) {
+                    control.rowsDone(row);
+                }
+            }
+            return asciiArt;
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while converting " + filename);
+        } catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof IOException) {
+                throw (IOException) executionException.getCause();
+            }
+            throw new IOException(executionException.getCause());
+        } finally {
+            pool.shutdownNow();
+            readers.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a band, checking the control while waiting.
+     *
+     * @param result  The band being converted.
+     * @param control The control of the conversion, or null.
+     * @return The rows of characters of the band.
+     * @throws InterruptedException If the calling thread is interrupted.
+     * @throws ExecutionException   If the band failed in every attempt.
+     */
+    private static char[][] await(Future<char[][]> result, ConversionControl control)
+            throws InterruptedException, ExecutionException {
+        if (control == null) {
+            return result.get();
+        }
+        while (true) {
+            try {
+                return result.get(CONTROL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException timeoutException) {
+                control.check();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of bands that were retried in the last conversion.
+     *
+     * @return The number of retried bands.
+     */
+    public synchronized int getRetriedBands() {
+        return retriedBands;
+    }
+
+    /**
+     * Converts a band in a worker process, retrying in a new process until an attempt succeeds.
+     *
+     * @param filename     The path to the image file.
+     * @param resolution   The resolution of the ASCII art grid.
+     * @param cellAspect   The cell aspect of the aspect grid, or 0 for the square grid.
+     * @param firstRow     The first row of the band.
+     * @param rowCount     The number of rows in the band.
+     * @param columns      The number of columns of the grid.
+     * @param matchingMode How sub-images are matched to characters.
+     * @param kernel       The kernel used to compute grey shades.
+     * @param charset      The characters to match.
+     * @param readers      The threads that read the results of the workers.
+     * @return The rows of characters of the band.
+     * @throws IOException          If every attempt failed.
+     * @throws InterruptedException If the conversion is cancelled.
+     */
+    private char[][] convertBand(String filename, int resolution, double cellAspect, int firstRow, int rowCount,
+                                 int columns, MatchingMode matchingMode, LuminanceKernel kernel, char[] charset,
+                                 ExecutorService readers) throws IOException, InterruptedException {
+        IOException lastFailure = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                return runWorker(filename, resolution, cellAspect, firstRow, rowCount, columns, matchingMode,
+                        kernel, charset, readers);
+            } catch (IOException ioException) {
+                lastFailure = ioException;
+                Logger.getGlobal().warning(String.format("Band at row %d failed (attempt %d of %d): %s",
+                        firstRow, attempt, maxAttempts, ioException));
+                if (attempt == 1) {
+                    synchronized (this) {
+                        retriedBands++;
+                    }
+                }
+            }
+        }
+        throw new IOException("Band at row " + firstRow + " failed " + maxAttempts + " times", lastFailure);
+    }
+
+    /**
+     * Runs one worker process for a band and reads its result on a reader thread, stopping the worker if it
+     * has not written its band and exited within BAND_TIMEOUT_MINUTES.
+     *
+     * @param filename     The path to the image file.
+     * @param resolution   The resolution of the ASCII art grid.
+     * @param cellAspect   The cell aspect of the aspect grid, or 0 for the square grid.
+     * @param firstRow     The first row of the band.
+     * @param rowCount     The number of rows in the band.
+     * @param columns      The number of columns of the grid.
+     * @param matchingMode How sub-images are matched to characters.
+     * @param kernel       The kernel used to compute grey shades.
+     * @param charset      The characters to match.
+     * @param readers      The threads that read the results of the workers.
+     * @return The rows of characters of the band.
+     * @throws IOException          If the worker cannot be started, fails, runs out of time or returns a
+     *                              malformed result.
+     * @throws InterruptedException If the conversion is cancelled.
+     */
+    private static char[][] runWorker(String filename, int resolution, double cellAspect, int firstRow,
+                                      int rowCount, int columns, MatchingMode matchingMode, LuminanceKernel kernel,
+                                      char[] charset, ExecutorService readers)
+            throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(BAND_TIMEOUT_MINUTES);
+        Process process = new ProcessBuilder(workerCommand(kernel)).redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            try (DataOutputStream request = new DataOutputStream(
+                    new BufferedOutputStream(process.getOutputStream()))) {
+                BandWorker.writeRequest(request, filename, resolution, cellAspect, firstRow, rowCount,
+                        matchingMode, kernel, charset);
+            }
+            // Destroying the worker closes its output, which ends the read
+            Future<char[][]> reading = readers.submit(() -> {
+                try (DataInputStream result = new DataInputStream(
+                        new BufferedInputStream(process.getInputStream()))) {
+                    return BandWorker.readBand(result, rowCount, columns);
+                }
+            });
+            char[][] band;
+            try {
+                band = reading.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException timeoutException) {
+                throw new IOException("Worker did not return its band within " + BAND_TIMEOUT_MINUTES +
+                        " minutes");
+            } catch (ExecutionException executionException) {
+                if (executionException.getCause() instanceof IOException) {
+                    throw (IOException) executionException.getCause();
+                }
+                throw new IOException(executionException.getCause());
+            }
+            if (!process.waitFor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) ||
+                    process.exitValue() != 0) {
+                throw new IOException("Worker exited abnormally");
+            }
+            return band;
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Builds the command that starts a worker: the java executable of this JVM, with its class path and,
+     * for the vectorized kernel, its module options.
+     *
+     * @param kernel The kernel used to compute grey shades.
+     * @return The command and its arguments.
+     */
+    private static List<String> workerCommand(LuminanceKernel kernel) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (kernel == LuminanceKernel.VECTOR) {
+            for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+                if (argument.startsWith(ADD_MODULES_OPTION)) {
+                    command.add(argument);
+                }
+            }
+        }
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BandWorker.class.getName());
+        return command;
+    }
+}
@@ -0,0 +1,157 @@
+package ascii_art;
+
+import image.Image;
+import image_char_matching.KernelGreyShadeSource;
+import image_char_matching.LuminanceKernel;
+import image_char_matching.MatchingMode;
+import image_char_matching.SubImageGrid;
+import image_char_matching.SubImgCharMatcher;
+
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The BandWorker class converts one band of rows of the ASCII art grid of an image file, in a worker process
+ * started by a BandCoordinator. It reads its request from its standard input, decodes only the pixel rows of
+ * the band, and writes the rows of characters of the band to its standard output. The exit code is 0 on
+ * success, and failures are reported on the standard error.
+ * <p>
+ * The request holds, in DataOutput format: the image file name, the resolution, the cell aspect of the
+ * aspect grid (0 for the square grid), the first row and the number of rows of the band, the matching mode,
+ * the luminance kernel and the characters of the charset. The result holds the number of rows and columns,
+ * followed by the characters of every row.
+ */
+public class BandWorker {
+    /**
+     * Exit code of a failed band.
+     */
+    private static final int FAILURE_EXIT_CODE = 1;
+
+    /**
+     * Private default constructor to prevent instantiation of the class.
+     */
+    private BandWorker() {
+    }
+
+    /**
+     * Converts the band described on the standard input and writes its rows to the standard output.
+     *
+     * @param args Unused.
+     */
+    public static void main(String[] args) {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(System.in));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(System.out));
+            char[][] band = convertBand(input.readUTF(), input.readInt(), input.readDouble(), input.readInt(),
+                    input.readInt(), MatchingMode.valueOf(input.readUTF()), LuminanceKernel.valueOf(input.readUTF()),
+                    input.readUTF().toCharArray());
+            writeBand(output, band);
+            output.flush();
+        } catch (IOException | RuntimeException exception) {
+            System.err.println("Band failed: " + exception);
+            System.exit(FAILURE_EXIT_CODE);
+        }
+    }
+
+    /**
+     * Writes a band request to a worker.
+     *
+     * @param output       The standard input of the worker.
+     * @param filename     The path to the image file.
+     * @param resolution   The resolution of the ASCII art grid (its number of columns in the aspect grid).
+     * @param cellAspect   The cell aspect of the aspect grid, or 0 for the square grid.
+     * @param firstRow     The first row of the band.
+     * @param rowCount     The number of rows in the band.
+     * @param matchingMode How sub-images are matched to characters.
+     * @param kernel       The kernel used to compute grey shades.
+     * @param charset      The characters to match.
+     * @throws IOException If the request cannot be written.
+     */
+    static void writeRequest(DataOutputStream output, String filename, int resolution, double cellAspect,
+                             int firstRow, int rowCount, MatchingMode matchingMode, LuminanceKernel kernel,
+                             char[] charset) throws IOException {
+        output.writeUTF(filename);
+        output.writeInt(resolution);
+        output.writeDouble(cellAspect);
+        output.writeInt(firstRow);
+        output.writeInt(rowCount);
+        output.writeUTF(matchingMode.name());
+        output.writeUTF(kernel.name());
+        output.writeUTF(new String(charset));
+        output.flush();
+    }
+
+    /**
+     * Reads the rows of a band written by a worker. The size in the header of the result is checked against
+     * the requested band before anything is allocated, since the worker output is not trusted.
+     *
+     * @param input   The standard output of the worker.
+     * @param rows    The number of rows of the requested band.
+     * @param columns The number of columns of the grid.
+     * @return The rows of characters of the band.
+     * @throws IOException If the result is missing, malformed or not of the requested size.
+     */
+    static char[][] readBand(DataInputStream input, int rows, int columns) throws IOException {
+        int resultRows = input.readInt();
+        int resultColumns = input.readInt();
+        if (resultRows != rows || resultColumns != columns) {
+            throw new IOException("Band of " + resultRows + " by " + resultColumns + " instead of " + rows +
+                    " by " + columns);
+        }
+        char[][] band = new char[rows][columns];
+        for (char[] row : band) {
+            for (int x = 0; x < columns; x++) {
+                row[x] = input.readChar();
+            }
+        }
+        return band;
+    }
+
+    /**
+     * Writes the rows of a band.
+     *
+     * @param output The stream to write to.
+     * @param band   The rows of characters of the band.
+     * @throws IOException If the band cannot be written.
+     */
+    private static void writeBand(DataOutputStream output, char[][] band) throws IOException {
+        output.writeInt(band.length);
+        output.writeInt(band.length == 0 ? 0 : band[0].length);
+        for (char[] row : band) {
+            output.writeChars(new String(row));
+        }
+    }
+
+    /**
+     * Converts a band of rows of the grid of an image file, decoding only the pixel rows of the band.
+     *
+     * @param filename     The path to the image file.
+     * @param resolution   The resolution of the ASCII art grid.
+     * @param cellAspect   The cell aspect of the aspect grid, or 0 for the square grid.
+     * @param firstRow     The first row of the band.
+     * @param rowCount     The number of rows in the band.
+     * @param matchingMode How sub-images are matched to characters.
+     * @param kernel       The kernel used to compute grey shades.
+     * @param charset      The characters to match.
+     * @return The rows of characters of the band.
+     * @throws IOException If the image file cannot be read.
+     */
+    private static char[][] convertBand(String filename, int resolution, double cellAspect, int firstRow,
+                                        int rowCount, MatchingMode matchingMode, LuminanceKernel kernel,
+                                        char[] charset) throws IOException {
+        Dimension size = Image.readSize(filename);
+        SubImageGrid grid = SubImageGrid.of(size.width, size.height, resolution, cellAspect);
+        // The pixel rows of the image covered by the band; the rest of its sub-images is padding
+        int top = Math.max(grid.rowStart(firstRow) - grid.getTopPadding(), 0);
+        int bottom = Math.min(grid.rowEnd(firstRow + rowCount - 1) - grid.getTopPadding(), size.height);
+        Image bandImage = bottom > top ? Image.readRegion(filename, top, 0, bottom - top, size.width) :
+                new Image(new int[0], size.width, 0);
+        AsciiArtAlgorithm asciiArtAlgorithm = new AsciiArtAlgorithm(new KernelGreyShadeSource(bandImage, kernel),
+                grid.band(firstRow, rowCount, top), SubImgCharMatcher.compile(charset), matchingMode);
+        return asciiArtAlgorithm.run();
+    }
+}
@@ -0,0 +1,132 @@
+package ascii_art;
+
+import image.GreyShadeSource;
+import image.Image;
+import image_char_matching.KernelGreyShadeSource;
+import image_char_matching.LuminanceKernel;
+import image_char_matching.StripGreyShadeSource;
+
+import java.io.IOException;
+
+/**
+ * The ConversionPlan class describes how ConversionPlanner decided to load an image file: the strategy,
+ * its parameters and its estimated peak memory. It also loads the image accordingly.
+ */
+public class ConversionPlan {
+    /**
+     * The path to the image file.
+     */
+    private final String filename;
+    /**
+     * The image width, read from the file header.
+     */
+    private final int width;
+    /**
+     * The image height, read from the file header.
+     */
+    private final int height;
+    /**
+     * The chosen strategy.
+     */
+    private final ConversionStrategy strategy;
+    /**
+     * The subsampling factor of SUBSAMPLED_DECODE, 1 otherwise.
+     */
+    private final int subsampling;
+    /**
+     * The rows per strip of STRIP_STREAMING, the image height otherwise.
+     */
+    private final int stripRows;
+    /**
+     * The estimated peak memory of the conversion, in bytes.
+     */
+    private final long estimatedBytes;
+
+    /**
+     * Constructs a ConversionPlan.
+     *
+     * @param filename       The path to the image file.
+     * @param width          The image width.
+     * @param height         The image height.
+     * @param strategy       The chosen strategy.
+     * @param subsampling    The subsampling factor, 1 if not subsampled.
+     * @param stripRows      The rows per strip, the image height if not streamed.
+     * @param estimatedBytes The estimated peak memory of the conversion, in bytes.
+     */
+    ConversionPlan(String filename, int width, int height, ConversionStrategy strategy, int subsampling,
+                   int stripRows, long estimatedBytes) {
+        this.filename = filename;
+        this.width = width;
+        this.height = height;
+        this.strategy = strategy;
+        this.subsampling = subsampling;
+        this.stripRows = stripRows;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * Loads the image as planned, unless the plan streams it, in which case pixels are decoded only when
+     * the grey shades are summed.
+     *
+     * @param kernel The kernel used to compute grey shades.
+     * @return The grey shades of the image.
+     * @throws IOException If there is an issue reading the image file.
+     */
+    public GreyShadeSource load(LuminanceKernel kernel) throws IOException {
+        switch (strategy) {
+            case STRIP_STREAMING:
+                return new StripGreyShadeSource(filename, width, height, stripRows, kernel);
+            case SUBSAMPLED_DECODE:
+                return new KernelGreyShadeSource(Image.readSubsampled(filename, subsampling), kernel);
+            default:
+                return new KernelGreyShadeSource(new Image(filename), kernel);
+        }
+    }
+
+    /**
+     * Gets the chosen strategy.
+     *
+     * @return The strategy.
+     */
+    public ConversionStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Gets the subsampling factor.
+     *
+     * @return The subsampling factor, 1 if the image is not subsampled.
+     */
+    public int getSubsampling() {
+        return subsampling;
+    }
+
+    /**
+     * Gets the number of rows per strip.
+     *
+     * @return The rows per strip, the image height if the image is not streamed.
+     */
+    public int getStripRows() {
+        return stripRows;
+    }
+
+    /**
+     * Gets the estimated peak memory of the conversion.
+     *
+     * @return The estimated peak memory, in bytes.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Describes the plan.
+     *
+     * @return A description of the plan.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s of %dx%d (subsampling %d, %d rows per strip, about %d KB)", strategy, width,
+                height, subsampling, stripRows, estimatedBytes / 1024);
+    }
+}
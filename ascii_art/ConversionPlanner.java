@@ -0,0 +1,238 @@
+package ascii_art;
+
+import image.Image;
+import image_char_matching.SubImageGrid;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The ConversionPlanner class keeps image conversions within a memory budget.
+ * Before an image is decoded, the planner reads its dimensions from the file header, estimates the peak
+ * memory of every ConversionStrategy, and picks the first one that fits the budget: a full decode, else
+ * streaming strips of rows as tall as the budget allows, else decoding a subsampled image. If none fits,
+ * the job is rejected with a MemoryBudgetException.
+ * Conversions that run at the same time share the budget: admit blocks a planned job until enough of the
+ * budget is released by earlier jobs, so jobs that fit the budget on their own are queued rather than
+ * rejected.
+ * Every decision is logged, and the planner counts planned, rejected and queued jobs and the memory held.
+ */
+public class ConversionPlanner {
+    /**
+     * Bytes per pixel of a decoded image together with its packed RGB copy in an Image.
+     */
+    private static final long BYTES_PER_DECODED_PIXEL = 8;
+    /**
+     * Bytes per sub-image of the brightness or shape grid and the ASCII art grid.
+     */
+    private static final long BYTES_PER_SUB_IMAGE = 64;
+    /**
+     * Bytes per kilobyte, for log messages.
+     */
+    private static final long BYTES_PER_KILOBYTE = 1024;
+
+    /**
+     * The memory budget shared by all conversions, in bytes.
+     */
+    private final long memoryBudget;
+    /**
+     * The memory held by admitted conversions, in bytes.
+     */
+    private long reservedBytes;
+    /**
+     * The most memory ever held by admitted conversions at the same time, in bytes.
+     */
+    private long peakReservedBytes;
+    /**
+     * The number of jobs planned with each strategy.
+     */
+    private final Map<ConversionStrategy, Long> plannedJobs = new EnumMap<>(ConversionStrategy.class);
+    /**
+     * The number of jobs rejected since no strategy fits the budget.
+     */
+    private long rejectedJobs;
+    /**
+     * The number of jobs that had to wait for memory to be released.
+     */
+    private long queuedJobs;
+
+    /**
+     * Constructs a ConversionPlanner.
+     *
+     * @param memoryBudget The memory budget shared by all conversions, in bytes.
+     */
+    public ConversionPlanner(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        for (ConversionStrategy strategy : ConversionStrategy.values()) {
+            plannedJobs.put(strategy, 0L);
+        }
+    }
+
+    /**
+     * Plans the conversion of an image file at the given resolution and grid, reading only the header of
+     * the file. The plan holds only for that grid: the memory of the grid and the rows per strip depend on
+     * it, so the image must be planned again when the resolution or the grid changes.
+     *
+     * @param filename   The path to the image file.
+     * @param resolution The resolution of the ASCII art grid.
+     * @param cellAspect The cell aspect of the aspect grid, or 0 for the square grid.
+     * @return The plan with the first strategy that fits the budget.
+     * @throws MemoryBudgetException If no strategy fits the budget.
+     * @throws IOException           If the header of the image file cannot be read.
+     */
+    public ConversionPlan plan(String filename, int resolution, double cellAspect) throws IOException {
+        Dimension size = Image.readSize(filename);
+        int width = size.width;
+        int height = size.height;
+        SubImageGrid grid = SubImageGrid.of(width, height, resolution, cellAspect);
+        long gridBytes = (long) grid.getRows() * grid.getColumns() * BYTES_PER_SUB_IMAGE;
+        long rowBytes = width * BYTES_PER_DECODED_PIXEL;
+        ConversionPlan plan = null;
+
+        long fullDecodeBytes = height * rowBytes + gridBytes;
+        if (fullDecodeBytes <= memoryBudget) {
+            plan = new ConversionPlan(filename, width, height, ConversionStrategy.FULL_DECODE, 1, height,
+                    fullDecodeBytes);
+        }
+
+        // Strips hold whole rows of sub-images, so that every strip is decoded once
+        int subImageRows = 1;
+        for (int row = 0; row < grid.getRows(); row++) {
+            subImageRows = Math.max(subImageRows, grid.rowEnd(row) - grid.rowStart(row));
+        }
+        long stripRows = Math.max(0, memoryBudget - gridBytes) / rowBytes / subImageRows * subImageRows;
+        if (plan == null && stripRows > 0) {
+            int rows = (int) Math.min(stripRows, height);
+            plan = new ConversionPlan(filename, width, height, ConversionStrategy.STRIP_STREAMING, 1, rows,
+                    rows * rowBytes + gridBytes);
+        }
+
+        // The subsampled image must still hold at least one pixel per sub-image in both directions
+        for (int factor = 2; plan == null; factor++) {
+            int subsampledWidth = (width + factor - 1) / factor;
+            int subsampledHeight = (height + factor - 1) / factor;
+            if (SubImageGrid.maxResolution(subsampledWidth, subsampledHeight, cellAspect) < resolution) {
+                break;
+            }
+            long subsampledBytes = (long) subsampledWidth * subsampledHeight * BYTES_PER_DECODED_PIXEL +
+                    gridBytes;
+            if (subsampledBytes <= memoryBudget) {
+                plan = new ConversionPlan(filename, width, height, ConversionStrategy.SUBSAMPLED_DECODE,
+                        factor, subsampledHeight, subsampledBytes);
+            }
+        }
+
+        synchronized (this) {
+            if (plan == null) {
+                rejectedJobs++;
+                Logger.getGlobal().warning(String.format("Rejected \"%s\" (%dx%d): needs %d KB, budget %d KB",
+                        filename, width, height, fullDecodeBytes / BYTES_PER_KILOBYTE,
+                        memoryBudget / BYTES_PER_KILOBYTE));
+                throw new MemoryBudgetException("Image does not fit the memory budget: " + filename);
+            }
+            plannedJobs.merge(plan.getStrategy(), 1L, Long::sum);
+        }
+        Logger.getGlobal().info(String.format("Planned \"%s\": %s", filename, plan));
+        return plan;
+    }
+
+    /**
+     * Admits a planned conversion, waiting until enough of the budget is free for its estimated memory.
+     * The memory is held until released.
+     *
+     * @param plan The planned conversion.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void admit(ConversionPlan plan) throws InterruptedException {
+        if (reservedBytes + plan.getEstimatedBytes() > memoryBudget) {
+            queuedJobs++;
+            Logger.getGlobal().info(String.format("Queued %s, %d KB of the budget in use", plan,
+                    reservedBytes / BYTES_PER_KILOBYTE));
+            while (reservedBytes + plan.getEstimatedBytes() > memoryBudget) {
+                wait();
+            }
+        }
+        reservedBytes += plan.getEstimatedBytes();
+        peakReservedBytes = Math.max(peakReservedBytes, reservedBytes);
+    }
+
+    /**
+     * Releases the memory of an admitted conversion, once its image is no longer held.
+     *
+     * @param plan The admitted conversion.
+     */
+    public synchronized void release(ConversionPlan plan) {
+        reservedBytes -= plan.getEstimatedBytes();
+        notifyAll();
+    }
+
+    /**
+     * Gets the memory budget.
+     *
+     * @return The memory budget, in bytes.
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Gets the memory held by admitted conversions.
+     *
+     * @return The memory held, in bytes.
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Gets the most memory ever held by admitted conversions at the same time.
+     *
+     * @return The peak memory held, in bytes.
+     */
+    public synchronized long getPeakReservedBytes() {
+        return peakReservedBytes;
+    }
+
+    /**
+     * Gets the number of jobs planned with a strategy.
+     *
+     * @param strategy The strategy.
+     * @return The number of jobs.
+     */
+    public synchronized long getPlannedJobs(ConversionStrategy strategy) {
+        return plannedJobs.get(strategy);
+    }
+
+    /**
+     * Gets the number of jobs rejected since no strategy fits the budget.
+     *
+     * @return The number of rejected jobs.
+     */
+    public synchronized long getRejectedJobs() {
+        return rejectedJobs;
+    }
+
+    /**
+     * Gets the number of jobs that had to wait for memory to be released.
+     *
+     * @return The number of queued jobs.
+     */
+    public synchronized long getQueuedJobs() {
+        return queuedJobs;
+    }
+
+    /**
+     * Describes the metrics of the planner.
+     *
+     * @return A description of the metrics.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("budget %d KB, in use %d KB, peak %d KB, planned %s, rejected %d, queued %d",
+                memoryBudget / BYTES_PER_KILOBYTE, reservedBytes / BYTES_PER_KILOBYTE,
+                peakReservedBytes / BYTES_PER_KILOBYTE, plannedJobs, rejectedJobs, queuedJobs);
+    }
+}
@@ -0,0 +1,22 @@
+package ascii_art;
+
+/**
+ * The ConversionStrategy enum lists the ways an image file can be loaded for conversion, in the order in
+ * which ConversionPlanner prefers them, with the peak memory each one needs.
+ */
+public enum ConversionStrategy {
+    /**
+     * Decode the whole image at once. Fastest, and keeps the colors of the image.
+     */
+    FULL_DECODE,
+    /**
+     * Decode horizontal strips of rows one after the other, holding a single strip in memory. Gives the same
+     * result as FULL_DECODE, at the cost of decoding the file once per strip.
+     */
+    STRIP_STREAMING,
+    /**
+     * Decode only every n-th pixel of every n-th row. Needs the least memory, but the result is an
+     * approximation of the full image.
+     */
+    SUBSAMPLED_DECODE
+}
@@ -0,0 +1,281 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import ascii_output.ColorAsciiOutput;
+import image.FrameSource;
+import image.Image;
+import image_char_matching.ConversionControl;
+import image_char_matching.LuminanceKernel;
+import image_char_matching.MatchingMode;
+import image_char_matching.SubImageGrid;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The FramePipeline class converts every frame of an animation into ASCII art.
+ * Decoding, brightness computation and character matching run as separate stages connected by bounded
+ * queues, so that consecutive frames are processed on different cores at the same time while the memory
+ * held by frames in flight stays bounded. Frames are divided by the square grid or by an aspect grid, as
+ * single images are. A single SubImgCharMatcher is shared by all frames, and the frames are written to the
+ * output in order. An optional ConversionControl is checked while waiting for
+ * every frame and after every row of its character matching, and stopping it shuts the stages down.
+ */
+public class FramePipeline {
+    /**
+     * Default number of frames that may wait between two stages.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /**
+     * Interval at which the control is checked while waiting for a frame, in milliseconds.
+     */
+    private static final long CONTROL_POLL_MILLIS = 50;
+
+    /**
+     * The frames to convert.
+     */
+    private final FrameSource frameSource;
+    /**
+     * Resolution of the ASCII art grid.
+     */
+    private final int resolution;
+    /**
+     * The cell aspect of the aspect grid, or 0 for the square grid.
+     */
+    private final double cellAspect;
+    /**
+     * SubImgCharMatcher shared by all frames.
+     */
+    private final SubImgCharMatcher subImgCharMatcher;
+    /**
+     * How sub-images are matched to characters.
+     */
+    private final MatchingMode matchingMode;
+    /**
+     * The kernel used to compute grey shades.
+     */
+    private final LuminanceKernel luminanceKernel;
+    /**
+     * Where every converted frame is written.
+     */
+    private final AsciiOutput asciiOutput;
+    /**
+     * Number of frames that may wait between two stages.
+     */
+    private final int queueCapacity;
+    /**
+     * The control of the run, or null.
+     */
+    private final ConversionControl conversionControl;
+
+    /**
+     * Number of frames converted by the last run.
+     */
+    private int framesConverted;
+    /**
+     * Duration of the last run, in nanoseconds.
+     */
+    private long elapsedNanos;
+
+    /**
+     * Constructs a FramePipeline.
+     *
+     * @param frameSource       The frames to convert.
+     * @param resolution        The resolution of the ASCII art grid.
+     * @param cellAspect        The cell aspect of the aspect grid, or 0 for the square grid.
+     * @param subImgCharMatcher The SubImgCharMatcher shared by all frames.
+     * @param matchingMode      How sub-images are matched to characters.
+     * @param luminanceKernel   The kernel used to compute grey shades.
+     * @param asciiOutput       Where every converted frame is written.
+     * @param queueCapacity     Number of frames that may wait between two stages.
+     * @param conversionControl The control of the run, or null.
+     */
+    public FramePipeline(FrameSource frameSource, int resolution, double cellAspect,
+                         SubImgCharMatcher subImgCharMatcher, MatchingMode matchingMode,
+                         LuminanceKernel luminanceKernel, AsciiOutput asciiOutput, int queueCapacity,
+                         ConversionControl conversionControl) {
+        this.frameSource = frameSource;
+        this.resolution = resolution;
+        this.cellAspect = cellAspect;
+        this.subImgCharMatcher = subImgCharMatcher;
+        this.matchingMode = matchingMode;
+        this.luminanceKernel = luminanceKernel;
+        this.asciiOutput = asciiOutput;
+        this.queueCapacity = queueCapacity;
+        this.conversionControl = conversionControl;
+    }
+
+    /**
+     * Runs the pipeline until every frame has been written. Decoding and brightness computation run on
+     * their own threads, and character matching and output run on the calling thread. The first frame is
+     * decoded and checked against the resolution before the stages start.
+     *
+     * @return The number of frames converted.
+     * @throws IOException              If a frame cannot be decoded.
+     * @throws InterruptedException     If the calling thread is interrupted before every frame is written.
+     * @throws IllegalArgumentException If a frame is too small or too wide for the resolution.
+     * @throws image_char_matching.ConversionCancelledException If the run is cancelled or runs past its
+     *                                                          deadline.
+     */
+    public int run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        framesConverted = 0;
+        Image firstFrame = frameSource.nextFrame();
+        if (firstFrame == null) {
+            elapsedNanos = System.nanoTime() - start;
+            return framesConverted;
+        }
+        checkResolution(firstFrame, resolution, cellAspect);
+        BlockingQueue<Optional<Image>> decodedFrames = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Optional<AsciiArtAlgorithm>> measuredFrames = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> decoding = stages.submit(() -> decodeFrames(firstFrame, decodedFrames));
+            Future<?> measuring = stages.submit(() -> measureFrames(decodedFrames, measuredFrames));
+            Optional<AsciiArtAlgorithm> frame = takeMeasuredFrame(measuredFrames);
+            while (frame.isPresent()) {
+                frame.get().setConversionControl(conversionControl);
+                frame.get().run(asciiOutput);
+                framesConverted++;
+                frame = takeMeasuredFrame(measuredFrames);
+            }
+            // Join the brightness stage first: if it failed, decoding may be blocked on a full queue that
+            // nobody drains any more, and is interrupted by the shutdown below instead of being joined
+            measuring.get();
+            decoding.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            stages.shutdownNow();
+            elapsedNanos = System.nanoTime() - start;
+        }
+        return framesConverted;
+    }
+
+    /**
+     * Waits for the next frame ready for character matching, checking the control while waiting.
+     *
+     * @param measuredFrames The queue of frames ready for character matching.
+     * @return The next frame, or empty at the end of the frames.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    private Optional<AsciiArtAlgorithm> takeMeasuredFrame(BlockingQueue<Optional<AsciiArtAlgorithm>> measuredFrames)
+            throws InterruptedException {
+        if (conversionControl == null) {
+            return measuredFrames.take();
+        }
+        Optional<AsciiArtAlgorithm> frame = measuredFrames.poll(CONTROL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        while (frame == null) {
+            conversionControl.check();
+            frame = measuredFrames.poll(CONTROL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return frame;
+    }
+
+    /**
+     * Checks that a frame can be converted at a resolution of a grid, within the same bounds as single
+     * images.
+     *
+     * @param frame      The frame.
+     * @param resolution The resolution of the ASCII art grid.
+     * @param cellAspect The cell aspect of the aspect grid, or 0 for the square grid.
+     * @throws IllegalArgumentException If the frame is too small or too wide for the resolution.
+     */
+    public static void checkResolution(Image frame, int resolution, double cellAspect) {
+        int minResolution = SubImageGrid.minResolution(frame.getWidth(), frame.getHeight(), cellAspect);
+        int maxResolution = SubImageGrid.maxResolution(frame.getWidth(), frame.getHeight(), cellAspect);
+        if (resolution > maxResolution || resolution < minResolution) {
+            throw new IllegalArgumentException(String.format(
+                    "Resolution %d outside of %d to %d for a %dx%d frame", resolution, minResolution,
+                    maxResolution, frame.getWidth(), frame.getHeight()));
+        }
+    }
+
+    /**
+     * Gets the throughput of the last run.
+     *
+     * @return The number of frames converted per second.
+     */
+    public double getFramesPerSecond() {
+        return elapsedNanos == 0 ? 0 : framesConverted * NANOS_PER_SECOND / elapsedNanos;
+    }
+
+    /**
+     * Decoding stage: queues the first frame and the frames after it, followed by an end marker.
+     *
+     * @param firstFrame    The first frame, already decoded.
+     * @param decodedFrames The queue of decoded frames.
+     * @return Nothing; declared so that the stage may throw IOException.
+     * @throws IOException          If a frame cannot be decoded.
+     * @throws InterruptedException If the pipeline is shut down.
+     */
+    private Void decodeFrames(Image firstFrame, BlockingQueue<Optional<Image>> decodedFrames)
+            throws IOException, InterruptedException {
+        try {
+            Image frame = firstFrame;
+            while (frame != null) {
+                decodedFrames.put(Optional.of(frame));
+                frame = frameSource.nextFrame();
+            }
+        } catch (IOException | RuntimeException e) {
+            // End the stream, so that the next stages finish even if decoding failed. A shut down pipeline
+            // is not ended: nobody may be reading the queue any more
+            decodedFrames.put(Optional.empty());
+            throw e;
+        }
+        decodedFrames.put(Optional.empty());
+        return null;
+    }
+
+    /**
+     * Brightness stage: computes the brightness (or shape) grid of every decoded frame, and its sub-image
+     * colors if the output draws colors.
+     *
+     * @param decodedFrames  The queue of decoded frames.
+     * @param measuredFrames The queue of frames ready for character matching.
+     * @return Nothing; declared so that the stage may throw InterruptedException.
+     * @throws InterruptedException     If the pipeline is shut down.
+     * @throws IllegalArgumentException If a frame is too small or too wide for the resolution.
+     */
+    private Void measureFrames(BlockingQueue<Optional<Image>> decodedFrames,
+                               BlockingQueue<Optional<AsciiArtAlgorithm>> measuredFrames)
+            throws InterruptedException {
+        boolean withColors = asciiOutput instanceof ColorAsciiOutput &&
+                ((ColorAsciiOutput) asciiOutput).drawsColors();
+        try {
+            Optional<Image> frame = decodedFrames.take();
+            while (frame.isPresent()) {
+                // Frames of an image sequence may differ in size
+                checkResolution(frame.get(), resolution, cellAspect);
+                SubImageGrid grid = SubImageGrid.of(frame.get().getWidth(), frame.get().getHeight(), resolution,
+                        cellAspect);
+                measuredFrames.put(Optional.of(new AsciiArtAlgorithm(frame.get(), grid, subImgCharMatcher,
+                        matchingMode, luminanceKernel, withColors)));
+                frame = decodedFrames.take();
+            }
+        } catch (RuntimeException e) {
+            measuredFrames.put(Optional.empty());
+            throw e;
+        }
+        measuredFrames.put(Optional.empty());
+        return null;
+    }
+}
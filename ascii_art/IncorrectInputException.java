@@ -7,6 +7,10 @@ package ascii_art;
  * input validation in the ASCII art application.
  */
 public class IncorrectInputException extends Exception {
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
 
     /**
      * Constructs an IncorrectInputException with the specified error message.
@@ -0,0 +1,175 @@
+package ascii_art;
+
+import image.Image;
+import image_char_matching.KernelGreyShadeSource;
+import image_char_matching.LuminanceKernel;
+import image_char_matching.MatchingMode;
+import image_char_matching.SubImgCharMatcher;
+
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * The LatencyModel class predicts how long converting an image takes at a given resolution, so that the
+ * highest resolution that fits a latency budget can be chosen before converting.
+ * A conversion has two stages. The brightness stage reads every pixel once and does some work per
+ * sub-image, so it costs a per-pixel cost times the pixels plus a per-sub-image cost times the cells of the
+ * grid. Character matching and output cost a fixed cost (handing the grid to the output) plus a per-cell
+ * cost times the cells. The cells are counted on the actual grid, rows times columns, which is not
+ * resolution^2 for the aspect grid. The costs of each stage are fitted to a calibration on a synthetic
+ * image and then to every measured conversion, newer measurements weighing more, so the model follows the
+ * actual machine, charset, kernel and output.
+ */
+public class LatencyModel {
+    /**
+     * Width and height of the calibration image.
+     */
+    private static final int CALIBRATION_IMAGE_SIZE = 512;
+    /**
+     * The resolutions of the calibration, whose difference separates the two costs of each stage.
+     */
+    private static final int[] CALIBRATION_RESOLUTIONS = {32, 128};
+    /**
+     * Number of untimed calibration runs, so that the timed ones run compiled code.
+     */
+    private static final int CALIBRATION_WARMUP = 3;
+    /**
+     * Seed of the calibration image.
+     */
+    private static final long SEED = 42;
+    /**
+     * Weight of a new measurement against all the older ones.
+     */
+    private static final double UPDATE_WEIGHT = 0.3;
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Cost of the brightness stage, per pixel and per sub-image.
+     */
+    private final StageCost brightnessCost = new StageCost(UPDATE_WEIGHT);
+    /**
+     * Cost of matching and output, per grid and per cell.
+     */
+    private final StageCost matchingCost = new StageCost(UPDATE_WEIGHT);
+
+    /**
+     * Calibrates a LatencyModel by converting a synthetic image at two resolutions.
+     *
+     * @param subImgCharMatcher The SubImgCharMatcher used for character matching.
+     * @param matchingMode      How sub-images are matched to characters.
+     * @param luminanceKernel   The kernel used to compute grey shades.
+     * @return The calibrated model.
+     */
+    public static LatencyModel calibrate(SubImgCharMatcher subImgCharMatcher, MatchingMode matchingMode,
+                                         LuminanceKernel luminanceKernel) {
+        int[] pixels = new int[CALIBRATION_IMAGE_SIZE * CALIBRATION_IMAGE_SIZE];
+        Random random = new Random(SEED);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() | 0xFF000000;
+        }
+        KernelGreyShadeSource source = new KernelGreyShadeSource(
+                new Image(pixels, CALIBRATION_IMAGE_SIZE, CALIBRATION_IMAGE_SIZE), luminanceKernel);
+        LatencyModel latencyModel = new LatencyModel();
+        for (int run = 0; run <= CALIBRATION_WARMUP; run++) {
+            for (int resolution : CALIBRATION_RESOLUTIONS) {
+                long start = System.nanoTime();
+                AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(source, resolution, subImgCharMatcher,
+                        matchingMode);
+                long measured = System.nanoTime();
+                algorithm.run();
+                long end = System.nanoTime();
+                if (run == CALIBRATION_WARMUP) {
+                    // The square grid of a square image
+                    latencyModel.update(CALIBRATION_IMAGE_SIZE, CALIBRATION_IMAGE_SIZE,
+                            (long) resolution * resolution, measured - start, end - measured);
+                }
+            }
+        }
+        return latencyModel;
+    }
+
+    /**
+     * Predicts the duration of converting an image.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @param cells  The number of cells of the grid, rows times columns.
+     * @return The predicted duration, in milliseconds.
+     */
+    public double predictMillis(int width, int height, long cells) {
+        return brightnessCost.predict((double) width * height, cells) / NANOS_PER_MILLI +
+                predictMatchingMillis(cells);
+    }
+
+    /**
+     * Predicts the duration of matching and output alone, for a conversion whose sub-images are already
+     * computed.
+     *
+     * @param cells The number of cells of the grid, rows times columns.
+     * @return The predicted duration, in milliseconds.
+     */
+    public double predictMatchingMillis(long cells) {
+        return matchingCost.predict(1, cells) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Chooses the highest power of two resolution between the given bounds whose predicted duration fits
+     * the latency budget, or the lowest resolution if none does.
+     *
+     * @param width         The width of the image.
+     * @param height        The height of the image.
+     * @param minResolution The lowest allowed resolution, a power of two.
+     * @param maxResolution The highest allowed resolution, a power of two.
+     * @param budgetMillis  The latency budget, in milliseconds.
+     * @param cellCount     The number of cells of the grid at a resolution.
+     * @return The chosen resolution.
+     */
+    public int chooseResolution(int width, int height, int minResolution, int maxResolution,
+                                double budgetMillis, IntToLongFunction cellCount) {
+        int resolution = minResolution;
+        while (resolution * 2 <= maxResolution &&
+                predictMillis(width, height, cellCount.applyAsLong(resolution * 2)) <= budgetMillis) {
+            resolution *= 2;
+        }
+        return resolution;
+    }
+
+    /**
+     * Updates the costs from a measured conversion.
+     *
+     * @param width           The width of the image.
+     * @param height          The height of the image.
+     * @param cells           The number of cells of the grid, rows times columns.
+     * @param brightnessNanos The measured duration of the brightness stage, in nanoseconds.
+     * @param matchingNanos   The measured duration of matching and output, in nanoseconds.
+     */
+    public void update(int width, int height, long cells, long brightnessNanos, long matchingNanos) {
+        brightnessCost.add((double) width * height, cells, brightnessNanos);
+        updateMatching(cells, matchingNanos);
+    }
+
+    /**
+     * Updates the cost of matching and output from a measured conversion whose sub-images were already
+     * computed.
+     *
+     * @param cells         The number of cells of the grid, rows times columns.
+     * @param matchingNanos The measured duration of matching and output, in nanoseconds.
+     */
+    public void updateMatching(long cells, long matchingNanos) {
+        matchingCost.add(1, cells, matchingNanos);
+    }
+
+    /**
+     * Describes the costs of the model.
+     *
+     * @return A description of the costs.
+     */
+    @Override
+    public String toString() {
+        return String.format("brightness: %s ns per pixel and sub-image, matching: %s ns per grid and cell",
+                brightnessCost, matchingCost);
+    }
+}
@@ -0,0 +1,23 @@
+package ascii_art;
+
+import java.io.IOException;
+
+/**
+ * The MemoryBudgetException class is thrown by ConversionPlanner when no strategy can convert an image
+ * within the memory budget.
+ */
+public class MemoryBudgetException extends IOException {
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a MemoryBudgetException with the specified error message.
+     *
+     * @param errorMessage A String representing the error message associated with the exception.
+     */
+    public MemoryBudgetException(String errorMessage) {
+        super(errorMessage);
+    }
+}
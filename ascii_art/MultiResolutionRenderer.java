@@ -0,0 +1,215 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import image.GreyShadeSource;
+import image_char_matching.ConversionCancelledException;
+import image_char_matching.ConversionControl;
+import image_char_matching.MatchingMode;
+import image_char_matching.SubImageGrid;
+import image_char_matching.SubImagesControl;
+import image_char_matching.SubImgCharMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+
+/**
+ * The MultiResolutionRenderer class converts one image at several resolutions and writes every conversion
+ * to several outputs in a single call. In brightness matching, the pixels are read once, for the finest
+ * grid, and the grey shade sums of every coarser grid whose sub-images are unions of finer sub-images (such
+ * as the square grids of smaller powers of 2) are added up from the nearest finer grid, so the total cost is
+ * close to that of the finest conversion alone. Grids that do not nest, and shape matching, read the pixels
+ * again.
+ * Character matching of every resolution runs in parallel, and every output target writes its
+ * resolutions in order on its own thread, so that slow outputs do not hold back the others.
+ * An optional ConversionControl follows the pixel reading, which runs on the calling thread, and is checked
+ * while waiting for the other threads; if it stops the render, the matching of every resolution is
+ * cancelled within a row.
+ */
+public class MultiResolutionRenderer {
+    /**
+     * Interval at which the control is checked while waiting for other threads, in milliseconds.
+     */
+    private static final long CONTROL_POLL_MILLIS = 50;
+
+    /**
+     * SubImgCharMatcher shared by all resolutions.
+     */
+    private final SubImgCharMatcher subImgCharMatcher;
+    /**
+     * How sub-images are matched to characters.
+     */
+    private final MatchingMode matchingMode;
+    /**
+     * The cell aspect of the aspect grid, or 0 for the square grid.
+     */
+    private final double cellAspect;
+
+    /**
+     * Number of resolutions of the last render whose brightness was aggregated from a finer grid.
+     */
+    private int aggregatedResolutions;
+
+    /**
+     * Constructs a MultiResolutionRenderer.
+     *
+     * @param subImgCharMatcher The SubImgCharMatcher shared by all resolutions.
+     * @param matchingMode      How sub-images are matched to characters.
+     * @param cellAspect        The cell aspect of the aspect grid, or 0 for the square grid.
+     */
+    public MultiResolutionRenderer(SubImgCharMatcher subImgCharMatcher, MatchingMode matchingMode,
+                                   double cellAspect) {
+        this.subImgCharMatcher = subImgCharMatcher;
+        this.matchingMode = matchingMode;
+        this.cellAspect = cellAspect;
+    }
+
+    /**
+     * Converts an image at every resolution and writes every conversion to every target. A target creates
+     * the output of a resolution, so file targets can name their files after it; the outputs of a target
+     * are written in the order of the resolutions, and different targets are written at the same time.
+     *
+     * @param source      The grey shades of the image.
+     * @param resolutions The resolutions to convert at, without duplicates.
+     * @param targets     The targets, each creating the output of a given resolution.
+     * @param control     The control of the render, or null.
+     * @return The ASCII art of every resolution, in the order of the resolutions.
+     * @throws InterruptedException         If the calling thread is interrupted while waiting for the outputs.
+     * @throws ConversionCancelledException If the render is cancelled or runs past its deadline.
+     */
+    public Map<Integer, char[][]> render(GreyShadeSource source, int[] resolutions,
+                                         List<IntFunction<AsciiOutput>> targets, ConversionControl control)
+            throws InterruptedException {
+        SubImageGrid[] grids = new SubImageGrid[resolutions.length];
+        Integer[] finestFirst = new Integer[resolutions.length];
+        for (int i = 0; i < resolutions.length; i++) {
+            grids[i] = SubImageGrid.of(source.getWidth(), source.getHeight(), resolutions[i], cellAspect);
+            finestFirst[i] = i;
+        }
+        Arrays.sort(finestFirst, Comparator.comparingLong(
+                (Integer i) -> (long) grids[i].getRows() * grids[i].getColumns()).reversed());
+        aggregatedResolutions = 0;
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        // Every matching thread has a control of its own, since a control belongs to one thread
+        List<ConversionControl> matchingControls = new ArrayList<>();
+        try {
+            List<Future<char[][]>> conversions = new ArrayList<>(Collections.nCopies(resolutions.length, null));
+            double[][][] sums = new double[resolutions.length][][];
+            for (int k = 0; k < finestFirst.length; k++) {
+                int i = finestFirst[k];
+                SubImageGrid grid = grids[i];
+                ConversionControl matchingControl = new ConversionControl();
+                matchingControls.add(matchingControl);
+                if (matchingMode != MatchingMode.BRIGHTNESS) {
+                    conversions.set(i, executor.submit(() -> new AsciiArtAlgorithm(source, grid,
+                            subImgCharMatcher, matchingMode, matchingControl).run()));
+                    continue;
+                }
+                // Sum the nearest finer grid that nests, and read the pixels only if none does
+                for (int finer = k - 1; finer >= 0 && sums[i] == null; finer--) {
+                    sums[i] = SubImagesControl.aggregateGreyShadeSums(sums[finestFirst[finer]],
+                            grids[finestFirst[finer]], grid);
+                }
+                if (sums[i] == null) {
+                    sums[i] = SubImagesControl.imageToGreyShadeSums(source, grid, control);
+                } else {
+                    aggregatedResolutions++;
+                }
+                double[][] gridSums = sums[i];
+                conversions.set(i, executor.submit(() -> {
+                    AsciiArtAlgorithm asciiArtAlgorithm = new AsciiArtAlgorithm(
+                            SubImagesControl.greyShadeSumsToBrightnessArray(gridSums, grid), subImgCharMatcher);
+                    asciiArtAlgorithm.setConversionControl(matchingControl);
+                    return asciiArtAlgorithm.run();
+                }));
+            }
+            List<Future<?>> writes = new ArrayList<>();
+            for (IntFunction<AsciiOutput> target : targets) {
+                writes.add(executor.submit(() -> write(target, resolutions, conversions)));
+            }
+            Map<Integer, char[][]> asciiArts = new LinkedHashMap<>();
+            for (int i = 0; i < resolutions.length; i++) {
+                asciiArts.put(resolutions[i], await(conversions.get(i), control));
+            }
+            for (Future<?> write : writes) {
+                await(write, control);
+            }
+            return asciiArts;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            // Stops the matching still running if the render stopped early
+            for (ConversionControl matchingControl : matchingControls) {
+                matchingControl.cancel();
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the result of work running on another thread, checking the control while waiting.
+     *
+     * @param future  The work.
+     * @param control The control of the render, or null.
+     * @param <T>     The type of the result.
+     * @return The result.
+     * @throws InterruptedException If the calling thread is interrupted.
+     * @throws ExecutionException   If the work failed.
+     */
+    private static <T> T await(Future<T> future, ConversionControl control)
+            throws InterruptedException, ExecutionException {
+        if (control == null) {
+            return future.get();
+        }
+        while (true) {
+            try {
+                return future.get(CONTROL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException timeoutException) {
+                control.check();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of resolutions of the last render whose brightness was aggregated from a finer grid
+     * instead of being read from the pixels.
+     *
+     * @return The number of aggregated resolutions.
+     */
+    public int getAggregatedResolutions() {
+        return aggregatedResolutions;
+    }
+
+    /**
+     * Writes every resolution to the outputs of one target, in order, as soon as each is converted.
+     *
+     * @param target      The target, creating the output of a given resolution.
+     * @param resolutions The resolutions.
+     * @param conversions The pending conversions, one per resolution.
+     * @return Nothing; declared so that the write may throw checked exceptions.
+     * @throws InterruptedException If the render is shut down.
+     * @throws ExecutionException   If a conversion failed.
+     */
+    private static Void write(IntFunction<AsciiOutput> target, int[] resolutions,
+                              List<Future<char[][]>> conversions) throws InterruptedException, ExecutionException {
+        for (int i = 0; i < resolutions.length; i++) {
+            target.apply(resolutions[i]).out(conversions.get(i).get());
+        }
+        return null;
+    }
+}
@@ -1,13 +1,39 @@
 package ascii_art;
 
+import ascii_output.AnsiConsoleAsciiOutput;
+import ascii_output.AsciiOutput;
+import ascii_output.AsyncAsciiOutput;
+import ascii_output.BinaryAsciiOutput;
+import ascii_output.ColorHtmlAsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
+import ascii_output.DeltaAnimationAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
+import ascii_output.PngAsciiOutput;
+import image.FrameSource;
+import image.GreyShadeRegion;
+import image.GreyShadeSource;
 import image.Image;
-import image.ImagePadding;
+import image.LuminancePlane;
+import image.SummedAreaTable;
+import image_char_matching.BrightnessSampling;
+import image_char_matching.CharsetProfile;
+import image_char_matching.ConversionCancelledException;
+import image_char_matching.ConversionControl;
+import image_char_matching.KernelGreyShadeSource;
+import image_char_matching.LuminanceKernel;
+import image_char_matching.MappedGreyShadeSource;
+import image_char_matching.MatchingMode;
+import image_char_matching.SampledBrightness;
+import image_char_matching.SubImageGrid;
+import image_char_matching.SubImagesControl;
 import image_char_matching.SubImgCharMatcher;
 
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
 
 /**
  * The Shell class represents a command-line interface for managing ASCII art generation and customization.
@@ -54,6 +80,127 @@ public class Shell {
      * error message: illegal remove command.
      */
     private static final String REMOVE_ERROR = "Did not remove due to incorrect format.";
+    /**
+     * error message: illegal matching mode command.
+     */
+    private static final String MATCHING_MODE_ERROR = "Did not change matching mode due to incorrect format.";
+    /**
+     * error message: illegal luminance kernel command.
+     */
+    private static final String KERNEL_ERROR = "Did not change kernel due to incorrect format.";
+    /**
+     * error message: illegal ingest command.
+     */
+    private static final String INGEST_ERROR = "Did not change ingest mode due to incorrect format.";
+    /**
+     * error message: illegal sampling command.
+     */
+    private static final String SAMPLING_ERROR = "Did not change sampling due to incorrect format.";
+    /**
+     * error message: illegal viewport command.
+     */
+    private static final String VIEWPORT_ERROR = "Did not change viewport due to incorrect format.";
+    /**
+     * error message: illegal grid command.
+     */
+    private static final String GRID_ERROR = "Did not change grid due to incorrect format.";
+    /**
+     * error message: illegal memory budget command.
+     */
+    private static final String BUDGET_ERROR = "Did not change memory budget due to incorrect format.";
+    /**
+     * error message: illegal sharding command.
+     */
+    private static final String SHARD_ERROR = "Did not change sharding due to incorrect format.";
+    /**
+     * error message: illegal resolutions to render.
+     */
+    private static final String RENDER_ERROR = "Did not render due to incorrect format or resolutions.";
+    /**
+     * error message: illegal render targets command.
+     */
+    private static final String RENDER_TARGETS_ERROR = "Did not change render targets due to incorrect format.";
+    /**
+     * error message: illegal time limit command.
+     */
+    private static final String TIMEOUT_ERROR = "Did not change time limit due to incorrect format.";
+    /**
+     * error message: a conversion ran past the time limit.
+     */
+    private static final String CONVERSION_TIMEOUT_ERROR = "Did not complete conversion within the time limit.";
+    /**
+     * error message: a band failed in every attempt.
+     */
+    private static final String SHARD_FAILED_ERROR = "Did not complete sharded conversion due to failed workers.";
+    /**
+     * error message: color output requested from worker processes, which only return characters.
+     */
+    private static final String SHARD_COLOR_ERROR = "Did not execute since sharded conversion has no colors.";
+    /**
+     * error message: color output requested while the colors of the image are not kept.
+     */
+    private static final String COLOR_ERROR = "Did not execute since the colors of the image are not kept.";
+    /**
+     * error message: unknown charset profile.
+     */
+    private static final String CHARSET_PROFILE_ERROR = "Did not change charset due to unknown profile. Profiles: ";
+    /**
+     * error message: image does not fit the memory budget.
+     */
+    private static final String BUDGET_EXCEEDED_ERROR = "Did not load image since it does not fit the memory budget.";
+    /**
+     * error message: illegal animation file.
+     */
+    private static final String ANIMATION_FILE_ERROR = "Did not execute due to problem with animation file.";
+    /**
+     * error message: illegal image sequence pattern.
+     */
+    private static final String ANIMATION_PATTERN_ERROR = "Did not execute due to incorrect image sequence " +
+            "pattern.";
+    /**
+     * error message: resolution outside of the boundaries of the animation frames.
+     */
+    private static final String ANIMATION_RESOLUTION_ERROR = "Did not execute due to resolution exceeding the " +
+            "frame boundaries.";
+    /**
+     * error message: animation interrupted before every frame was written.
+     */
+    private static final String ANIMATION_INTERRUPTED_ERROR = "Did not complete animation since it was " +
+            "interrupted.";
+    /**
+     * massage: animation conversion summary.
+     */
+    private static final String ANIMATION_MESSAGE = "Converted %d frames at %.1f frames per second.%n";
+    /**
+     * massage: predicted and measured duration of a conversion in automatic resolution.
+     */
+    private static final String AUTO_RESOLUTION_MESSAGE =
+            "Resolution %d predicted to take %.1f ms, took %.1f ms.%n";
+    /**
+     * nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /**
+     * milliseconds per second.
+     */
+    private static final double MILLIS_PER_SECOND = 1e3;
+    /**
+     * massage: progress of a long conversion stage, rewritten in place.
+     */
+    private static final String PROGRESS_MESSAGE = "\rConverting: %3d%% (%d of %d rows), about %.1f s left.";
+    /**
+     * time a conversion stage runs before its progress is shown, in nanoseconds, so quick stages print nothing
+     */
+    private static final long PROGRESS_DELAY_NANOS = 500_000_000L;
+    /**
+     * percent of a whole.
+     */
+    private static final int PERCENT = 100;
+    /**
+     * massage: estimated error of a sampled conversion.
+     */
+    private static final String SAMPLING_MESSAGE =
+            "Estimated brightness error: at most %.4f, %.4f on average, from %d samples.%n";
     /**
      * print massage
      */
@@ -66,6 +213,10 @@ public class Shell {
      * show all charset command
      */
     private static final String CHARS_COMMAND = "chars";
+    /**
+     * switch to a named charset profile command
+     */
+    private static final String CHARSET_PROFILE_COMMAND = "charset";
     /**
      * add a char command
      */
@@ -90,10 +241,154 @@ public class Shell {
      * create an asciiArt command
      */
     private static final String CREATE_ASCII_ART_COMMAND = "asciiArt";
+    /**
+     * wait until file outputs are written command
+     */
+    private static final String FLUSH_COMMAND = "flush";
+    /**
+     * wait until file outputs are written command, alias of flush
+     */
+    private static final String WAIT_COMMAND = "wait";
     /**
      * change output method command
      */
     private static final String OUTPUT_METHOD_COMMAND = "output";
+    /**
+     * change matching mode command
+     */
+    private static final String MATCHING_MODE_COMMAND = "match";
+    /**
+     * match by brightness command
+     */
+    private static final String BRIGHTNESS_MATCHING_COMMAND = "brightness";
+    /**
+     * match by glyph shape command
+     */
+    private static final String SHAPE_MATCHING_COMMAND = "shape";
+    /**
+     * change luminance kernel command
+     */
+    private static final String KERNEL_COMMAND = "kernel";
+    /**
+     * double precision luminance kernel command
+     */
+    private static final String DOUBLE_KERNEL_COMMAND = "double";
+    /**
+     * fixed-point luminance kernel command
+     */
+    private static final String FIXED_POINT_KERNEL_COMMAND = "fixed";
+    /**
+     * vectorized fixed-point luminance kernel command
+     */
+    private static final String VECTOR_KERNEL_COMMAND = "vector";
+    /**
+     * gamma-correct lookup table luminance kernel command
+     */
+    private static final String LINEAR_KERNEL_COMMAND = "linear";
+    /**
+     * change how images are stored after loading command
+     */
+    private static final String INGEST_COMMAND = "ingest";
+    /**
+     * keep the full color image command
+     */
+    private static final String COLOR_INGEST_COMMAND = "color";
+    /**
+     * keep only a luminance plane computed at load command
+     */
+    private static final String GRAY_INGEST_COMMAND = "gray";
+    /**
+     * change brightness sampling command
+     */
+    private static final String SAMPLING_COMMAND = "sample";
+    /**
+     * read every pixel command
+     */
+    private static final String SAMPLING_OFF_COMMAND = "off";
+    /**
+     * sample to an error bound command, followed by the bound
+     */
+    private static final String SAMPLING_ERROR_COMMAND = "error";
+    /**
+     * sample a fixed number of pixels per sub-image command, followed by the number
+     */
+    private static final String SAMPLING_COUNT_COMMAND = "count";
+    /**
+     * convert only a region of the image command, followed by its left, top, width and height in pixels
+     */
+    private static final String VIEWPORT_COMMAND = "view";
+    /**
+     * convert the whole image command
+     */
+    private static final String VIEWPORT_OFF_COMMAND = "off";
+    /**
+     * number of numbers that define a viewport
+     */
+    private static final int VIEWPORT_FIELDS = 4;
+    /**
+     * change grid command
+     */
+    private static final String GRID_COMMAND = "grid";
+    /**
+     * resolution by resolution grid over the padded image command
+     */
+    private static final String GRID_SQUARE_COMMAND = "square";
+    /**
+     * aspect-preserving grid command, optionally followed by the cell height over width
+     */
+    private static final String GRID_ASPECT_COMMAND = "aspect";
+    /**
+     * change memory budget command, followed by the budget in megabytes
+     */
+    private static final String BUDGET_COMMAND = "budget";
+    /**
+     * no memory budget command
+     */
+    private static final String BUDGET_OFF_COMMAND = "off";
+    /**
+     * print memory budget metrics command
+     */
+    private static final String BUDGET_STATS_COMMAND = "stats";
+    /**
+     * bytes per megabyte
+     */
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    /**
+     * convert with worker processes command, followed by the number of workers
+     */
+    private static final String SHARD_COMMAND = "shard";
+    /**
+     * convert in this process command
+     */
+    private static final String SHARD_OFF_COMMAND = "off";
+    /**
+     * massage: report of a sharded conversion.
+     */
+    private static final String SHARD_MESSAGE = "Converted by %d worker processes, %d bands retried.%n";
+    /**
+     * convert at several resolutions to several outputs at once command, followed by the resolutions
+     */
+    private static final String RENDER_COMMAND = "render";
+    /**
+     * massage: report of a multi-resolution render.
+     */
+    private static final String RENDER_MESSAGE = "Rendered %d resolutions, %d aggregated from finer ones.%n";
+    /**
+     * choose the outputs of multi-resolution renders command, followed by console, html or binary targets
+     */
+    private static final String RENDER_TARGETS_COMMAND = "to";
+    /**
+     * limit the time of every conversion command, followed by the limit in seconds
+     */
+    private static final String TIMEOUT_COMMAND = "timeout";
+    /**
+     * no time limit command
+     */
+    private static final String TIMEOUT_OFF_COMMAND = "off";
+    /**
+     * convert an animated GIF or a numbered image sequence command
+     */
+    private static final String ANIMATE_COMMAND = "animate";
     /**
      * space string to add
      */
@@ -106,10 +401,50 @@ public class Shell {
      * use html output command
      */
     private static final String HTML_COMMAND = "html";
+    /**
+     * use color html output command, optionally followed by the number of levels per color channel
+     */
+    private static final String COLOR_HTML_COMMAND = "color";
+    /**
+     * use png image output command
+     */
+    private static final String PNG_COMMAND = "png";
+    /**
+     * use compact binary file output command
+     */
+    private static final String BINARY_COMMAND = "binary";
+    /**
+     * use differential ANSI terminal output command
+     */
+    private static final String ANSI_COMMAND = "ansi";
+    /**
+     * use delta-encoded animation file output command
+     */
+    private static final String DELTA_COMMAND = "delta";
+    /**
+     * default animation output address
+     */
+    private static final String DEFAULT_ANIMATION_FILE_ADDRESS = "out.aad";
     /**
      * default html output address
      */
     private static final String DEFAULT_HTML_FILE_ADDRESS = "out.html";
+    /**
+     * default binary output address
+     */
+    private static final String DEFAULT_BINARY_FILE_ADDRESS = "out.aag";
+    /**
+     * html output address of every resolution of a multi-resolution render
+     */
+    private static final String RENDER_HTML_FILE_ADDRESS = "out_%d.html";
+    /**
+     * binary output address of every resolution of a multi-resolution render
+     */
+    private static final String RENDER_BINARY_FILE_ADDRESS = "out_%d.aag";
+    /**
+     * default png output address
+     */
+    private static final String DEFAULT_PNG_FILE_ADDRESS = "out.png";
     /**
      * default html font
      */
@@ -122,6 +457,10 @@ public class Shell {
      * bring the resolution down command
      */
     private static final String RESOLUTION_DOWN_COMMAND = "down";
+    /**
+     * choose the resolution from a latency budget command, followed by the budget in milliseconds
+     */
+    private static final String RESOLUTION_AUTO_COMMAND = "auto";
     /**
      * a dot
      */
@@ -160,13 +499,134 @@ public class Shell {
      */
     private String console = "console";
     /**
-     * the current image
+     * the outputs every resolution of a multi-resolution render is written to: console, html or binary
+     */
+    private final Set<String> renderTargets = new LinkedHashSet<>(List.of(CONSOLE_COMMAND, HTML_COMMAND,
+            BINARY_COMMAND));
+    /**
+     * how sub-images are matched to characters
+     */
+    private MatchingMode matchingMode = MatchingMode.BRIGHTNESS;
+    /**
+     * the kernel used to compute pixel grey shades
+     */
+    private LuminanceKernel luminanceKernel = LuminanceKernel.DOUBLE;
+    /**
+     * how brightness is sampled for previews, or null to read every pixel
+     */
+    private BrightnessSampling brightnessSampling;
+    /**
+     * the brightness estimated by the current AsciiArtAlgorithm, or null if it reads every pixel
+     */
+    private SampledBrightness sampledBrightness;
+    /**
+     * whether images are converted to a luminance plane when loaded, instead of keeping their colors
+     */
+    private boolean grayIngest = false;
+    /**
+     * the path of the current image
+     */
+    private String imagePath;
+    /**
+     * the differential terminal output, kept across runs since it remembers the grid it last drew
+     */
+    private final AnsiConsoleAsciiOutput ansiConsoleAsciiOutput = new AnsiConsoleAsciiOutput();
+    /**
+     * writes the html outputs in the background, so that the shell does not wait for the file to be written
+     */
+    private final AsyncAsciiOutput asyncAsciiOutput = new AsyncAsciiOutput();
+    /**
+     * the html output, the same for every run, so that a render still waiting to be written is replaced by
+     * the next render to the same file
+     */
+    private final HtmlAsciiOutput htmlAsciiOutput = new HtmlAsciiOutput(DEFAULT_HTML_FILE_ADDRESS,
+            DEFAULT_HTML_FONT);
+    /**
+     * the color html output, replaced when the number of levels per color channel changes
+     */
+    private ColorHtmlAsciiOutput colorHtmlAsciiOutput = new ColorHtmlAsciiOutput(DEFAULT_HTML_FILE_ADDRESS,
+            DEFAULT_HTML_FONT, ColorHtmlAsciiOutput.DEFAULT_COLOR_LEVELS);
+    /**
+     * the png image output, the same for every run
+     */
+    private final PngAsciiOutput pngAsciiOutput = new PngAsciiOutput(DEFAULT_PNG_FILE_ADDRESS, DEFAULT_HTML_FONT,
+            PngAsciiOutput.DEFAULT_GLYPH_SIZE);
+    /**
+     * the compact binary file output, the same for every run
+     */
+    private final BinaryAsciiOutput binaryAsciiOutput = new BinaryAsciiOutput(DEFAULT_BINARY_FILE_ADDRESS, true);
+    /**
+     * the animation file output, kept open across runs so that every run appends its frames, or null until
+     * the first run after the output was chosen
+     */
+    private DeltaAnimationAsciiOutput deltaAnimationAsciiOutput;
+    /**
+     * the current image, or null if only its luminance plane is kept
      */
     private Image image;
+    /**
+     * the grey shades of the current image, used to build the AsciiArtAlgorithm
+     */
+    private GreyShadeSource greyShadeSource;
+    /**
+     * the height over width of the cells of the aspect-preserving grid, in which the resolution is the number
+     * of columns, or 0 for the square grid
+     */
+    private double cellAspect;
+    /**
+     * the latency budget of a conversion in milliseconds when the resolution is chosen automatically, or 0
+     */
+    private double latencyBudgetMillis;
+    /**
+     * the time limit of every conversion in milliseconds, or 0 for no limit
+     */
+    private long timeoutMillis;
+    /**
+     * the System.nanoTime at which the current conversion stage started, for its progress
+     */
+    private long stageStart;
+    /**
+     * the last percent of progress shown for the current conversion stage, or -1 if none was shown
+     */
+    private int shownPercent = -1;
+    /**
+     * the latency models of the matching modes, calibrated when first used with the current kernel and
+     * sampling, and dropped when either changes
+     */
+    private final Map<MatchingMode, LatencyModel> latencyModels = new EnumMap<>(MatchingMode.class);
+    /**
+     * the planner that keeps images within the memory budget, or null if there is no budget
+     */
+    private ConversionPlanner conversionPlanner;
+    /**
+     * converts whole images with worker processes, or null to convert in this process
+     */
+    private BandCoordinator bandCoordinator;
+    /**
+     * number of worker processes of the band coordinator
+     */
+    private int shardWorkers;
+    /**
+     * the plan the current image was loaded with, or null if there is no budget
+     */
+    private ConversionPlan conversionPlan;
+    /**
+     * the region of the image to convert, or null to convert the whole image
+     */
+    private Rectangle viewport;
+    /**
+     * the summed-area table of the grey shades of the viewport only, or null if there is no viewport
+     */
+    private SummedAreaTable summedAreaTable;
     /**
      * the current AsciiArtAlgorithm
      */
     private AsciiArtAlgorithm asciiArtAlgorithm;
+    /**
+     * whether the settings changed since the current AsciiArtAlgorithm was built, because building its
+     * replacement was abandoned
+     */
+    private boolean asciiArtAlgorithmOutdated = true;
     /**
      * the current SubImgCharMatcher
      */
@@ -190,6 +650,9 @@ public class Shell {
         if (!prepareAlgorithm()) {
             return;
         }
+        // Files still being written in the background, and the animation file, are completed before the
+        // program exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::completeOutputs));
         System.out.print(ENTER_INPUT);
         String userInput = KeyboardInput.readLine();
         while (!userInput.equals(EXIT_COMMAND)) {
@@ -197,10 +660,18 @@ public class Shell {
                 readUserInput(userInput);
             } catch (IncorrectInputException incorrectInputException) {
                 System.out.println(incorrectInputException.getMessage());
+            } catch (UncheckedIOException uncheckedIOException) {
+                // A streamed image could not be decoded while converting
+                System.out.println(IMAGE_FILE_ERROR);
+            } catch (ConversionCancelledException conversionCancelledException) {
+                // The abandoned conversion is dropped, and redone by the next run
+                endProgress();
+                System.out.println(CONVERSION_TIMEOUT_ERROR);
             }
             System.out.print(ENTER_INPUT);
             userInput = KeyboardInput.readLine();
         }
+        completeOutputs();
     }
 
     /**
@@ -217,7 +688,6 @@ public class Shell {
             System.out.println(incorrectInputException.getMessage());
             return false;
         }
-        image = ImagePadding.paddedImage(image);
         subImgCharMatcher = new SubImgCharMatcher(charsetToArray());
         createAsciiArtAlgorithm();
         return true;
@@ -242,90 +712,921 @@ public class Shell {
      * Creates the ASCII art algorithm with the current image, resolution, and character matcher.
      */
     private void createAsciiArtAlgorithm() {
-        asciiArtAlgorithm = new AsciiArtAlgorithm(image, resolution, subImgCharMatcher);
+        GreyShadeSource source = convertedGreyShades();
+        // The current algorithm is kept until its replacement is built; if building is abandoned, the next
+        // run builds it again
+        asciiArtAlgorithmOutdated = true;
+        ConversionControl conversionControl = conversionControl();
+        SampledBrightness newSampledBrightness = null;
+        AsciiArtAlgorithm newAsciiArtAlgorithm;
+        if (brightnessSampling != null && matchingMode == MatchingMode.BRIGHTNESS) {
+            // Preview from a sample of the pixels of every sub-image
+            newSampledBrightness = SubImagesControl.imageToSampledBrightnessArray(source,
+                    subImageGrid(source.getWidth(), source.getHeight()), brightnessSampling, conversionControl);
+            newAsciiArtAlgorithm = new AsciiArtAlgorithm(newSampledBrightness, subImgCharMatcher);
+            newAsciiArtAlgorithm.setConversionControl(conversionControl);
+        } else if (keepsColors() && console.equals(COLOR_HTML_COMMAND)) {
+            // Color outputs also need the average color of every sub-image
+            newAsciiArtAlgorithm = new AsciiArtAlgorithm(image, subImageGrid(image.getWidth(), image.getHeight()),
+                    subImgCharMatcher, matchingMode, luminanceKernel, true, conversionControl);
+        } else {
+            newAsciiArtAlgorithm = new AsciiArtAlgorithm(source,
+                    subImageGrid(source.getWidth(), source.getHeight()), subImgCharMatcher, matchingMode,
+                    conversionControl);
+        }
+        asciiArtAlgorithm = newAsciiArtAlgorithm;
+        sampledBrightness = newSampledBrightness;
+        asciiArtAlgorithmOutdated = false;
+        endProgress();
     }
 
     /**
-     * Initializes the default character set with ASCII digits (0-9).
+     * Checks whether the average colors of the sub-images can be computed: only the whole image, loaded in
+     * full and in color, and converted without sampling, has them.
+     *
+     * @return True if color outputs get the colors of the image.
      */
-    private void initializeCharset() {
-        for (char i = 48; i < 58; i++) {
-            CHARSET.add(i);
-        }
+    private boolean keepsColors() {
+        return image != null && viewport == null &&
+                (brightnessSampling == null || matchingMode != MatchingMode.BRIGHTNESS);
     }
 
     /**
-     * Reads and interprets the user input, executing the corresponding action.
+     * Creates the control of a conversion, with the current time limit from now, that shows the progress of
+     * long stages.
      *
-     * @param userInput The user input string to be processed.
-     * @throws IncorrectInputException If the input is incorrect or not recognized.
+     * @return The conversion control.
      */
-    private void readUserInput(String userInput) throws IncorrectInputException {
-        String[] tokens = userInput.split(" ", 2);
-        if (tokens[0].equals(CHARS_COMMAND)) {
-            printCharArray();
-        } else if (tokens[0].equals(ADD_COMMAND)) {
-            addChars(userInput.replace(ADD_COMMAND + SPACE_STRING, EMPTY_STRING));
-        } else if (tokens[0].equals(REMOVE_COMMAND)) {
-            removeChars(userInput.replace(REMOVE_COMMAND + SPACE_STRING, EMPTY_STRING));
-        } else if (tokens[0].equals(RESIZE_COMMAND)) {
-            resChange(userInput.replace(RESIZE_COMMAND + SPACE_STRING, EMPTY_STRING));
-        } else if (tokens[0].equals(IMAGE_COMMAND)) {
-            changeImage(userInput.replace(IMAGE_COMMAND + SPACE_STRING, EMPTY_STRING));
-        } else if (tokens[0].equals(OUTPUT_METHOD_COMMAND)) {
-            changeOutput(userInput.replace(OUTPUT_METHOD_COMMAND + SPACE_STRING, EMPTY_STRING));
-        } else if (tokens[0].equals(CREATE_ASCII_ART_COMMAND)) {
-            runAsciiArt();
-        } else {
-            throw new IncorrectInputException(INCORRECT_COMMAND_ERROR);
-        }
+    private ConversionControl conversionControl() {
+        return new ConversionControl(timeoutMillis, this::showProgress);
     }
 
     /**
-     * Changes the output method for displaying ASCII art (console or HTML).
+     * Shows the progress of a conversion stage on a single line, once the stage has run for a while.
      *
-     * @param userInput The user input specifying the desired output method.
-     * @throws IncorrectInputException If the input format is incorrect.
+     * @param rowsDone  The number of rows of sub-images completed in the stage.
+     * @param totalRows The number of rows of sub-images of the stage.
+     * @param nanosLeft The estimated time left in the stage, in nanoseconds, or -1 before the first row.
      */
-    private void changeOutput(String userInput) throws IncorrectInputException {
-        if (userInput.equals(HTML_COMMAND)) {
-            console = HTML_COMMAND;
-        } else if (userInput.equals(CONSOLE_COMMAND)) {
-            console = CONSOLE_COMMAND;
-        } else {
-            throw new IncorrectInputException(OUTPUT_METHOD_ERROR);
+    private void showProgress(int rowsDone, int totalRows, long nanosLeft) {
+        if (rowsDone == 0) {
+            endProgress();
+            stageStart = System.nanoTime();
+            return;
+        }
+        int percent = (int) ((long) rowsDone * PERCENT / totalRows);
+        if (percent != shownPercent && System.nanoTime() - stageStart > PROGRESS_DELAY_NANOS) {
+            shownPercent = percent;
+            System.out.printf(PROGRESS_MESSAGE, percent, rowsDone, totalRows,
+                    nanosLeft / NANOS_PER_MILLI / MILLIS_PER_SECOND);
         }
     }
 
     /**
-     * Changes the current image to a new image specified by the user.
-     *
-     * @param imagePath The file path of the new image.
-     * @throws IncorrectInputException If there is an issue with the image file.
+     * Ends the line of progress of the last conversion stage, if one was shown.
      */
-    private void changeImage(String imagePath) throws IncorrectInputException {
+    private void endProgress() {
+        if (shownPercent >= 0) {
+            System.out.println();
+            shownPercent = -1;
+        }
+    }
+
+    /**
+     * Changes the time limit of every conversion. A conversion that runs past it is abandoned, leaving the
+     * settings as they are, and is redone by the next run.
+     *
+     * @param userInput The user input specifying the time limit in seconds, or "off".
+     * @throws IncorrectInputException If the input format is incorrect.
+     */
+    private void changeTimeout(String userInput) throws IncorrectInputException {
+        if (userInput.equals(TIMEOUT_OFF_COMMAND)) {
+            timeoutMillis = 0;
+            return;
+        }
+        double seconds;
         try {
-            image = new Image(imagePath);
+            seconds = Double.parseDouble(userInput);
+        } catch (NumberFormatException numberFormatException) {
+            throw new IncorrectInputException(TIMEOUT_ERROR);
+        }
+        if (!(seconds > 0) || Double.isInfinite(seconds)) {
+            throw new IncorrectInputException(TIMEOUT_ERROR);
+        }
+        timeoutMillis = Math.max(1, Math.round(seconds * MILLIS_PER_SECOND));
+    }
+
+    /**
+     * Divides an image into sub-images with the current grid: resolution by resolution sub-images over the
+     * padded image, or resolution columns and as many rows as keep the aspect of the cells.
+     *
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     * @return The grid of sub-images.
+     */
+    private SubImageGrid subImageGrid(int width, int height) {
+        return SubImageGrid.of(width, height, resolution, cellAspect);
+    }
+
+    /**
+     * Changes how the image is divided into sub-images: the square grid of resolution by resolution
+     * sub-images over the padded image, or the aspect-preserving grid of resolution columns, whose rows
+     * follow the aspect ratio of the image and the given cell height over width (1 by default).
+     *
+     * @param userInput The user input specifying the grid.
+     * @throws IncorrectInputException If the input format is incorrect.
+     */
+    private void changeGrid(String userInput) throws IncorrectInputException {
+        double newCellAspect;
+        if (userInput.equals(GRID_SQUARE_COMMAND)) {
+            newCellAspect = 0;
+        } else if (userInput.equals(GRID_ASPECT_COMMAND)) {
+            newCellAspect = SubImageGrid.SQUARE_CELL_ASPECT;
+        } else if (userInput.startsWith(GRID_ASPECT_COMMAND + SPACE_STRING)) {
+            double aspect;
+            try {
+                aspect = Double.parseDouble(userInput.substring(GRID_ASPECT_COMMAND.length() + 1));
+            } catch (NumberFormatException numberFormatException) {
+                throw new IncorrectInputException(GRID_ERROR);
+            }
+            if (!(aspect > 0) || Double.isInfinite(aspect)) {
+                throw new IncorrectInputException(GRID_ERROR);
+            }
+            newCellAspect = aspect;
+        } else {
+            throw new IncorrectInputException(GRID_ERROR);
+        }
+        replanImage(resolution, newCellAspect);
+        cellAspect = newCellAspect;
+        createAsciiArtAlgorithm();
+    }
+
+    /**
+     * Gets the grey shades to convert: those of the whole image, or the summed-area table of the viewport,
+     * so that the viewport is converted at any resolution without reading its pixels again.
+     *
+     * @return The grey shades to convert.
+     */
+    private GreyShadeSource convertedGreyShades() {
+        return viewport == null ? greyShadeSource : summedAreaTable;
+    }
+
+    /**
+     * Builds the summed-area table of a region of the current image from the pixels of the region only:
+     * files decoded by ImageIO are decoded for the region alone, while mapped files are read in place and
+     * subsampled images, whose coordinates are not those of the file, are read from memory.
+     *
+     * @param region The region, inside the image.
+     * @return The summed-area table of the region.
+     * @throws IncorrectInputException If the region cannot be read from the image file.
+     */
+    private SummedAreaTable viewportTable(Rectangle region) throws IncorrectInputException {
+        GreyShadeSource regionShades;
+        if (greyShadeSource instanceof MappedGreyShadeSource || (conversionPlan != null &&
+                conversionPlan.getStrategy() == ConversionStrategy.SUBSAMPLED_DECODE)) {
+            regionShades = new GreyShadeRegion(greyShadeSource, region.y, region.x, region.height, region.width);
+        } else {
+            try {
+                regionShades = new KernelGreyShadeSource(Image.readRegion(imagePath, region.y, region.x,
+                        region.height, region.width), luminanceKernel);
+            } catch (IOException ioException) {
+                throw new IncorrectInputException(IMAGE_FILE_ERROR);
+            }
+        }
+        return new SummedAreaTable(regionShades);
+    }
+
+    /**
+     * Initializes the default character set with ASCII digits (0-9).
+     */
+    private void initializeCharset() {
+        for (char i = 48; i < 58; i++) {
+            CHARSET.add(i);
+        }
+    }
+
+    /**
+     * Reads and interprets the user input, executing the corresponding action.
+     *
+     * @param userInput The user input string to be processed.
+     * @throws IncorrectInputException If the input is incorrect or not recognized.
+     */
+    private void readUserInput(String userInput) throws IncorrectInputException {
+        String[] tokens = userInput.split(" ", 2);
+        if (tokens[0].equals(CHARS_COMMAND)) {
+            printCharArray();
+        } else if (tokens[0].equals(CHARSET_PROFILE_COMMAND)) {
+            changeCharsetProfile(userInput.replace(CHARSET_PROFILE_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(ADD_COMMAND)) {
+            addChars(userInput.replace(ADD_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(REMOVE_COMMAND)) {
+            removeChars(userInput.replace(REMOVE_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(RESIZE_COMMAND)) {
+            resChange(userInput.replace(RESIZE_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(IMAGE_COMMAND)) {
+            changeImage(userInput.replace(IMAGE_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(OUTPUT_METHOD_COMMAND)) {
+            changeOutput(userInput.replace(OUTPUT_METHOD_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(MATCHING_MODE_COMMAND)) {
+            changeMatchingMode(userInput.replace(MATCHING_MODE_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(INGEST_COMMAND)) {
+            changeIngest(userInput.replace(INGEST_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(KERNEL_COMMAND)) {
+            changeKernel(userInput.replace(KERNEL_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(SAMPLING_COMMAND)) {
+            changeSampling(userInput.replace(SAMPLING_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(VIEWPORT_COMMAND)) {
+            changeViewport(userInput.replace(VIEWPORT_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(GRID_COMMAND)) {
+            changeGrid(userInput.replace(GRID_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(SHARD_COMMAND)) {
+            changeSharding(userInput.replace(SHARD_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(BUDGET_COMMAND)) {
+            changeBudget(userInput.replace(BUDGET_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(TIMEOUT_COMMAND)) {
+            changeTimeout(userInput.replace(TIMEOUT_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(RENDER_COMMAND)) {
+            runRender(userInput.replace(RENDER_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(ANIMATE_COMMAND)) {
+            runAnimation(userInput.replace(ANIMATE_COMMAND + SPACE_STRING, EMPTY_STRING));
+        } else if (tokens[0].equals(FLUSH_COMMAND) || tokens[0].equals(WAIT_COMMAND)) {
+            flushOutput();
+        } else if (tokens[0].equals(CREATE_ASCII_ART_COMMAND)) {
+            runAsciiArt();
+        } else {
+            throw new IncorrectInputException(INCORRECT_COMMAND_ERROR);
+        }
+    }
+
+    /**
+     * Changes the output method for displaying ASCII art (console, differential ANSI terminal, HTML, color
+     * HTML, PNG image, compact binary file or delta-encoded animation file). Color HTML takes an optional
+     * number of levels per color channel, and needs the colors of the image. The animation file collects
+     * the frames of every run until the output is changed or the shell exits.
+     *
+     * @param userInput The user input specifying the desired output method.
+     * @throws IncorrectInputException If the input format is incorrect.
+     */
+    private void changeOutput(String userInput) throws IncorrectInputException {
+        if (userInput.equals(HTML_COMMAND)) {
+            console = HTML_COMMAND;
+        } else if (userInput.equals(CONSOLE_COMMAND)) {
+            console = CONSOLE_COMMAND;
+        } else if (userInput.equals(ANSI_COMMAND)) {
+            // The terminal may have been scrolled since the last differential output
+            ansiConsoleAsciiOutput.reset();
+            console = ANSI_COMMAND;
+        } else if (userInput.equals(DELTA_COMMAND)) {
+            console = DELTA_COMMAND;
+        } else if (userInput.equals(PNG_COMMAND)) {
+            console = PNG_COMMAND;
+        } else if (userInput.equals(BINARY_COMMAND)) {
+            console = BINARY_COMMAND;
+        } else if (userInput.equals(COLOR_HTML_COMMAND) ||
+                userInput.startsWith(COLOR_HTML_COMMAND + SPACE_STRING)) {
+            colorHtmlAsciiOutput = new ColorHtmlAsciiOutput(DEFAULT_HTML_FILE_ADDRESS, DEFAULT_HTML_FONT,
+                    parseColorLevels(userInput.substring(COLOR_HTML_COMMAND.length()).trim()));
+            console = COLOR_HTML_COMMAND;
+        } else {
+            throw new IncorrectInputException(OUTPUT_METHOD_ERROR);
+        }
+        // Choosing an output, even delta again, ends the current animation file
+        closeAnimationOutput();
+        if (console.equals(COLOR_HTML_COMMAND)) {
+            createAsciiArtAlgorithm();
+        }
+    }
+
+    /**
+     * Parses the number of levels per color channel of the color html output.
+     *
+     * @param levels The number of levels, or an empty string for the default.
+     * @return The number of levels.
+     * @throws IncorrectInputException If the number is malformed or out of range.
+     */
+    private static int parseColorLevels(String levels) throws IncorrectInputException {
+        if (levels.isEmpty()) {
+            return ColorHtmlAsciiOutput.DEFAULT_COLOR_LEVELS;
+        }
+        try {
+            int colorLevels = Integer.parseInt(levels);
+            if (colorLevels >= ColorHtmlAsciiOutput.MIN_COLOR_LEVELS &&
+                    colorLevels <= ColorHtmlAsciiOutput.MAX_COLOR_LEVELS) {
+                return colorLevels;
+            }
+        } catch (NumberFormatException numberFormatException) {
+            // Reported below as an incorrect format
+        }
+        throw new IncorrectInputException(OUTPUT_METHOD_ERROR);
+    }
+
+    /**
+     * Changes how sub-images are matched to characters (by brightness or by glyph shape).
+     *
+     * @param userInput The user input specifying the desired matching mode.
+     * @throws IncorrectInputException If the input format is incorrect.
+     */
+    private void changeMatchingMode(String userInput) throws IncorrectInputException {
+        if (userInput.equals(BRIGHTNESS_MATCHING_COMMAND)) {
+            matchingMode = MatchingMode.BRIGHTNESS;
+        } else if (userInput.equals(SHAPE_MATCHING_COMMAND)) {
+            matchingMode = MatchingMode.SHAPE;
+        } else {
+            throw new IncorrectInputException(MATCHING_MODE_ERROR);
+        }
+        createAsciiArtAlgorithm();
+    }
+
+    /**
+     * Changes how brightness is sampled: "off" reads every pixel, "error" followed by a bound samples every
+     * sub-image until its estimated brightness is within the bound, and "count" followed by a number
+     * samples that many pixels of every sub-image. Sampling applies to brightness matching, and gives no
+     * colors.
+     *
+     * @param userInput The user input specifying the desired sampling.
+     * @throws IncorrectInputException If the input format is incorrect.
+     */
+    private void changeSampling(String userInput) throws IncorrectInputException {
+        String[] tokens = userInput.split(SPACE_STRING);
+        try {
+            if (tokens.length == 1 && tokens[0].equals(SAMPLING_OFF_COMMAND)) {
+                brightnessSampling = null;
+            } else if (tokens.length == 2 && tokens[0].equals(SAMPLING_ERROR_COMMAND)) {
+                brightnessSampling = BrightnessSampling.withErrorBound(Double.parseDouble(tokens[1]));
+            } else if (tokens.length == 2 && tokens[0].equals(SAMPLING_COUNT_COMMAND)) {
+                brightnessSampling = BrightnessSampling.withSamplesPerSubImage(Integer.parseInt(tokens[1]));
+            } else {
+                throw new IncorrectInputException(SAMPLING_ERROR);
+            }
+        } catch (IllegalArgumentException illegalArgumentException) {
+            // Also thrown for malformed numbers
+            throw new IncorrectInputException(SAMPLING_ERROR);
+        }
+        // Conversions no longer take the time the latency models were calibrated for
+        latencyModels.clear();
+        createAsciiArtAlgorithm();
+    }
+
+    /**
+     * Changes the region of the image to convert: "off" converts the whole image, and four numbers (left,
+     * top, width and height in pixels) convert only that region, at the current resolution. If the
+     * resolution is finer than the region, it is lowered to fit the region.
+     *
+     * @param userInput The user input specifying the desired viewport.
+     * @throws IncorrectInputException If the input format is incorrect or the region is not inside the image.
+     */
+    private void changeViewport(String userInput) throws IncorrectInputException {
+        if (userInput.equals(VIEWPORT_OFF_COMMAND)) {
+            viewport = null;
+            summedAreaTable = null;
+            createAsciiArtAlgorithm();
+            return;
+        }
+        String[] tokens = userInput.split(SPACE_STRING);
+        if (tokens.length != VIEWPORT_FIELDS) {
+            throw new IncorrectInputException(VIEWPORT_ERROR);
+        }
+        Rectangle region;
+        try {
+            region = new Rectangle(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]),
+                    Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]));
+        } catch (NumberFormatException numberFormatException) {
+            throw new IncorrectInputException(VIEWPORT_ERROR);
+        }
+        if (!fitsImage(region)) {
+            throw new IncorrectInputException(VIEWPORT_ERROR);
+        }
+        summedAreaTable = viewportTable(region);
+        viewport = region;
+        int maxResolution = maxResolution(summedAreaTable);
+        if (resolution > maxResolution) {
+            replanImage(maxResolution, cellAspect);
+            resolution = maxResolution;
+            System.out.println(RESOLUTION_MESSAGE + resolution + DOT);
+        }
+        createAsciiArtAlgorithm();
+    }
+
+    /**
+     * Checks whether a region is non-empty and inside the current image.
+     *
+     * @param region The region.
+     * @return True if the region is non-empty and inside the image.
+     */
+    private boolean fitsImage(Rectangle region) {
+        return region.x >= 0 && region.y >= 0 && region.width > 0 && region.height > 0 &&
+                (long) region.x + region.width <= greyShadeSource.getWidth() &&
+                (long) region.y + region.height <= greyShadeSource.getHeight();
+    }
+
+    /**
+     * Changes the memory budget of loading images: a number of megabytes plans every image to fit it (and
+     * reloads the current image accordingly), "off" loads images in full, and "stats" prints the metrics
+     * of the planner.
+     *
+     * @param userInput The user input specifying the desired budget.
+     * @throws IncorrectInputException If the input format is incorrect or the image does not fit the budget.
+     */
+    private void changeBudget(String userInput) throws IncorrectInputException {
+        if (userInput.equals(BUDGET_STATS_COMMAND)) {
+            if (conversionPlanner == null) {
+                throw new IncorrectInputException(BUDGET_ERROR);
+            }
+            System.out.println(conversionPlanner);
+            return;
+        }
+        ConversionPlanner planner = null;
+        if (!userInput.equals(BUDGET_OFF_COMMAND)) {
+            try {
+                long megabytes = Long.parseLong(userInput);
+                if (megabytes < 1) {
+                    throw new IncorrectInputException(BUDGET_ERROR);
+                }
+                planner = new ConversionPlanner(megabytes * BYTES_PER_MEGABYTE);
+            } catch (NumberFormatException numberFormatException) {
+                throw new IncorrectInputException(BUDGET_ERROR);
+            }
+        }
+        if (conversionPlan != null) {
+            conversionPlanner.release(conversionPlan);
+            conversionPlan = null;
+        }
+        conversionPlanner = planner;
+        changeImage(imagePath);
+    }
+
+    /**
+     * Changes whether whole images are converted by worker processes, each converting a band of rows of the
+     * grid from only the pixel rows of its band. "off" converts in this process.
+     *
+     * @param userInput The number of worker processes, or "off".
+     * @throws IncorrectInputException If the input format is incorrect.
+     */
+    private void changeSharding(String userInput) throws IncorrectInputException {
+        if (userInput.equals(SHARD_OFF_COMMAND)) {
+            bandCoordinator = null;
+            return;
+        }
+        try {
+            shardWorkers = Integer.parseInt(userInput);
+        } catch (NumberFormatException numberFormatException) {
+            throw new IncorrectInputException(SHARD_ERROR);
+        }
+        if (shardWorkers < 1) {
+            throw new IncorrectInputException(SHARD_ERROR);
+        }
+        bandCoordinator = new BandCoordinator(shardWorkers, BandCoordinator.DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Changes the kernel used to compute pixel grey shades (double, fixed-point, vectorized fixed-point or
+     * gamma-correct).
+     *
+     * @param userInput The user input specifying the desired kernel.
+     * @throws IncorrectInputException If the input format is incorrect or the image cannot be reloaded.
+     */
+    private void changeKernel(String userInput) throws IncorrectInputException {
+        if (userInput.equals(DOUBLE_KERNEL_COMMAND)) {
+            luminanceKernel = LuminanceKernel.DOUBLE;
+        } else if (userInput.equals(FIXED_POINT_KERNEL_COMMAND)) {
+            luminanceKernel = LuminanceKernel.FIXED_POINT;
+        } else if (userInput.equals(VECTOR_KERNEL_COMMAND)) {
+            luminanceKernel = LuminanceKernel.VECTOR;
+        } else if (userInput.equals(LINEAR_KERNEL_COMMAND)) {
+            luminanceKernel = LuminanceKernel.LINEAR_LUT;
+        } else {
+            throw new IncorrectInputException(KERNEL_ERROR);
+        }
+        // Conversions no longer take the time the latency models were calibrated for
+        latencyModels.clear();
+        if (image != null) {
+            greyShadeSource = new KernelGreyShadeSource(image, luminanceKernel);
+            // The cached grey shades of the viewport were computed with the previous kernel
+            summedAreaTable = viewport == null ? null : viewportTable(viewport);
+            createAsciiArtAlgorithm();
+        } else {
+            // The luminance plane was computed with the previous kernel, so it must be ingested again
+            changeImage(imagePath);
+        }
+    }
+
+    /**
+     * Changes whether images keep their colors, or are converted once into a luminance plane when loaded
+     * (and the current image is reloaded accordingly).
+     *
+     * @param userInput The user input specifying the desired ingest mode.
+     * @throws IncorrectInputException If the input format is incorrect or the image cannot be reloaded.
+     */
+    private void changeIngest(String userInput) throws IncorrectInputException {
+        if (userInput.equals(COLOR_INGEST_COMMAND)) {
+            grayIngest = false;
+        } else if (userInput.equals(GRAY_INGEST_COMMAND)) {
+            grayIngest = true;
+        } else {
+            throw new IncorrectInputException(INGEST_ERROR);
+        }
+        changeImage(imagePath);
+    }
+
+    /**
+     * Changes the current image to a new image specified by the user.
+     *
+     * @param imagePath The file path of the new image.
+     * @throws IncorrectInputException If there is an issue with the image file.
+     */
+    private void changeImage(String imagePath) throws IncorrectInputException {
+        try {
+            if (MappedGreyShadeSource.isMappable(imagePath)) {
+                // Uncompressed files are summed straight from the mapped file, outside of the heap and the budget
+                greyShadeSource = MappedGreyShadeSource.open(imagePath, luminanceKernel);
+                image = null;
+                releaseConversionPlan();
+            } else {
+                loadImage(imagePath);
+            }
+        } catch (MemoryBudgetException memoryBudgetException) {
+            throw new IncorrectInputException(BUDGET_EXCEEDED_ERROR);
         } catch (IOException ioException) {
             throw new IncorrectInputException(IMAGE_FILE_ERROR);
         }
+        this.imagePath = imagePath;
+        updateViewport();
         createAsciiArtAlgorithm();
     }
 
+    /**
+     * Drops the viewport if it is no longer inside the newly loaded image, and builds the summed-area table
+     * of the viewport again, since the cached grey shades belong to the previous image or kernel.
+     *
+     * @throws IncorrectInputException If the viewport cannot be read from the image file.
+     */
+    private void updateViewport() throws IncorrectInputException {
+        if (viewport != null && !fitsImage(viewport)) {
+            viewport = null;
+        }
+        summedAreaTable = viewport == null ? null : viewportTable(viewport);
+    }
+
+    /**
+     * Loads an image file that is decoded by ImageIO, within the memory budget if there is one. If the image
+     * cannot be decoded, the current image stays loaded and its plan is admitted again.
+     *
+     * @param imagePath The file path of the image.
+     * @throws IOException If the image does not fit the budget or cannot be read.
+     */
+    private void loadImage(String imagePath) throws IOException {
+        if (conversionPlanner == null) {
+            loadPlannedImage(imagePath, null);
+            return;
+        }
+        ConversionPlan plan = conversionPlanner.plan(imagePath, resolution, cellAspect);
+        loadAdmittedImage(imagePath, plan);
+    }
+
+    /**
+     * Admits a plan in place of the plan of the current image and loads the image as planned. If the image
+     * cannot be loaded, the plan of the current image, which stays loaded, is admitted again.
+     *
+     * @param imagePath The file path of the image.
+     * @param plan      The plan.
+     * @throws IOException If interrupted while waiting for the budget, or the image cannot be read.
+     */
+    private void loadAdmittedImage(String imagePath, ConversionPlan plan) throws IOException {
+        ConversionPlan previousPlan = conversionPlan;
+        admitConversionPlan(plan);
+        try {
+            loadPlannedImage(imagePath, plan);
+        } catch (IOException | RuntimeException exception) {
+            releaseConversionPlan();
+            if (previousPlan != null) {
+                admitConversionPlan(previousPlan);
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Loads an image file that is decoded by ImageIO as planned.
+     *
+     * @param imagePath The file path of the image.
+     * @param plan      The admitted plan, or null if there is no memory budget.
+     * @throws IOException If the image cannot be read.
+     */
+    private void loadPlannedImage(String imagePath, ConversionPlan plan) throws IOException {
+        if (plan != null && plan.getStrategy() != ConversionStrategy.FULL_DECODE) {
+            // Streamed or subsampled, so the colors of the image are not kept
+            greyShadeSource = plan.load(luminanceKernel);
+            image = null;
+        } else if (grayIngest) {
+            greyShadeSource = LuminancePlane.read(imagePath, luminanceKernel::greyShade);
+            image = null;
+        } else {
+            image = new Image(imagePath);
+            greyShadeSource = new KernelGreyShadeSource(image, luminanceKernel);
+        }
+    }
+
+    /**
+     * Admits a plan to the memory budget in place of the plan of the current image.
+     *
+     * @param plan The plan.
+     * @throws IOException If interrupted while waiting for the budget.
+     */
+    private void admitConversionPlan(ConversionPlan plan) throws IOException {
+        // The current image is dropped once the new one is loaded
+        releaseConversionPlan();
+        try {
+            conversionPlanner.admit(plan);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException(interruptedException);
+        }
+        conversionPlan = plan;
+    }
+
+    /**
+     * Plans the current image again before the resolution or the grid changes, since the memory of the grid
+     * and the rows per strip of a plan depend on them, and admits the new plan in place of the current one.
+     * The image is loaded again only if the new plan loads it differently. If the image does not fit the
+     * budget with the new resolution and grid, nothing changes.
+     *
+     * @param newResolution The new resolution.
+     * @param newCellAspect The new cell aspect of the aspect grid, or 0 for the square grid.
+     * @throws IncorrectInputException If the image does not fit the budget or cannot be read.
+     */
+    private void replanImage(int newResolution, double newCellAspect) throws IncorrectInputException {
+        if (conversionPlan == null) {
+            return;
+        }
+        try {
+            ConversionPlan plan = conversionPlanner.plan(imagePath, newResolution, newCellAspect);
+            boolean sameLoading = plan.getStrategy() == conversionPlan.getStrategy() &&
+                    plan.getSubsampling() == conversionPlan.getSubsampling() &&
+                    plan.getStripRows() == conversionPlan.getStripRows();
+            if (sameLoading) {
+                admitConversionPlan(plan);
+            } else {
+                loadAdmittedImage(imagePath, plan);
+                updateViewport();
+            }
+        } catch (MemoryBudgetException memoryBudgetException) {
+            throw new IncorrectInputException(BUDGET_EXCEEDED_ERROR);
+        } catch (IOException ioException) {
+            throw new IncorrectInputException(IMAGE_FILE_ERROR);
+        }
+    }
+
+    /**
+     * Returns the memory admitted for the current image to the memory budget, if there is one.
+     */
+    private void releaseConversionPlan() {
+        if (conversionPlan != null) {
+            conversionPlanner.release(conversionPlan);
+            conversionPlan = null;
+        }
+    }
+
     /**
      * Executes the process of generating and displaying ASCII art based on the current settings.
      *
-     * @throws IncorrectInputException If the character set is empty.
+     * @throws IncorrectInputException If the character set is empty, or colors are requested from a sharded
+     *                                 conversion or from an image whose colors are not kept.
      */
     private void runAsciiArt() throws IncorrectInputException {
         if (CHARSET.isEmpty()) {
             throw new IncorrectInputException(EMPTY_CHARSET_ERROR);
         }
-        if (console.equals(CONSOLE_COMMAND)) {
-            new ConsoleAsciiOutput().out(asciiArtAlgorithm.run());
+        // Workers decode bands with ImageIO, which mapped files do not need
+        boolean sharded = bandCoordinator != null && viewport == null && brightnessSampling == null &&
+                !(greyShadeSource instanceof MappedGreyShadeSource);
+        if (sharded && console.equals(COLOR_HTML_COMMAND)) {
+            // Workers return only the characters of their bands
+            throw new IncorrectInputException(SHARD_COLOR_ERROR);
+        }
+        if (console.equals(COLOR_HTML_COMMAND) && !keepsColors()) {
+            throw new IncorrectInputException(COLOR_ERROR);
+        }
+        AsciiOutput asciiOutput = createAsciiOutput();
+        if (sharded) {
+            runSharded(asciiOutput);
+        } else if (latencyBudgetMillis > 0) {
+            runAutoResolution(asciiOutput);
+        } else {
+            if (asciiArtAlgorithmOutdated) {
+                // The last conversion was abandoned
+                createAsciiArtAlgorithm();
+            }
+            asciiArtAlgorithm.setConversionControl(conversionControl());
+            asciiArtAlgorithm.run(asciiOutput);
+            endProgress();
+        }
+        if (sampledBrightness != null) {
+            System.out.printf(SAMPLING_MESSAGE, sampledBrightness.getMaxError(),
+                    sampledBrightness.getMeanError(), sampledBrightness.getSamples());
+        }
+    }
+
+    /**
+     * Converts the whole current image file with the worker processes of the band coordinator and writes the
+     * merged rows to an output.
+     *
+     * @param asciiOutput The output to write the ASCII art to.
+     * @throws IncorrectInputException If a band failed in every attempt.
+     */
+    private void runSharded(AsciiOutput asciiOutput) throws IncorrectInputException {
+        try {
+            char[][] asciiArt = bandCoordinator.convert(imagePath, resolution, cellAspect, matchingMode,
+                    luminanceKernel, charsetToArray(), conversionControl());
+            endProgress();
+            asciiOutput.out(asciiArt);
+        } catch (IOException ioException) {
+            throw new IncorrectInputException(SHARD_FAILED_ERROR);
         }
+        System.out.printf(SHARD_MESSAGE, shardWorkers, bandCoordinator.getRetriedBands());
+    }
+
+    /**
+     * Creates the output for the current output method. File outputs are written in the background, and
+     * a newer render to the same output replaces one that is not written yet.
+     *
+     * @return The AsciiOutput of the current output method.
+     */
+    private AsciiOutput createAsciiOutput() {
         if (console.equals(HTML_COMMAND)) {
-            new HtmlAsciiOutput(DEFAULT_HTML_FILE_ADDRESS, DEFAULT_HTML_FONT).out(asciiArtAlgorithm.run());
+            asyncAsciiOutput.setTarget(htmlAsciiOutput);
+            return asyncAsciiOutput;
+        }
+        if (console.equals(COLOR_HTML_COMMAND)) {
+            asyncAsciiOutput.setTarget(colorHtmlAsciiOutput);
+            return asyncAsciiOutput;
+        }
+        if (console.equals(PNG_COMMAND)) {
+            asyncAsciiOutput.setTarget(pngAsciiOutput);
+            return asyncAsciiOutput;
+        }
+        if (console.equals(BINARY_COMMAND)) {
+            asyncAsciiOutput.setTarget(binaryAsciiOutput);
+            return asyncAsciiOutput;
+        }
+        if (console.equals(ANSI_COMMAND)) {
+            return ansiConsoleAsciiOutput;
+        }
+        if (console.equals(DELTA_COMMAND)) {
+            if (deltaAnimationAsciiOutput == null) {
+                deltaAnimationAsciiOutput = new DeltaAnimationAsciiOutput(DEFAULT_ANIMATION_FILE_ADDRESS,
+                        DeltaAnimationAsciiOutput.DEFAULT_KEYFRAME_INTERVAL);
+            }
+            return deltaAnimationAsciiOutput;
+        }
+        return new ConsoleAsciiOutput();
+    }
+
+    /**
+     * Waits until the file outputs written in the background are complete.
+     */
+    private void flushOutput() {
+        try {
+            asyncAsciiOutput.flush();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ends the animation file of the delta output, if one is open, so that the next run starts a new file.
+     */
+    private void closeAnimationOutput() {
+        if (deltaAnimationAsciiOutput != null) {
+            deltaAnimationAsciiOutput.close();
+            deltaAnimationAsciiOutput = null;
+        }
+    }
+
+    /**
+     * Completes every output before the shell exits: waits for the files written in the background, and
+     * ends the animation file.
+     */
+    private void completeOutputs() {
+        flushOutput();
+        closeAnimationOutput();
+    }
+
+    /**
+     * Converts the current image at several resolutions in one render, reading the pixels once for all the
+     * resolutions whose grids nest in finer ones, and writes every resolution at the same time to the render
+     * targets: the console, and html and binary files named after the resolution, such as out_128.html and
+     * out_128.aag. Given "to" and target names instead of resolutions, chooses the render targets.
+     *
+     * @param userInput The resolutions, separated by spaces, or "to" followed by the targets.
+     * @throws IncorrectInputException If the character set is empty, or a resolution is malformed, repeated
+     *                                 or exceeds the boundaries.
+     */
+    private void runRender(String userInput) throws IncorrectInputException {
+        if (userInput.startsWith(RENDER_TARGETS_COMMAND + SPACE_STRING)) {
+            changeRenderTargets(userInput.substring(RENDER_TARGETS_COMMAND.length() + 1));
+            return;
+        }
+        if (CHARSET.isEmpty()) {
+            throw new IncorrectInputException(EMPTY_CHARSET_ERROR);
+        }
+        GreyShadeSource source = convertedGreyShades();
+        String[] tokens = userInput.split(SPACE_STRING);
+        int[] resolutions = new int[tokens.length];
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < tokens.length; i++) {
+            try {
+                resolutions[i] = Integer.parseInt(tokens[i]);
+            } catch (NumberFormatException numberFormatException) {
+                throw new IncorrectInputException(RENDER_ERROR);
+            }
+            if (resolutions[i] < minResolution(source) || resolutions[i] > maxResolution(source) ||
+                    !seen.add(resolutions[i])) {
+                throw new IncorrectInputException(RENDER_ERROR);
+            }
+        }
+        List<IntFunction<AsciiOutput>> targets = new ArrayList<>();
+        for (String renderTarget : renderTargets) {
+            targets.add(renderTarget(renderTarget));
+        }
+        MultiResolutionRenderer renderer = new MultiResolutionRenderer(subImgCharMatcher, matchingMode, cellAspect);
+        try {
+            renderer.render(source, resolutions, targets, conversionControl());
+            endProgress();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        System.out.printf(RENDER_MESSAGE, resolutions.length, renderer.getAggregatedResolutions());
+    }
+
+    /**
+     * Chooses the outputs of multi-resolution renders.
+     *
+     * @param userInput The targets, separated by spaces: console, html or binary.
+     * @throws IncorrectInputException If a target is unknown or repeated.
+     */
+    private void changeRenderTargets(String userInput) throws IncorrectInputException {
+        Set<String> newTargets = new LinkedHashSet<>();
+        for (String renderTarget : userInput.split(SPACE_STRING)) {
+            boolean known = renderTarget.equals(CONSOLE_COMMAND) || renderTarget.equals(HTML_COMMAND) ||
+                    renderTarget.equals(BINARY_COMMAND);
+            if (!known || !newTargets.add(renderTarget)) {
+                throw new IncorrectInputException(RENDER_TARGETS_ERROR);
+            }
+        }
+        renderTargets.clear();
+        renderTargets.addAll(newTargets);
+    }
+
+    /**
+     * Creates the factory of the outputs of a render target, one output per resolution.
+     *
+     * @param renderTarget The target: console, html or binary.
+     * @return The output of every resolution of the target.
+     */
+    private static IntFunction<AsciiOutput> renderTarget(String renderTarget) {
+        if (renderTarget.equals(HTML_COMMAND)) {
+            return renderResolution -> new HtmlAsciiOutput(String.format(RENDER_HTML_FILE_ADDRESS,
+                    renderResolution), DEFAULT_HTML_FONT);
+        }
+        if (renderTarget.equals(BINARY_COMMAND)) {
+            return renderResolution -> new BinaryAsciiOutput(String.format(RENDER_BINARY_FILE_ADDRESS,
+                    renderResolution), true);
+        }
+        return renderResolution -> new ConsoleAsciiOutput();
+    }
+
+    /**
+     * Converts every frame of an animated GIF, or of a numbered image sequence such as
+     * "frames/frame%04d.png", with the current settings and output method, and reports the throughput.
+     *
+     * @param path The path of the GIF file, or the pattern of the image sequence.
+     * @throws IncorrectInputException If the character set is empty, the pattern is malformed, the frames
+     *                                 cannot be read, a frame is too small or too wide for the resolution,
+     *                                 or the animation is interrupted.
+     */
+    private void runAnimation(String path) throws IncorrectInputException {
+        if (CHARSET.isEmpty()) {
+            throw new IncorrectInputException(EMPTY_CHARSET_ERROR);
+        }
+        AsciiOutput asciiOutput = createAsciiOutput();
+        try (FrameSource frameSource = FrameSource.open(path)) {
+            FramePipeline framePipeline = new FramePipeline(frameSource, resolution, cellAspect,
+                    subImgCharMatcher, matchingMode, luminanceKernel, asciiOutput,
+                    FramePipeline.DEFAULT_QUEUE_CAPACITY, conversionControl());
+            int frames = framePipeline.run();
+            endProgress();
+            System.out.printf(ANIMATION_MESSAGE, frames, framePipeline.getFramesPerSecond());
+        } catch (IOException ioException) {
+            throw new IncorrectInputException(ANIMATION_FILE_ERROR);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IncorrectInputException(ANIMATION_INTERRUPTED_ERROR);
+        } catch (IllegalFormatException illegalFormatException) {
+            // The pattern of an image sequence is checked when the sequence is opened
+            throw new IncorrectInputException(ANIMATION_PATTERN_ERROR);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            throw new IncorrectInputException(ANIMATION_RESOLUTION_ERROR);
         }
     }
 
@@ -337,26 +1638,159 @@ public class Shell {
      * exceeds boundaries.
      */
     private void resChange(String userInput) throws IncorrectInputException {
-        int maxResolution = image.getWidth();
-        int minResolution = Math.max(1, image.getWidth() / image.getHeight());
+        GreyShadeSource source = convertedGreyShades();
+        int maxResolution = maxResolution(source);
+        int minResolution = minResolution(source);
         if (userInput.equals(RESOLUTION_UP_COMMAND)) {
             if (resolution * 2 > maxResolution) {
                 throw new IncorrectInputException(EXCEEDING_BOUNDARIES_ERROR);
             }
+            replanImage(resolution * 2, cellAspect);
             resolution *= 2;
+            latencyBudgetMillis = 0;
             System.out.println(RESOLUTION_MESSAGE + resolution + DOT);
         } else if (userInput.equals(RESOLUTION_DOWN_COMMAND)) {
             if (resolution / 2 < minResolution) {
                 throw new IncorrectInputException(EXCEEDING_BOUNDARIES_ERROR);
             }
+            replanImage(resolution / 2, cellAspect);
             resolution /= 2;
+            latencyBudgetMillis = 0;
             System.out.println(RESOLUTION_MESSAGE + resolution + DOT);
+        } else if (userInput.startsWith(RESOLUTION_AUTO_COMMAND + SPACE_STRING)) {
+            double budgetMillis;
+            try {
+                budgetMillis = Double.parseDouble(userInput.substring(RESOLUTION_AUTO_COMMAND.length() + 1));
+            } catch (NumberFormatException numberFormatException) {
+                throw new IncorrectInputException(FORMAT_RESOLUTION_ERROR);
+            }
+            if (!(budgetMillis > 0)) {
+                throw new IncorrectInputException(FORMAT_RESOLUTION_ERROR);
+            }
+            latencyBudgetMillis = budgetMillis;
+            latencyModel();
         } else {
             throw new IncorrectInputException(FORMAT_RESOLUTION_ERROR);
         }
         createAsciiArtAlgorithm();
     }
 
+    /**
+     * Gets the highest resolution of the current grid for an image.
+     *
+     * @param source The grey shades of the image.
+     * @return The highest resolution.
+     */
+    private int maxResolution(GreyShadeSource source) {
+        return SubImageGrid.maxResolution(source.getWidth(), source.getHeight(), cellAspect);
+    }
+
+    /**
+     * Gets the lowest resolution of the current grid for an image.
+     *
+     * @param source The grey shades of the image.
+     * @return The lowest resolution.
+     */
+    private int minResolution(GreyShadeSource source) {
+        return SubImageGrid.minResolution(source.getWidth(), source.getHeight(), cellAspect);
+    }
+
+    /**
+     * Gets the latency model of the current matching mode, calibrating it on first use with the current
+     * kernel.
+     *
+     * @return The latency model.
+     */
+    private LatencyModel latencyModel() {
+        return latencyModels.computeIfAbsent(matchingMode,
+                mode -> LatencyModel.calibrate(subImgCharMatcher, mode, luminanceKernel));
+    }
+
+    /**
+     * Chooses the highest resolution whose predicted conversion fits the latency budget, converts the image
+     * at it while measuring both stages, and updates the latency model with the measurements. If the
+     * resolution stays and the sub-images are already computed, only matching and output run again, so a
+     * charset change still only rematches the cells whose character differs.
+     *
+     * @param asciiOutput The output to write the ASCII art to.
+     * @throws IncorrectInputException If the image does not fit the memory budget at the chosen resolution.
+     */
+    private void runAutoResolution(AsciiOutput asciiOutput) throws IncorrectInputException {
+        LatencyModel latencyModel = latencyModel();
+        GreyShadeSource source = convertedGreyShades();
+        int width = source.getWidth();
+        int height = source.getHeight();
+        IntToLongFunction cellCount = candidate -> {
+            SubImageGrid grid = SubImageGrid.of(width, height, candidate, cellAspect);
+            return (long) grid.getRows() * grid.getColumns();
+        };
+        int chosenResolution = latencyModel.chooseResolution(width, height, minResolution(source),
+                maxResolution(source), latencyBudgetMillis, cellCount);
+        boolean rebuild = asciiArtAlgorithmOutdated || chosenResolution != resolution;
+        if (chosenResolution != resolution) {
+            replanImage(chosenResolution, cellAspect);
+            resolution = chosenResolution;
+            System.out.println(RESOLUTION_MESSAGE + resolution + DOT);
+        }
+        long cells = cellCount.applyAsLong(resolution);
+        double predictedMillis = rebuild ? latencyModel.predictMillis(width, height, cells) :
+                latencyModel.predictMatchingMillis(cells);
+        long start = System.nanoTime();
+        if (rebuild) {
+            createAsciiArtAlgorithm();
+        } else {
+            asciiArtAlgorithm.setConversionControl(conversionControl());
+        }
+        long measured = System.nanoTime();
+        asciiArtAlgorithm.run(asciiOutput);
+        long end = System.nanoTime();
+        endProgress();
+        if (rebuild) {
+            latencyModel.update(width, height, cells, measured - start, end - measured);
+        } else {
+            latencyModel.updateMatching(cells, end - measured);
+        }
+        System.out.printf(AUTO_RESOLUTION_MESSAGE, resolution, predictedMillis,
+                (end - start) / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Switches to a named charset profile. The compiled matcher of the profile replaces the current one,
+     * and the computed sub-images are kept, so the next run only matches again the cells whose character
+     * differs.
+     *
+     * @param userInput The name of the profile.
+     * @throws IncorrectInputException If no profile has that name.
+     */
+    private void changeCharsetProfile(String userInput) throws IncorrectInputException {
+        CharsetProfile charsetProfile = CharsetProfile.forName(userInput);
+        if (charsetProfile == null) {
+            throw new IncorrectInputException(CHARSET_PROFILE_ERROR +
+                    String.join(SPACE_STRING, CharsetProfile.names()));
+        }
+        CHARSET.clear();
+        for (char c : charsetProfile.getChars()) {
+            CHARSET.add(c);
+        }
+        subImgCharMatcher = charsetProfile.getMatcher();
+        if (asciiArtAlgorithm != null) {
+            asciiArtAlgorithm.setSubImgCharMatcher(subImgCharMatcher);
+        }
+    }
+
+    /**
+     * Makes the current matcher editable before the character set is edited: a compiled profile matcher is
+     * shared and never changes, so it is replaced by a new matcher of the same characters.
+     */
+    private void ensureEditableCharMatcher() {
+        if (subImgCharMatcher.isImmutable()) {
+            subImgCharMatcher = new SubImgCharMatcher(charsetToArray());
+            if (asciiArtAlgorithm != null) {
+                asciiArtAlgorithm.setSubImgCharMatcher(subImgCharMatcher);
+            }
+        }
+    }
+
     /**
      * Removes characters from the character set based on user input.
      *
@@ -364,6 +1798,7 @@ public class Shell {
      * @throws IncorrectInputException If the input format is incorrect.
      */
     private void removeChars(String userInput) throws IncorrectInputException {
+        ensureEditableCharMatcher();
         if (userInput.length() == 1) {
             CHARSET.remove(userInput.charAt(0));
             subImgCharMatcher.removeChar(userInput.charAt(0));
@@ -406,6 +1841,7 @@ public class Shell {
      * @throws IncorrectInputException If the input format is incorrect.
      */
     private void addChars(String userInput) throws IncorrectInputException {
+        ensureEditableCharMatcher();
         if (userInput.length() == 1) {
             CHARSET.add(userInput.charAt(0));
             subImgCharMatcher.addChar(userInput.charAt(0));
@@ -0,0 +1,112 @@
+package ascii_art;
+
+/**
+ * The StageCost class models the duration of a stage of the conversion as costX * x + costY * y, for two
+ * measures x and y of the work of the stage (such as pixels and sub-images), and fits the two costs to the
+ * measured durations by least squares. Older measurements weigh exponentially less, so the costs follow
+ * the machine as it warms up or gets loaded.
+ */
+class StageCost {
+    /**
+     * Smallest ratio of the determinant of the fit to the product of its diagonal for which the
+     * measurements tell the two costs apart.
+     */
+    private static final double MIN_CONDITION = 1e-9;
+
+    /**
+     * Weight kept by the older measurements when a new one is added.
+     */
+    private final double retainedWeight;
+    /**
+     * Weighted sum of x * x.
+     */
+    private double sumXX;
+    /**
+     * Weighted sum of x * y.
+     */
+    private double sumXY;
+    /**
+     * Weighted sum of y * y.
+     */
+    private double sumYY;
+    /**
+     * Weighted sum of x * duration.
+     */
+    private double sumXT;
+    /**
+     * Weighted sum of y * duration.
+     */
+    private double sumYT;
+    /**
+     * The fitted cost per unit of x, in nanoseconds.
+     */
+    private double costX;
+    /**
+     * The fitted cost per unit of y, in nanoseconds.
+     */
+    private double costY;
+
+    /**
+     * Constructs a StageCost with no measurements.
+     *
+     * @param updateWeight Weight of a new measurement against all the older ones, between 0 and 1.
+     */
+    StageCost(double updateWeight) {
+        this.retainedWeight = 1 - updateWeight;
+    }
+
+    /**
+     * Adds a measured duration of the stage and fits the costs again.
+     *
+     * @param x     The first measure of the work.
+     * @param y     The second measure of the work.
+     * @param nanos The measured duration, in nanoseconds.
+     */
+    synchronized void add(double x, double y, double nanos) {
+        sumXX = retainedWeight * sumXX + x * x;
+        sumXY = retainedWeight * sumXY + x * y;
+        sumYY = retainedWeight * sumYY + y * y;
+        sumXT = retainedWeight * sumXT + x * nanos;
+        sumYT = retainedWeight * sumYT + y * nanos;
+        double determinant = sumXX * sumYY - sumXY * sumXY;
+        if (determinant > MIN_CONDITION * sumXX * sumYY) {
+            costX = (sumXT * sumYY - sumYT * sumXY) / determinant;
+            costY = (sumYT * sumXX - sumXT * sumXY) / determinant;
+        } else {
+            // All measurements have the same proportions of x and y, so only their total is known
+            double predicted = predict(x, y);
+            double scale = predicted > 0 ? nanos / predicted : 0;
+            costX = predicted > 0 ? costX * scale : sumXT / sumXX;
+            costY = predicted > 0 ? costY * scale : 0;
+        }
+        // A negative cost means the work of that kind is negligible: fit the other one alone
+        if (costX < 0) {
+            costX = 0;
+            costY = Math.max(0, sumYT / sumYY);
+        } else if (costY < 0) {
+            costY = 0;
+            costX = Math.max(0, sumXT / sumXX);
+        }
+    }
+
+    /**
+     * Predicts the duration of the stage.
+     *
+     * @param x The first measure of the work.
+     * @param y The second measure of the work.
+     * @return The predicted duration, in nanoseconds.
+     */
+    synchronized double predict(double x, double y) {
+        return costX * x + costY * y;
+    }
+
+    /**
+     * Describes the fitted costs.
+     *
+     * @return A description of the costs.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%.3f and %.3f", costX, costY);
+    }
+}
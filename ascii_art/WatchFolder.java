@@ -0,0 +1,520 @@
+package ascii_art;
+
+import ascii_output.HtmlAsciiOutput;
+import image.GreyShadeSource;
+import image.Image;
+import image_char_matching.CharsetProfile;
+import image_char_matching.KernelGreyShadeSource;
+import image_char_matching.LuminanceKernel;
+import image_char_matching.MappedGreyShadeSource;
+import image_char_matching.MatchingMode;
+import image_char_matching.SubImageGrid;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The WatchFolder class keeps converting the images dropped into a spool directory, in a single long-running
+ * process, so that the JVM, the fonts and the compiled character matcher are set up once for all files.
+ * New and modified files are reported by a WatchService, and a file is converted once its size and
+ * modification time have stayed the same for a short while, so files still being written are left alone.
+ * A file whose content hash is the same as when it was last converted is skipped. Conversions run on a
+ * bounded pool of workers with a bounded queue; when a burst fills the queue, the watching thread converts
+ * the next file itself, which holds back new work until the workers catch up. Only files with the extension
+ * of a format ImageIO can decode, or of a mappable format, are converted. Every image is written to an HTML
+ * file named after it in the output directory.
+ */
+public class WatchFolder implements Closeable {
+    /**
+     * Default resolution of the ASCII art grid.
+     */
+    public static final int DEFAULT_RESOLUTION = 128;
+    /**
+     * Default number of worker threads.
+     */
+    public static final int DEFAULT_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    /**
+     * Name of the default output directory, inside the spool directory.
+     */
+    private static final String DEFAULT_OUTPUT_DIRECTORY = "ascii";
+    /**
+     * Extension added to the name of an image to name its output.
+     */
+    private static final String OUTPUT_EXTENSION = ".html";
+    /**
+     * Prefix of the names of hidden files, such as the temporary files of some writers, which are ignored.
+     */
+    private static final String HIDDEN_PREFIX = ".";
+    /**
+     * Extensions of the uncompressed formats read by MappedGreyShadeSource.
+     */
+    private static final Set<String> MAPPED_EXTENSIONS = Set.of("pgm", "ppm", "pnm", "raw");
+    /**
+     * Extensions of the files that are converted, in lower case.
+     */
+    private static final Set<String> IMAGE_EXTENSIONS = imageExtensions();
+    /**
+     * Separator of a file name and its extension.
+     */
+    private static final char EXTENSION_SEPARATOR = '.';
+    /**
+     * Font of the HTML outputs.
+     */
+    private static final String HTML_FONT = "Courier New";
+    /**
+     * Time a file must stay unchanged before it is converted, in milliseconds.
+     */
+    private static final long STABLE_MILLIS = 100;
+    /**
+     * Time between two checks of the files that changed, in milliseconds.
+     */
+    private static final long CHECK_INTERVAL_MILLIS = 25;
+    /**
+     * Number of files that may wait for a worker, per worker.
+     */
+    private static final int QUEUE_PER_WORKER = 4;
+    /**
+     * Longest time to wait for the conversions in progress when closing, in seconds.
+     */
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+    /**
+     * Algorithm of the content hashes.
+     */
+    private static final String HASH_ALGORITHM = "SHA-256";
+    /**
+     * Size of the buffer used to hash files.
+     */
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /**
+     * Usage message.
+     */
+    private static final String USAGE_MESSAGE = "Usage: java ascii_art.WatchFolder <spool directory> " +
+            "[output directory] [resolution] [workers] [charset profile]";
+    /**
+     * Message printed for an unknown charset profile, followed by the registered ones.
+     */
+    private static final String UNKNOWN_PROFILE_MESSAGE = "Unknown charset profile %s, expected one of: %s%n";
+    /**
+     * Message printed when the watch starts.
+     */
+    private static final String WATCHING_MESSAGE = "Watching %s, writing to %s%n";
+    /**
+     * Message printed after every conversion.
+     */
+    private static final String CONVERTED_MESSAGE = "Converted %s in %.1f ms, %.1f ms after it last changed%n";
+
+    /**
+     * The directory the images are dropped into.
+     */
+    private final Path spoolDirectory;
+    /**
+     * The directory the outputs are written to.
+     */
+    private final Path outputDirectory;
+    /**
+     * Resolution of the ASCII art grid, lowered for images too small for it.
+     */
+    private final int resolution;
+    /**
+     * SubImgCharMatcher shared by all conversions.
+     */
+    private final SubImgCharMatcher subImgCharMatcher;
+    /**
+     * The kernel used to compute grey shades.
+     */
+    private final LuminanceKernel luminanceKernel;
+    /**
+     * The workers converting the files.
+     */
+    private final ThreadPoolExecutor workers;
+    /**
+     * The files that changed and are not yet converted, with their last seen state. Used only by the
+     * watching thread.
+     */
+    private final Map<Path, FileState> changedFiles = new HashMap<>();
+    /**
+     * The files being converted or waiting for a worker.
+     */
+    private final Set<Path> filesInFlight = ConcurrentHashMap.newKeySet();
+    /**
+     * The content hash of every file at its last conversion.
+     */
+    private final Map<Path, String> contentHashes = new ConcurrentHashMap<>();
+    /**
+     * Number of files converted.
+     */
+    private final AtomicInteger convertedFiles = new AtomicInteger();
+    /**
+     * Number of files skipped because their content did not change.
+     */
+    private final AtomicInteger skippedFiles = new AtomicInteger();
+    /**
+     * Number of files that could not be converted.
+     */
+    private final AtomicInteger failedFiles = new AtomicInteger();
+
+    /**
+     * Whether the watch has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The state of a file that changed, as last seen by the watching thread.
+     */
+    private static class FileState {
+        /**
+         * The size of the file.
+         */
+        private long size = -1;
+        /**
+         * The modification time of the file, in milliseconds.
+         */
+        private long modifiedMillis = -1;
+        /**
+         * When the file was last seen to change, from System.nanoTime.
+         */
+        private long changedNanos = System.nanoTime();
+    }
+
+    /**
+     * Constructs a WatchFolder. Nothing is watched until run is called.
+     *
+     * @param spoolDirectory    The directory the images are dropped into.
+     * @param outputDirectory   The directory the outputs are written to, created if missing.
+     * @param resolution        The resolution of the ASCII art grid.
+     * @param workers           The number of worker threads.
+     * @param subImgCharMatcher The SubImgCharMatcher shared by all conversions, which must not be changed
+     *                          while the watch runs.
+     * @param luminanceKernel   The kernel used to compute grey shades.
+     * @throws IOException If the output directory cannot be created.
+     */
+    public WatchFolder(Path spoolDirectory, Path outputDirectory, int resolution, int workers,
+                       SubImgCharMatcher subImgCharMatcher, LuminanceKernel luminanceKernel) throws IOException {
+        this.spoolDirectory = spoolDirectory.toAbsolutePath().normalize();
+        this.outputDirectory = Files.createDirectories(outputDirectory).toAbsolutePath().normalize();
+        this.resolution = resolution;
+        this.subImgCharMatcher = subImgCharMatcher;
+        this.luminanceKernel = luminanceKernel;
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers * QUEUE_PER_WORKER), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Watches a spool directory until the process is stopped.
+     *
+     * @param args The spool directory, then optionally the output directory (by default "ascii" inside the
+     *             spool directory), the resolution, the number of worker threads and the name of the charset
+     *             profile (digits by default).
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 5) {
+            System.err.println(USAGE_MESSAGE);
+            System.exit(1);
+        }
+        Path spoolDirectory = Path.of(args[0]);
+        Path outputDirectory = args.length > 1 ? Path.of(args[1]) : spoolDirectory.resolve(DEFAULT_OUTPUT_DIRECTORY);
+        try {
+            int resolution = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RESOLUTION;
+            int workers = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_WORKERS;
+            if (resolution < 1 || workers < 1) {
+                throw new NumberFormatException();
+            }
+            String profileName = args.length > 4 ? args[4] : CharsetProfile.DIGITS;
+            CharsetProfile charsetProfile = CharsetProfile.forName(profileName);
+            if (charsetProfile == null) {
+                System.err.printf(UNKNOWN_PROFILE_MESSAGE, profileName, String.join(" ", CharsetProfile.names()));
+                System.exit(1);
+            }
+            WatchFolder watchFolder = new WatchFolder(spoolDirectory, outputDirectory, resolution, workers,
+                    charsetProfile.getMatcher(), LuminanceKernel.DOUBLE);
+            Runtime.getRuntime().addShutdownHook(new Thread(watchFolder::close));
+            System.out.printf(WATCHING_MESSAGE, watchFolder.spoolDirectory, watchFolder.outputDirectory);
+            watchFolder.run();
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE_MESSAGE);
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Converts the images already in the spool directory, then every image created or modified in it,
+     * until the watch is closed or the directory is removed. Runs on the calling thread.
+     *
+     * @throws IOException          If the spool directory cannot be watched.
+     * @throws InterruptedException If the calling thread is interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+        try (WatchService watchService = spoolDirectory.getFileSystem().newWatchService()) {
+            WatchKey watchKey = spoolDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            // Files dropped while no watch was running are converted too
+            scanSpoolDirectory();
+            while (!closed) {
+                WatchKey key = watchService.poll(CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        handleEvent(event);
+                    }
+                    if (!key.reset()) {
+                        // The spool directory is gone
+                        break;
+                    }
+                }
+                submitStableFiles();
+            }
+            watchKey.cancel();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stops the watch and waits for the conversions in progress and queued to complete.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.shutdown();
+        try {
+            workers.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of files converted.
+     *
+     * @return The number of files converted.
+     */
+    public int getConvertedFiles() {
+        return convertedFiles.get();
+    }
+
+    /**
+     * Gets the number of files skipped because their content did not change since their last conversion.
+     *
+     * @return The number of skipped files.
+     */
+    public int getSkippedFiles() {
+        return skippedFiles.get();
+    }
+
+    /**
+     * Gets the number of files that could not be converted.
+     *
+     * @return The number of failed files.
+     */
+    public int getFailedFiles() {
+        return failedFiles.get();
+    }
+
+    /**
+     * Records an event of the spool directory.
+     *
+     * @param event The event.
+     * @throws IOException If events were lost and the spool directory cannot be listed again.
+     */
+    private void handleEvent(WatchEvent<?> event) throws IOException {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            // Events were lost, so every file may have changed
+            scanSpoolDirectory();
+            return;
+        }
+        Path file = spoolDirectory.resolve((Path) event.context());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            changedFiles.remove(file);
+            contentHashes.remove(file);
+        } else if (!file.equals(outputDirectory)) {
+            changedFiles.computeIfAbsent(file, key -> new FileState());
+        }
+    }
+
+    /**
+     * Marks every file of the spool directory as changed.
+     *
+     * @throws IOException If the spool directory cannot be listed.
+     */
+    private void scanSpoolDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDirectory, Files::isRegularFile)) {
+            for (Path file : files) {
+                changedFiles.computeIfAbsent(file, key -> new FileState());
+            }
+        }
+    }
+
+    /**
+     * Hands the changed files that have stayed the same long enough to the workers. A file that is still
+     * being converted waits until its conversion completes, so that a file is never converted twice at once.
+     */
+    private void submitStableFiles() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, FileState>> iterator = changedFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, FileState> entry = iterator.next();
+            Path file = entry.getKey();
+            FileState state = entry.getValue();
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // Deleted or renamed before it could be converted
+                iterator.remove();
+                continue;
+            }
+            if (!attributes.isRegularFile() || file.getFileName().toString().startsWith(HIDDEN_PREFIX) ||
+                    !IMAGE_EXTENSIONS.contains(extension(file))) {
+                iterator.remove();
+                continue;
+            }
+            long modifiedMillis = attributes.lastModifiedTime().toMillis();
+            if (attributes.size() != state.size || modifiedMillis != state.modifiedMillis) {
+                state.size = attributes.size();
+                state.modifiedMillis = modifiedMillis;
+                state.changedNanos = now;
+            } else if (now - state.changedNanos >= TimeUnit.MILLISECONDS.toNanos(STABLE_MILLIS) &&
+                    filesInFlight.add(file)) {
+                iterator.remove();
+                long changedNanos = state.changedNanos;
+                workers.execute(() -> convert(file, changedNanos));
+            }
+        }
+    }
+
+    /**
+     * Converts a file and writes it to its output, unless its content is the same as at its last conversion.
+     *
+     * @param file         The file to convert.
+     * @param changedNanos When the file was last seen to change, from System.nanoTime.
+     */
+    private void convert(Path file, long changedNanos) {
+        long start = System.nanoTime();
+        try {
+            String contentHash = contentHash(file);
+            if (contentHash.equals(contentHashes.get(file))) {
+                skippedFiles.incrementAndGet();
+                return;
+            }
+            String filename = file.toString();
+            GreyShadeSource source = MappedGreyShadeSource.isMappable(filename) ?
+                    MappedGreyShadeSource.open(filename, luminanceKernel) :
+                    new KernelGreyShadeSource(new Image(filename), luminanceKernel);
+            SubImageGrid grid = SubImageGrid.square(source.getWidth(), source.getHeight(),
+                    fittedResolution(source, resolution));
+            char[][] asciiArt = new AsciiArtAlgorithm(source, grid, subImgCharMatcher,
+                    MatchingMode.BRIGHTNESS).run();
+            new HtmlAsciiOutput(outputDirectory.resolve(file.getFileName() + OUTPUT_EXTENSION).toString(),
+                    HTML_FONT).out(asciiArt);
+            contentHashes.put(file, contentHash);
+            convertedFiles.incrementAndGet();
+            long end = System.nanoTime();
+            System.out.printf(CONVERTED_MESSAGE, file.getFileName(), (end - start) / NANOS_PER_MILLI,
+                    (end - changedNanos) / NANOS_PER_MILLI);
+        } catch (IOException | RuntimeException e) {
+            failedFiles.incrementAndGet();
+            Logger.getGlobal().warning(String.format("Failed to convert \"%s\": %s", file, e.getMessage()));
+        } finally {
+            filesInFlight.remove(file);
+        }
+    }
+
+    /**
+     * Collects the extensions of the files that can be converted: those of the formats ImageIO can decode,
+     * and those of the mappable formats.
+     *
+     * @return The extensions, in lower case.
+     */
+    private static Set<String> imageExtensions() {
+        Set<String> extensions = new HashSet<>(MAPPED_EXTENSIONS);
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            extensions.add(suffix.toLowerCase(Locale.ROOT));
+        }
+        return extensions;
+    }
+
+    /**
+     * Gets the extension of a file name.
+     *
+     * @param file The file.
+     * @return The extension in lower case, or an empty string if the name has none.
+     */
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int separator = name.lastIndexOf(EXTENSION_SEPARATOR);
+        return separator < 0 ? "" : name.substring(separator + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Lowers a resolution to the highest one an image allows, or raises it to the lowest.
+     *
+     * @param source     The grey shades of the image.
+     * @param resolution The requested resolution.
+     * @return The resolution to convert the image at.
+     */
+    private static int fittedResolution(GreyShadeSource source, int resolution) {
+        int maxResolution = SubImageGrid.maxResolution(source.getWidth(), source.getHeight(), 0);
+        int minResolution = SubImageGrid.minResolution(source.getWidth(), source.getHeight(), 0);
+        return Math.max(minResolution, Math.min(resolution, maxResolution));
+    }
+
+    /**
+     * Hashes the content of a file.
+     *
+     * @param file The file.
+     * @return The hash of the content, in hexadecimal.
+     * @throws IOException If the file cannot be read.
+     */
+    private static String contentHash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform provides SHA-256
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read = input.read(buffer);
+            while (read >= 0) {
+                digest.update(buffer, 0, read);
+                read = input.read(buffer);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,118 @@
+package ascii_output;
+
+/**
+ * Output a 2D array of chars to an ANSI terminal, redrawing only what changed since the previous output.
+ * The first grid, and any grid of a different size, clears the terminal and is painted in full at its top,
+ * in the same layout as ConsoleAsciiOutput. Later grids only move the cursor to the runs of changed cells
+ * and rewrite them, so a small change costs a few bytes instead of the whole grid. The same instance must
+ * be used for consecutive outputs, and the grid must fit in the terminal, since cursor positions are
+ * absolute.
+ */
+public class AnsiConsoleAsciiOutput implements AsciiOutput {
+    /**
+     * The ANSI control sequence introducer.
+     */
+    private static final String ESCAPE = "\u001b[";
+    /**
+     * ANSI sequence that clears the terminal and moves the cursor to its top left corner.
+     */
+    private static final String CLEAR_SCREEN = ESCAPE + "2J" + ESCAPE + "H";
+    /**
+     * ANSI sequence that clears everything from the cursor to the end of the terminal.
+     */
+    private static final String CLEAR_TO_END = ESCAPE + "J";
+    /**
+     * Separator written after every cell, as in ConsoleAsciiOutput.
+     */
+    private static final char CELL_SEPARATOR = ' ';
+    /**
+     * Number of terminal columns taken by a cell.
+     */
+    private static final int COLUMNS_PER_CELL = 2;
+
+    /**
+     * The grid currently shown in the terminal, or null before the first output.
+     */
+    private char[][] shownChars;
+
+    /**
+     * Outputs a 2D array of characters, rewriting only the cells that differ from the previous output, or
+     * repainting the terminal if the grid size changed.
+     *
+     * @param chars The 2D array of characters to be displayed in the terminal.
+     */
+    @Override
+    public void out(char[][] chars) {
+        StringBuilder terminalOutput = new StringBuilder();
+        if (shownChars == null || shownChars.length != chars.length ||
+                shownChars[0].length != chars[0].length) {
+            repaint(chars, terminalOutput);
+        } else {
+            for (int y = 0; y < chars.length; y++) {
+                redrawChangedRuns(y, chars[y], terminalOutput);
+            }
+        }
+        // Leave the cursor below the grid, and clear whatever was printed there since the last output
+        moveCursor(chars.length, 0, terminalOutput);
+        terminalOutput.append(CLEAR_TO_END);
+        System.out.print(terminalOutput);
+        System.out.flush();
+    }
+
+    /**
+     * Forgets the grid shown in the terminal, so that the next output repaints it in full.
+     */
+    public void reset() {
+        shownChars = null;
+    }
+
+    /**
+     * Clears the terminal and paints the whole grid.
+     *
+     * @param chars          The grid to paint.
+     * @param terminalOutput The buffer the terminal output is appended to.
+     */
+    private void repaint(char[][] chars, StringBuilder terminalOutput) {
+        terminalOutput.append(CLEAR_SCREEN);
+        shownChars = new char[chars.length][];
+        for (int y = 0; y < chars.length; y++) {
+            for (int x = 0; x < chars[y].length; x++) {
+                terminalOutput.append(chars[y][x]).append(CELL_SEPARATOR);
+            }
+            terminalOutput.append(System.lineSeparator());
+            shownChars[y] = chars[y].clone();
+        }
+    }
+
+    /**
+     * Rewrites the runs of a row that changed since the previous output.
+     *
+     * @param y              The row index.
+     * @param row            The new row.
+     * @param terminalOutput The buffer the terminal output is appended to.
+     */
+    private void redrawChangedRuns(int y, char[] row, StringBuilder terminalOutput) {
+        char[] shownRow = shownChars[y];
+        int x = ChangedRuns.nextRunStart(row, shownRow, 0);
+        while (x < row.length) {
+            int runEnd = ChangedRuns.runEnd(row, shownRow, x);
+            moveCursor(y, x, terminalOutput);
+            for (int col = x; col < runEnd; col++) {
+                terminalOutput.append(row[col]).append(CELL_SEPARATOR);
+                shownRow[col] = row[col];
+            }
+            x = ChangedRuns.nextRunStart(row, shownRow, runEnd);
+        }
+    }
+
+    /**
+     * Moves the cursor to a cell of the grid.
+     *
+     * @param y              The row of the cell.
+     * @param x              The column of the cell.
+     * @param terminalOutput The buffer the terminal output is appended to.
+     */
+    private static void moveCursor(int y, int x, StringBuilder terminalOutput) {
+        terminalOutput.append(ESCAPE).append(y + 1).append(';').append(x * COLUMNS_PER_CELL + 1).append('H');
+    }
+}
@@ -0,0 +1,57 @@
+package ascii_output;
+
+import java.io.IOException;
+
+/**
+ * The AsciiAnimationPlayer class replays an animation file written by DeltaAnimationAsciiOutput in the
+ * terminal, at a fixed number of frames per second. Frames are drawn with AnsiConsoleAsciiOutput, so only
+ * the cells that change between frames are rewritten.
+ * <p>
+ * Usage: {@code java ascii_output.AsciiAnimationPlayer <animation file> [frames per second]}
+ */
+public class AsciiAnimationPlayer {
+    /**
+     * Default playback speed.
+     */
+    private static final double DEFAULT_FRAMES_PER_SECOND = 10;
+    /**
+     * Milliseconds per second.
+     */
+    private static final double MILLIS_PER_SECOND = 1000;
+    /**
+     * Usage message.
+     */
+    private static final String USAGE = "Usage: AsciiAnimationPlayer <animation file> [frames per second]";
+
+    /**
+     * Private default constructor to prevent instantiation of the class.
+     */
+    private AsciiAnimationPlayer() {
+    }
+
+    /**
+     * Plays an animation file.
+     *
+     * @param args The animation file, and optionally the playback speed in frames per second.
+     * @throws IOException          If the file cannot be read.
+     * @throws InterruptedException If playback is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        double framesPerSecond = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_FRAMES_PER_SECOND;
+        long frameMillis = Math.round(MILLIS_PER_SECOND / framesPerSecond);
+        AsciiOutput asciiOutput = new AnsiConsoleAsciiOutput();
+        try (AsciiAnimationReader reader = new AsciiAnimationReader(args[0])) {
+            char[][] frame = reader.nextFrame();
+            while (frame != null) {
+                long start = System.currentTimeMillis();
+                asciiOutput.out(frame);
+                Thread.sleep(Math.max(0, frameMillis - (System.currentTimeMillis() - start)));
+                frame = reader.nextFrame();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ascii_output;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The AsciiAnimationReader class reads an animation file written by DeltaAnimationAsciiOutput, and
+ * reconstructs its frames one at a time by applying every delta frame to the previous frame.
+ */
+public class AsciiAnimationReader implements Closeable {
+    /**
+     * Largest number of UTF-8 bytes of a char: 3, since a surrogate pair is two chars in 4 bytes.
+     */
+    private static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+
+    /**
+     * The open animation file.
+     */
+    private final DataInputStream reader;
+    /**
+     * The current frame, updated in place by delta frames.
+     */
+    private char[][] frame;
+    /**
+     * Whether the end marker has been read.
+     */
+    private boolean ended;
+
+    /**
+     * Opens an animation file.
+     *
+     * @param filename The name of the animation file.
+     * @throws IOException If the file cannot be opened or is not an animation file.
+     */
+    public AsciiAnimationReader(String filename) throws IOException {
+        reader = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+        if (reader.readInt() != DeltaAnimationAsciiOutput.MAGIC ||
+                reader.readShort() != DeltaAnimationAsciiOutput.VERSION) {
+            reader.close();
+            throw new IOException("Not an ASCII animation: " + filename);
+        }
+    }
+
+    /**
+     * Reads the next frame. The returned array is reused and updated by the following calls, so callers
+     * that keep frames must copy them.
+     *
+     * @return The next frame, or null at the end of the animation.
+     * @throws IOException If the file is corrupt.
+     */
+    public char[][] nextFrame() throws IOException {
+        if (ended) {
+            return null;
+        }
+        byte frameType = reader.readByte();
+        if (frameType == DeltaAnimationAsciiOutput.KEYFRAME) {
+            int rows = reader.readUnsignedShort();
+            int columns = reader.readUnsignedShort();
+            frame = new char[rows][];
+            for (int y = 0; y < rows; y++) {
+                frame[y] = readText(columns).toCharArray();
+                if (frame[y].length != columns) {
+                    throw new IOException("Corrupt keyframe row " + y);
+                }
+            }
+        } else if (frameType == DeltaAnimationAsciiOutput.DELTA_FRAME && frame != null) {
+            int changedRows = reader.readUnsignedShort();
+            for (int i = 0; i < changedRows; i++) {
+                int y = reader.readUnsignedShort();
+                if (y >= frame.length) {
+                    throw new IOException("Corrupt delta frame row " + y);
+                }
+                char[] row = frame[y];
+                int runs = reader.readUnsignedShort();
+                for (int j = 0; j < runs; j++) {
+                    int firstColumn = reader.readUnsignedShort();
+                    String run = readText(row.length);
+                    if (firstColumn + run.length() > row.length) {
+                        throw new IOException("Corrupt delta frame run in row " + y);
+                    }
+                    run.getChars(0, run.length(), row, firstColumn);
+                }
+            }
+        } else if (frameType == DeltaAnimationAsciiOutput.END) {
+            ended = true;
+            return null;
+        } else {
+            throw new IOException("Corrupt animation frame");
+        }
+        return frame;
+    }
+
+    /**
+     * Reads chars written as an int number of bytes followed by their UTF-8 encoding.
+     *
+     * @param maxChars The largest number of chars expected, which bounds the number of bytes.
+     * @return The chars.
+     * @throws IOException If the file is corrupt.
+     */
+    private String readText(int maxChars) throws IOException {
+        int length = reader.readInt();
+        if (length < 0 || length > (long) maxChars * MAX_UTF8_BYTES_PER_CHAR) {
+            throw new IOException("Corrupt text length " + length);
+        }
+        byte[] bytes = new byte[length];
+        reader.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes the animation file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
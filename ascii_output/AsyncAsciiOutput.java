@@ -0,0 +1,216 @@
+package ascii_output;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+/**
+ * The AsyncAsciiOutput class writes ASCII art to another output on a background writer thread, so that the
+ * caller returns as soon as the grid is computed.
+ * One grid may be in the middle of being written while the next grid of every target waits. A grid that is
+ * still waiting when a newer one for the same target arrives is superseded and never written, since only the
+ * latest render matters for outputs that overwrite the same file. Grids of different targets are all
+ * written, in the order they were last queued. flush waits until every queued grid is written.
+ * The target output is captured with every grid, so it may be changed between outputs.
+ */
+public class AsyncAsciiOutput implements ColorAsciiOutput {
+    /**
+     * Name of the writer thread.
+     */
+    private static final String WRITER_THREAD_NAME = "ascii-output-writer";
+
+    /**
+     * Guards the pending grid and the state of the writer.
+     */
+    private final Object lock = new Object();
+    /**
+     * The output that grids are written to.
+     */
+    private AsciiOutput target;
+    /**
+     * The grids waiting to be written, at most one per target, in the order they are written.
+     */
+    private final Deque<PendingGrid> pendingGrids = new ArrayDeque<>();
+    /**
+     * Whether the writer is writing a grid.
+     */
+    private boolean writing;
+    /**
+     * The writer thread, started with the first output.
+     */
+    private Thread writer;
+    /**
+     * The number of grids written.
+     */
+    private long completedWrites;
+    /**
+     * The number of grids superseded before being written.
+     */
+    private long supersededWrites;
+
+    /**
+     * Sets the output that the following grids are written to.
+     *
+     * @param target The output.
+     */
+    public void setTarget(AsciiOutput target) {
+        synchronized (lock) {
+            this.target = target;
+        }
+    }
+
+    /**
+     * Queues a 2D array of chars to be written by the writer thread, replacing any grid of the same target
+     * still waiting.
+     *
+     * @param chars The 2D array of characters.
+     */
+    @Override
+    public void out(char[][] chars) {
+        out(chars, null);
+    }
+
+    /**
+     * Queues a 2D array of chars and their colors to be written by the writer thread, replacing any grid of
+     * the same target still waiting. The colors are used only if the target draws colors.
+     *
+     * @param chars  The 2D array of characters.
+     * @param colors The color of every character, as packed RGB, or null.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        synchronized (lock) {
+            Iterator<PendingGrid> pending = pendingGrids.iterator();
+            while (pending.hasNext()) {
+                if (pending.next().target == target) {
+                    // Moved to the back, so that it is written after the grids queued before it
+                    pending.remove();
+                    supersededWrites++;
+                }
+            }
+            pendingGrids.addLast(new PendingGrid(target, chars, colors));
+            if (writer == null) {
+                writer = new Thread(this::writeGrids, WRITER_THREAD_NAME);
+                writer.setDaemon(true);
+                writer.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Tells whether the current target draws colors.
+     *
+     * @return True if the current target draws colors.
+     */
+    @Override
+    public boolean drawsColors() {
+        synchronized (lock) {
+            return target instanceof ColorAsciiOutput && ((ColorAsciiOutput) target).drawsColors();
+        }
+    }
+
+    /**
+     * Waits until every queued grid has been written or superseded.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        synchronized (lock) {
+            while (!pendingGrids.isEmpty() || writing) {
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of grids written.
+     *
+     * @return The number of grids written.
+     */
+    public long getCompletedWrites() {
+        synchronized (lock) {
+            return completedWrites;
+        }
+    }
+
+    /**
+     * Gets the number of grids superseded by a newer grid before being written.
+     *
+     * @return The number of superseded grids.
+     */
+    public long getSupersededWrites() {
+        synchronized (lock) {
+            return supersededWrites;
+        }
+    }
+
+    /**
+     * The writer thread: takes the first pending grid and writes it, outside of the lock so that newer grids
+     * can be queued meanwhile.
+     */
+    private void writeGrids() {
+        while (true) {
+            PendingGrid grid;
+            synchronized (lock) {
+                while (pendingGrids.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                grid = pendingGrids.removeFirst();
+                writing = true;
+            }
+            try {
+                if (grid.colors != null && grid.target instanceof ColorAsciiOutput) {
+                    ((ColorAsciiOutput) grid.target).out(grid.chars, grid.colors);
+                } else {
+                    grid.target.out(grid.chars);
+                }
+            } catch (RuntimeException e) {
+                // Keep the writer alive for the next grids
+                Logger.getGlobal().severe("Failed to write ASCII art: " + e);
+            } finally {
+                synchronized (lock) {
+                    writing = false;
+                    completedWrites++;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * A grid waiting to be written, with the output it is written to.
+     */
+    private static class PendingGrid {
+        /**
+         * The output of the grid.
+         */
+        private final AsciiOutput target;
+        /**
+         * The 2D array of characters.
+         */
+        private final char[][] chars;
+        /**
+         * The colors of the grid, or null.
+         */
+        private final int[][] colors;
+
+        /**
+         * Constructs a PendingGrid.
+         *
+         * @param target The output of the grid.
+         * @param chars  The 2D array of characters.
+         * @param colors The colors of the grid, or null.
+         */
+        private PendingGrid(AsciiOutput target, char[][] chars, int[][] colors) {
+            this.target = target;
+            this.chars = chars;
+            this.colors = colors;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ascii_output;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to a compact binary file, for storage and transfer of renders.
+ * The grid is stored as indices into a table of the distinct chars it holds, bit-packed to the fewest bits
+ * that number all of them (4 bits for the ten digits). With run-length encoding enabled, a row is stored as
+ * runs of equal chars instead whenever that is smaller. BinaryAsciiReader reads the file back.
+ * <p>
+ * File layout (big endian, as written by DataOutputStream):
+ * <pre>
+ * int    MAGIC
+ * short  VERSION
+ * byte   flags (RUN_LENGTH_ENCODED)
+ * int    rows, int columns, each at most MAX_DIMENSION, with at most MAX_CELLS cells in all
+ * int    number of chars in the table, then every char
+ * per row, starting on a whole byte:
+ *   with RUN_LENGTH_ENCODED, 1 bit: 1 for runs, 0 for packed indices
+ *   packed: columns indices of bitsPerIndex bits
+ *   runs:   until the row is full, an index of bitsPerIndex bits and the run length minus 1 in
+ *           bitsPerLength bits
+ * </pre>
+ * bitsPerIndex is the width of the largest table index and bitsPerLength that of columns minus 1.
+ */
+public class BinaryAsciiOutput implements AsciiOutput {
+    /**
+     * Magic number identifying a binary ASCII art grid ("AAGB").
+     */
+    static final int MAGIC = 0x41414742;
+    /**
+     * Current format version.
+     */
+    static final short VERSION = 2;
+    /**
+     * Largest number of rows or columns of a grid.
+     */
+    static final int MAX_DIMENSION = 0xFFFF;
+    /**
+     * Largest number of cells of a grid, so that a corrupt header cannot make the reader allocate more
+     * than 512 MB of chars.
+     */
+    static final long MAX_CELLS = 1L << 28;
+    /**
+     * Flag of files whose rows may be run-length encoded.
+     */
+    static final int RUN_LENGTH_ENCODED = 1;
+    /**
+     * Number of bits in an int.
+     */
+    private static final int INT_BITS = 32;
+
+    /**
+     * the file name
+     */
+    private final String filename;
+    /**
+     * Whether rows may be stored as runs of equal chars.
+     */
+    private final boolean runLengthEncoded;
+
+    /**
+     * Constructor for BinaryAsciiOutput.
+     *
+     * @param filename         The name of the binary file to be generated.
+     * @param runLengthEncoded Whether rows may be stored as runs of equal chars.
+     */
+    public BinaryAsciiOutput(String filename, boolean runLengthEncoded) {
+        this.filename = filename;
+        this.runLengthEncoded = runLengthEncoded;
+    }
+
+    /**
+     * Writes a 2D array of characters to the binary file, replacing its contents.
+     *
+     * @param chars The 2D array of characters.
+     */
+    @Override
+    public void out(char[][] chars) {
+        try (OutputStream output = new FileOutputStream(filename)) {
+            write(chars, output, runLengthEncoded);
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Encodes a 2D array of characters to a stream, for example a network connection.
+     *
+     * @param chars            The 2D array of characters, with rows of equal length.
+     * @param output           The stream to write to, which is flushed but not closed.
+     * @param runLengthEncoded Whether rows may be stored as runs of equal chars.
+     * @throws IOException If the stream cannot be written.
+     */
+    public static void write(char[][] chars, OutputStream output, boolean runLengthEncoded) throws IOException {
+        int rows = chars.length;
+        int columns = rows == 0 ? 0 : chars[0].length;
+        if (!fitsFormat(rows, columns)) {
+            throw new IOException("Grid too large for the binary format");
+        }
+        char[] table = charTable(chars);
+        // Index of every char of the table, by char
+        int[] indices = new int[Character.MAX_VALUE + 1];
+        for (int i = 0; i < table.length; i++) {
+            indices[table[i]] = i;
+        }
+        int bitsPerIndex = bitsFor(table.length - 1);
+        int bitsPerLength = bitsFor(columns - 1);
+
+        DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(output));
+        writer.writeInt(MAGIC);
+        writer.writeShort(VERSION);
+        writer.writeByte(runLengthEncoded ? RUN_LENGTH_ENCODED : 0);
+        writer.writeInt(rows);
+        writer.writeInt(columns);
+        writer.writeInt(table.length);
+        for (char c : table) {
+            writer.writeChar(c);
+        }
+        BitWriter bitWriter = new BitWriter(writer);
+        for (char[] row : chars) {
+            if (row.length != columns) {
+                throw new IOException("Rows of different lengths cannot be encoded");
+            }
+            boolean asRuns = runLengthEncoded &&
+                    (long) countRuns(row) * (bitsPerIndex + bitsPerLength) < (long) columns * bitsPerIndex;
+            if (runLengthEncoded) {
+                bitWriter.write(asRuns ? 1 : 0, 1);
+            }
+            if (asRuns) {
+                writeRuns(bitWriter, row, indices, bitsPerIndex, bitsPerLength);
+            } else {
+                for (char c : row) {
+                    bitWriter.write(indices[c], bitsPerIndex);
+                }
+            }
+            bitWriter.alignToByte();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Checks whether a grid of the given size can be stored in the format.
+     *
+     * @param rows    The number of rows.
+     * @param columns The number of columns.
+     * @return true if both are between 0 and MAX_DIMENSION and the grid has at most MAX_CELLS cells.
+     */
+    static boolean fitsFormat(int rows, int columns) {
+        return rows >= 0 && columns >= 0 && rows <= MAX_DIMENSION && columns <= MAX_DIMENSION &&
+                (long) rows * columns <= MAX_CELLS;
+    }
+
+    /**
+     * Writes a row as runs of equal chars.
+     *
+     * @param bitWriter     The writer of the packed bits.
+     * @param row           The row.
+     * @param indices       The table index of every char.
+     * @param bitsPerIndex  The width of an index.
+     * @param bitsPerLength The width of a run length.
+     * @throws IOException If the stream cannot be written.
+     */
+    private static void writeRuns(BitWriter bitWriter, char[] row, int[] indices, int bitsPerIndex,
+                                  int bitsPerLength) throws IOException {
+        int x = 0;
+        while (x < row.length) {
+            int runEnd = x + 1;
+            while (runEnd < row.length && row[runEnd] == row[x]) {
+                runEnd++;
+            }
+            bitWriter.write(indices[row[x]], bitsPerIndex);
+            bitWriter.write(runEnd - x - 1, bitsPerLength);
+            x = runEnd;
+        }
+    }
+
+    /**
+     * Counts the runs of equal chars in a row.
+     *
+     * @param row The row.
+     * @return The number of runs.
+     */
+    private static int countRuns(char[] row) {
+        int runs = row.length == 0 ? 0 : 1;
+        for (int x = 1; x < row.length; x++) {
+            if (row[x] != row[x - 1]) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Collects the distinct chars of a grid.
+     *
+     * @param chars The 2D array of characters.
+     * @return The distinct chars, in increasing order.
+     */
+    private static char[] charTable(char[][] chars) {
+        boolean[] used = new boolean[Character.MAX_VALUE + 1];
+        int count = 0;
+        for (char[] row : chars) {
+            for (char c : row) {
+                if (!used[c]) {
+                    used[c] = true;
+                    count++;
+                }
+            }
+        }
+        char[] table = new char[count];
+        int i = 0;
+        for (int c = 0; c <= Character.MAX_VALUE && i < count; c++) {
+            if (used[c]) {
+                table[i++] = (char) c;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Calculates the number of bits needed to write values from 0 up to a maximum.
+     *
+     * @param maxValue The largest value.
+     * @return The number of bits, 0 if the maximum is 0 or less.
+     */
+    static int bitsFor(int maxValue) {
+        return maxValue <= 0 ? 0 : INT_BITS - Integer.numberOfLeadingZeros(maxValue);
+    }
+}
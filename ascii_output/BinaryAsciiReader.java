@@ -0,0 +1,137 @@
+package ascii_output;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The BinaryAsciiReader class reads a grid written by BinaryAsciiOutput back into a 2D array of chars, and can
+ * write it to any other output, such as the console or an HTML file.
+ * <p>
+ * Usage: {@code java ascii_output.BinaryAsciiReader <binary file> [html file]}
+ */
+public class BinaryAsciiReader {
+    /**
+     * Usage message.
+     */
+    private static final String USAGE = "Usage: BinaryAsciiReader <binary file> [html file]";
+    /**
+     * Font of the HTML output.
+     */
+    private static final String HTML_FONT = "Courier New";
+
+    /**
+     * Private default constructor to prevent instantiation of the class.
+     */
+    private BinaryAsciiReader() {
+    }
+
+    /**
+     * Prints a binary grid file to the console, or writes it to an HTML file.
+     *
+     * @param args The binary file, and optionally the HTML file to write.
+     * @throws IOException If the file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        replay(args[0], args.length > 1 ? new HtmlAsciiOutput(args[1], HTML_FONT) : new ConsoleAsciiOutput());
+    }
+
+    /**
+     * Reads a binary grid file and writes the grid to an output.
+     *
+     * @param filename    The name of the binary file.
+     * @param asciiOutput The output to write the grid to.
+     * @throws IOException If the file cannot be read or is not a binary grid.
+     */
+    public static void replay(String filename, AsciiOutput asciiOutput) throws IOException {
+        asciiOutput.out(read(filename));
+    }
+
+    /**
+     * Reads a binary grid file.
+     *
+     * @param filename The name of the binary file.
+     * @return The 2D array of characters.
+     * @throws IOException If the file cannot be read or is not a binary grid.
+     */
+    public static char[][] read(String filename) throws IOException {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(filename))) {
+            return read(input);
+        }
+    }
+
+    /**
+     * Decodes a grid from a stream, for example a network connection.
+     *
+     * @param input The stream to read from, which is read up to the end of the grid and not closed.
+     * @return The 2D array of characters.
+     * @throws IOException If the stream cannot be read or does not hold a binary grid.
+     */
+    public static char[][] read(InputStream input) throws IOException {
+        DataInputStream reader = new DataInputStream(input);
+        if (reader.readInt() != BinaryAsciiOutput.MAGIC || reader.readShort() != BinaryAsciiOutput.VERSION) {
+            throw new IOException("Not a binary ASCII art grid");
+        }
+        boolean runLengthEncoded = (reader.readByte() & BinaryAsciiOutput.RUN_LENGTH_ENCODED) != 0;
+        int rows = reader.readInt();
+        int columns = reader.readInt();
+        int tableLength = reader.readInt();
+        if (!BinaryAsciiOutput.fitsFormat(rows, columns) || tableLength < 0 ||
+                tableLength > Character.MAX_VALUE + 1 || (tableLength == 0 && (long) rows * columns > 0)) {
+            throw new IOException("Corrupt binary ASCII art grid");
+        }
+        char[] table = new char[tableLength];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = reader.readChar();
+        }
+        int bitsPerIndex = BinaryAsciiOutput.bitsFor(table.length - 1);
+        int bitsPerLength = BinaryAsciiOutput.bitsFor(columns - 1);
+        BitReader bitReader = new BitReader(reader);
+        // Rows are allocated as they are read, so a truncated file fails before the whole grid is allocated
+        char[][] chars = new char[rows][];
+        for (int y = 0; y < rows; y++) {
+            char[] row = new char[columns];
+            chars[y] = row;
+            if (runLengthEncoded && bitReader.read(1) == 1) {
+                int x = 0;
+                while (x < columns) {
+                    char c = tableChar(table, bitReader.read(bitsPerIndex));
+                    int runEnd = x + bitReader.read(bitsPerLength) + 1;
+                    if (runEnd > columns) {
+                        throw new IOException("Corrupt binary ASCII art grid");
+                    }
+                    while (x < runEnd) {
+                        row[x++] = c;
+                    }
+                }
+            } else {
+                for (int x = 0; x < columns; x++) {
+                    row[x] = tableChar(table, bitReader.read(bitsPerIndex));
+                }
+            }
+            bitReader.alignToByte();
+        }
+        return chars;
+    }
+
+    /**
+     * Looks up a char of the table.
+     *
+     * @param table The char table.
+     * @param index The index read from the file.
+     * @return The char.
+     * @throws IOException If the index is outside the table.
+     */
+    private static char tableChar(char[] table, int index) throws IOException {
+        if (index >= table.length) {
+            throw new IOException("Corrupt binary ASCII art grid");
+        }
+        return table[index];
+    }
+}
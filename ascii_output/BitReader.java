@@ -0,0 +1,59 @@
+package ascii_output;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * A package-private class of the package ascii_output that reads values written by BitWriter.
+ */
+class BitReader {
+    /**
+     * Number of bits in a byte.
+     */
+    private static final int BYTE_BITS = 8;
+
+    /**
+     * The stream read from.
+     */
+    private final DataInputStream input;
+    /**
+     * Bits read from the stream but not yet returned, in the low bits.
+     */
+    private long buffer;
+    /**
+     * Number of bits in the buffer.
+     */
+    private int bufferedBits;
+
+    /**
+     * Constructs a BitReader.
+     *
+     * @param input The stream read from.
+     */
+    BitReader(DataInputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Reads a value.
+     *
+     * @param bits The number of bits of the value, between 0 and 32.
+     * @return The value.
+     * @throws IOException If the stream ends or cannot be read.
+     */
+    int read(int bits) throws IOException {
+        while (bufferedBits < bits) {
+            buffer = (buffer << BYTE_BITS) | input.readUnsignedByte();
+            bufferedBits += BYTE_BITS;
+        }
+        bufferedBits -= bits;
+        return (int) ((buffer >>> bufferedBits) & ((1L << bits) - 1));
+    }
+
+    /**
+     * Skips the padding bits up to the next whole byte.
+     */
+    void alignToByte() {
+        bufferedBits -= bufferedBits % BYTE_BITS;
+    }
+}
@@ -0,0 +1,64 @@
+package ascii_output;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A package-private class of the package ascii_output that writes values of any width up to 32 bits to a
+ * stream, most significant bit first, packed without gaps.
+ */
+class BitWriter {
+    /**
+     * Number of bits in a byte.
+     */
+    private static final int BYTE_BITS = 8;
+
+    /**
+     * The stream written to.
+     */
+    private final DataOutputStream output;
+    /**
+     * Bits not yet written, in the low bits.
+     */
+    private long buffer;
+    /**
+     * Number of bits in the buffer.
+     */
+    private int bufferedBits;
+
+    /**
+     * Constructs a BitWriter.
+     *
+     * @param output The stream written to.
+     */
+    BitWriter(DataOutputStream output) {
+        this.output = output;
+    }
+
+    /**
+     * Writes the low bits of a value.
+     *
+     * @param value The value.
+     * @param bits  The number of bits to write, between 0 and 32.
+     * @throws IOException If the stream cannot be written.
+     */
+    void write(int value, int bits) throws IOException {
+        buffer = (buffer << bits) | (value & ((1L << bits) - 1));
+        bufferedBits += bits;
+        while (bufferedBits >= BYTE_BITS) {
+            bufferedBits -= BYTE_BITS;
+            output.write((int) (buffer >>> bufferedBits));
+        }
+    }
+
+    /**
+     * Pads the written bits with zeros to a whole byte.
+     *
+     * @throws IOException If the stream cannot be written.
+     */
+    void alignToByte() throws IOException {
+        if (bufferedBits > 0) {
+            write(0, BYTE_BITS - bufferedBits);
+        }
+    }
+}
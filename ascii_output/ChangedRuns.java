@@ -0,0 +1,54 @@
+package ascii_output;
+
+/**
+ * A package-private class of the package ascii_output that splits the cells of a row that changed since a
+ * previous version of the row into runs. Unchanged cells between two changed runs of a row shorter than
+ * MIN_GAP_BETWEEN_RUNS are kept inside a single run, since starting a new run (a cursor move, or a run
+ * header in a file) costs more than repeating a few cells.
+ */
+final class ChangedRuns {
+    /**
+     * Number of unchanged cells from which two changed runs are kept apart.
+     */
+    static final int MIN_GAP_BETWEEN_RUNS = 4;
+
+    /**
+     * Private default constructor to prevent instantiation of the class.
+     */
+    private ChangedRuns() {
+    }
+
+    /**
+     * Finds the start of the next run.
+     *
+     * @param row         The new row.
+     * @param previousRow The previous version of the row, of the same length.
+     * @param from        The index to search from.
+     * @return The index of the first changed cell at or after from, or the row length if there is none.
+     */
+    static int nextRunStart(char[] row, char[] previousRow, int from) {
+        int x = from;
+        while (x < row.length && row[x] == previousRow[x]) {
+            x++;
+        }
+        return x;
+    }
+
+    /**
+     * Finds the end of the run that starts at a changed cell.
+     *
+     * @param row         The new row.
+     * @param previousRow The previous version of the row, of the same length.
+     * @param start       The index of a changed cell that starts a run.
+     * @return The index after the last changed cell of the run.
+     */
+    static int runEnd(char[] row, char[] previousRow, int start) {
+        int lastChanged = start;
+        for (int x = start + 1; x < row.length && x - lastChanged <= MIN_GAP_BETWEEN_RUNS; x++) {
+            if (row[x] != previousRow[x]) {
+                lastChanged = x;
+            }
+        }
+        return lastChanged + 1;
+    }
+}
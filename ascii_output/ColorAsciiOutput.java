@@ -0,0 +1,25 @@
+package ascii_output;
+
+/**
+ * An object implementing this interface can also output a 2D array of chars together with the color of
+ * every char.
+ */
+public interface ColorAsciiOutput extends AsciiOutput {
+    /**
+     * Output the specified 2D array of chars, each in the corresponding color.
+     *
+     * @param chars  The 2D array of characters.
+     * @param colors The color of every character, as packed RGB, with the same dimensions as chars.
+     */
+    void out(char[][] chars, int[][] colors);
+
+    /**
+     * Tells whether the colors given to this output are drawn, so that callers compute them only when they
+     * are. Outputs that forward grids to another output answer for that output.
+     *
+     * @return True if the colors are drawn.
+     */
+    default boolean drawsColors() {
+        return true;
+    }
+}
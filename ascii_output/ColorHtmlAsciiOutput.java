@@ -0,0 +1,115 @@
+package ascii_output;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * The ColorHtmlAsciiOutput class writes a 2D array of chars to an HTML file like HtmlAsciiOutput, with every
+ * char drawn in the average color of its sub-image.
+ * Colors are quantized to a configurable number of levels per channel, and consecutive chars of the same
+ * quantized color, including across line ends, share a single span, so the file holds one span per run of
+ * color rather than one per char. Fewer levels give longer runs and a smaller file.
+ * Chars output without colors are written in black, as by HtmlAsciiOutput.
+ */
+public class ColorHtmlAsciiOutput extends HtmlAsciiOutput implements ColorAsciiOutput {
+    /**
+     * Default number of levels per color channel.
+     */
+    public static final int DEFAULT_COLOR_LEVELS = 8;
+    /**
+     * Minimal number of levels per color channel.
+     */
+    public static final int MIN_COLOR_LEVELS = 2;
+    /**
+     * Maximal number of levels per color channel, which keeps the colors exact.
+     */
+    public static final int MAX_COLOR_LEVELS = 256;
+    /**
+     * Maximum value of a color channel.
+     */
+    private static final int MAX_CHANNEL = 255;
+    /**
+     * Opening tag of a span of one color.
+     */
+    private static final String SPAN_START = "<span style=\"color:#%06x\">";
+    /**
+     * Closing tag of a span.
+     */
+    private static final String SPAN_END = "</span>";
+    /**
+     * Value of no color, which never equals a packed RGB color.
+     */
+    private static final int NO_COLOR = -1;
+
+    /**
+     * The quantized value of every channel value.
+     */
+    private final int[] quantizedChannel = new int[MAX_CHANNEL + 1];
+
+    /**
+     * Constructor for ColorHtmlAsciiOutput.
+     *
+     * @param filename    The name of the HTML file to be generated.
+     * @param fontName    The font name to be used for styling the characters in the HTML file.
+     * @param colorLevels The number of levels per color channel, between MIN_COLOR_LEVELS and
+     *                    MAX_COLOR_LEVELS.
+     */
+    public ColorHtmlAsciiOutput(String filename, String fontName, int colorLevels) {
+        super(filename, fontName);
+        if (colorLevels < MIN_COLOR_LEVELS || colorLevels > MAX_COLOR_LEVELS) {
+            throw new IllegalArgumentException("Color levels out of range: " + colorLevels);
+        }
+        double step = MAX_CHANNEL / (double) (colorLevels - 1);
+        for (int value = 0; value <= MAX_CHANNEL; value++) {
+            quantizedChannel[value] = (int) Math.round(Math.round(value / step) * step);
+        }
+    }
+
+    /**
+     * Outputs a 2D array of characters to an HTML file in colors.
+     *
+     * @param chars  The 2D array of characters to be output to the HTML file.
+     * @param colors The color of every character, as packed RGB.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(getFilename()))) {
+            writeHeader(writer, chars[0].length);
+            int spanColor = NO_COLOR;
+            for (int y = 0; y < chars.length; y++) {
+                for (int x = 0; x < chars[y].length; x++) {
+                    int color = quantize(colors[y][x]);
+                    if (color != spanColor) {
+                        if (spanColor != NO_COLOR) {
+                            writer.write(SPAN_END);
+                        }
+                        writer.write(String.format(SPAN_START, color));
+                        spanColor = color;
+                    }
+                    writer.write(htmlRep(chars[y][x]));
+                }
+                // The line break stays inside the span, so a run may continue on the next row
+                writer.newLine();
+            }
+            if (spanColor != NO_COLOR) {
+                writer.write(SPAN_END);
+            }
+            writeFooter(writer);
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", getFilename()));
+        }
+    }
+
+    /**
+     * Quantizes every channel of a color.
+     *
+     * @param rgb The packed RGB color.
+     * @return The quantized packed RGB color.
+     */
+    private int quantize(int rgb) {
+        return quantizedChannel[(rgb >> 16) & 0xFF] << 16 | quantizedChannel[(rgb >> 8) & 0xFF] << 8 |
+                quantizedChannel[rgb & 0xFF];
+    }
+}
@@ -0,0 +1,225 @@
+package ascii_output;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Output consecutive 2D arrays of chars as the frames of a compact animation file.
+ * Every keyframeInterval frames (and whenever the grid size changes) a keyframe holds the whole grid;
+ * the frames in between hold only the runs of cells that changed in each row, so the file size grows with
+ * how much the picture changes rather than with the number of frames times the grid size.
+ * The file must be closed after the last frame. AsciiAnimationReader reads it back.
+ * <p>
+ * File layout (big endian, as written by DataOutputStream):
+ * <pre>
+ * int    MAGIC
+ * short  VERSION
+ * per frame:
+ *   byte   KEYFRAME, then short rows, short columns, and every row as text
+ *   or
+ *   byte   DELTA_FRAME, then short number of changed rows, and per changed row:
+ *          short row, short number of runs, and per run: short first column, text of the new chars
+ * byte   END
+ * </pre>
+ * Text is an int number of bytes followed by the chars encoded in UTF-8, so rows of any length fit.
+ * Grids may have up to 65535 rows and columns.
+ */
+public class DeltaAnimationAsciiOutput implements AsciiOutput, Closeable {
+    /**
+     * Magic number identifying an ASCII animation ("AADL").
+     */
+    static final int MAGIC = 0x4141444C;
+    /**
+     * Current format version.
+     */
+    static final short VERSION = 2;
+    /**
+     * Largest number of rows or columns of a frame.
+     */
+    static final int MAX_DIMENSION = 0xFFFF;
+    /**
+     * Frame type of a keyframe.
+     */
+    static final byte KEYFRAME = 'K';
+    /**
+     * Frame type of a delta frame.
+     */
+    static final byte DELTA_FRAME = 'D';
+    /**
+     * Marks the end of the animation.
+     */
+    static final byte END = 'E';
+    /**
+     * Default number of frames between keyframes.
+     */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 50;
+
+    /**
+     * the file name
+     */
+    private final String filename;
+    /**
+     * Number of frames between keyframes.
+     */
+    private final int keyframeInterval;
+    /**
+     * The open animation file, or null before the first frame.
+     */
+    private DataOutputStream writer;
+    /**
+     * The previously written frame.
+     */
+    private char[][] previousFrame;
+    /**
+     * Number of frames written since the last keyframe.
+     */
+    private int framesSinceKeyframe;
+
+    /**
+     * Constructor for DeltaAnimationAsciiOutput.
+     *
+     * @param filename         The name of the animation file to be generated.
+     * @param keyframeInterval Number of frames between keyframes.
+     */
+    public DeltaAnimationAsciiOutput(String filename, int keyframeInterval) {
+        this.filename = filename;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Writes the next frame of the animation, as a keyframe or as the changes from the previous frame.
+     *
+     * @param chars The 2D array of characters of the frame.
+     */
+    @Override
+    public void out(char[][] chars) {
+        try {
+            if (writer == null) {
+                writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+                writer.writeInt(MAGIC);
+                writer.writeShort(VERSION);
+            }
+            if (previousFrame == null || framesSinceKeyframe >= keyframeInterval ||
+                    previousFrame.length != chars.length || previousFrame[0].length != chars[0].length) {
+                writeKeyframe(chars);
+                previousFrame = new char[chars.length][];
+                framesSinceKeyframe = 0;
+            } else {
+                writeDeltaFrame(chars);
+            }
+            for (int y = 0; y < chars.length; y++) {
+                previousFrame[y] = chars[y].clone();
+            }
+            framesSinceKeyframe++;
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Ends the animation and closes the file.
+     */
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.writeByte(END);
+            writer.close();
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+        writer = null;
+        previousFrame = null;
+    }
+
+    /**
+     * Writes a whole frame.
+     *
+     * @param chars The 2D array of characters of the frame.
+     * @throws IOException If writing fails.
+     */
+    private void writeKeyframe(char[][] chars) throws IOException {
+        if (chars.length > MAX_DIMENSION || chars[0].length > MAX_DIMENSION) {
+            throw new IOException("Frame too large for the animation format");
+        }
+        writer.writeByte(KEYFRAME);
+        writer.writeShort(chars.length);
+        writer.writeShort(chars[0].length);
+        for (char[] row : chars) {
+            writeText(row, 0, row.length);
+        }
+    }
+
+    /**
+     * Writes the runs of cells that changed since the previous frame.
+     *
+     * @param chars The 2D array of characters of the frame.
+     * @throws IOException If writing fails.
+     */
+    private void writeDeltaFrame(char[][] chars) throws IOException {
+        int changedRows = 0;
+        for (int y = 0; y < chars.length; y++) {
+            if (!Arrays.equals(chars[y], previousFrame[y])) {
+                changedRows++;
+            }
+        }
+        writer.writeByte(DELTA_FRAME);
+        writer.writeShort(changedRows);
+        for (int y = 0; y < chars.length; y++) {
+            if (!Arrays.equals(chars[y], previousFrame[y])) {
+                writeChangedRow(y, chars[y], previousFrame[y]);
+            }
+        }
+    }
+
+    /**
+     * Writes the changed runs of a single row.
+     *
+     * @param y           The row index.
+     * @param row         The new row.
+     * @param previousRow The row in the previous frame.
+     * @throws IOException If writing fails.
+     */
+    private void writeChangedRow(int y, char[] row, char[] previousRow) throws IOException {
+        // Collect the runs first, since their number precedes them in the file
+        int[] runStarts = new int[row.length];
+        int[] runEnds = new int[row.length];
+        int runs = 0;
+        int x = ChangedRuns.nextRunStart(row, previousRow, 0);
+        while (x < row.length) {
+            runStarts[runs] = x;
+            runEnds[runs] = ChangedRuns.runEnd(row, previousRow, x);
+            x = ChangedRuns.nextRunStart(row, previousRow, runEnds[runs]);
+            runs++;
+        }
+        writer.writeShort(y);
+        writer.writeShort(runs);
+        for (int i = 0; i < runs; i++) {
+            writer.writeShort(runStarts[i]);
+            writeText(row, runStarts[i], runEnds[i] - runStarts[i]);
+        }
+    }
+
+    /**
+     * Writes chars as an int number of bytes followed by their UTF-8 encoding. Unlike writeUTF, which is
+     * limited to 65535 bytes, any row fits.
+     *
+     * @param chars  The chars.
+     * @param offset The index of the first char to write.
+     * @param length The number of chars to write.
+     * @throws IOException If writing fails.
+     */
+    private void writeText(char[] chars, int offset, int length) throws IOException {
+        byte[] bytes = new String(chars, offset, length).getBytes(StandardCharsets.UTF_8);
+        writer.writeInt(bytes.length);
+        writer.write(bytes);
+    }
+}
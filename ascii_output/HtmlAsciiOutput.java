@@ -53,46 +53,81 @@ public class HtmlAsciiOutput implements AsciiOutput {
     @Override
     public void out(char[][] chars) {
         try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            // Writing the HTML structure with inline styling
-            writer.write(String.format(
-                    "<!DOCTYPE html>\n"+
-                            "<html>\n"+
-                            "<body style=\""+
-                            "\tCOLOR:#000000;"+
-                            "\tTEXT-ALIGN:center;"+
-                            "\tFONT-SIZE:1px;\">\n"+
-                            "<p style=\""+
-                            "\twhite-space:pre;"+
-                            "\tFONT-FAMILY:%s;"+
-                            "\tFONT-SIZE:%frem;"+
-                            "\tLETTER-SPACING:0.15em;"+
-                            "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
+            writeHeader(writer, chars[0].length);
 
             // Writing the character array content to the HTML file
             for(int y = 0 ; y < chars.length ; y++) {
                 for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    // Handling special HTML characters
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
+                    writer.write(htmlRep(chars[y][x]));
                 }
                 writer.newLine();
             }
 
-            // Closing the HTML document structure
-            writer.write(
-                    "</p>\n"+
-                            "</body>\n"+
-                            "</html>\n");
+            writeFooter(writer);
         } catch(IOException e) {
             Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
         }
     }
+
+    /**
+     * Gets the name of the HTML file to be generated.
+     *
+     * @return The file name.
+     */
+    protected String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Writes the HTML structure with inline styling, up to the start of the character content.
+     *
+     * @param writer  The writer of the HTML file.
+     * @param columns The number of characters per row.
+     * @throws IOException If the file cannot be written.
+     */
+    protected void writeHeader(BufferedWriter writer, int columns) throws IOException {
+        writer.write(String.format(
+                "<!DOCTYPE html>\n"+
+                        "<html>\n"+
+                        "<body style=\""+
+                        "\tCOLOR:#000000;"+
+                        "\tTEXT-ALIGN:center;"+
+                        "\tFONT-SIZE:1px;\">\n"+
+                        "<p style=\""+
+                        "\twhite-space:pre;"+
+                        "\tFONT-FAMILY:%s;"+
+                        "\tFONT-SIZE:%frem;"+
+                        "\tLETTER-SPACING:0.15em;"+
+                        "\tLINE-HEIGHT:%fem;\">\n",
+                fontName, BASE_FONT_SIZE/columns, BASE_LINE_SPACING));
+    }
+
+    /**
+     * Closes the HTML document structure.
+     *
+     * @param writer The writer of the HTML file.
+     * @throws IOException If the file cannot be written.
+     */
+    protected static void writeFooter(BufferedWriter writer) throws IOException {
+        writer.write(
+                "</p>\n"+
+                        "</body>\n"+
+                        "</html>\n");
+    }
+
+    /**
+     * Gets the HTML representation of a character, handling special HTML characters.
+     *
+     * @param c The character.
+     * @return The character, or its HTML entity.
+     */
+    protected static String htmlRep(char c) {
+        switch(c) {
+            case '<': return "&lt;";
+            case '>': return "&gt;";
+            case '&': return "&amp;";
+            default:  return String.valueOf(c);
+        }
+    }
 }
 
@@ -0,0 +1,237 @@
+package ascii_output;
+
+import image_char_matching.CharConverter;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * The PngAsciiOutput class renders a 2D array of chars to a PNG image, for thumbnails of the ASCII art.
+ * Every char is drawn by copying its glyph, rendered once by CharConverter and cached per font and size as
+ * rows of packed RGB pixels, straight into the pixel array of the image, so no font rendering happens per
+ * cell. Without colors the image has one bit per pixel, which is far quicker to encode than true color;
+ * with colors, the dark pixels of each glyph take the color of its cell, and the image is compressed with a
+ * fast deflate level.
+ */
+public class PngAsciiOutput implements ColorAsciiOutput {
+    /**
+     * Default width and height of a cell, in pixels.
+     */
+    public static final int DEFAULT_GLYPH_SIZE = 8;
+    /**
+     * Packed RGB value of the background.
+     */
+    private static final int WHITE = 0xFFFFFF;
+    /**
+     * Packed RGB value of the glyphs without colors.
+     */
+    private static final int BLACK = 0x000000;
+    /**
+     * Bits per byte of a one bit per pixel image.
+     */
+    private static final int BITS_PER_BYTE = 8;
+    /**
+     * Mask of the leftmost pixel of a byte of a one bit per pixel image.
+     */
+    private static final int LEFTMOST_PIXEL_BIT = 0x80;
+    /**
+     * Compression quality of colored images: a fast deflate level, since the default one takes most of the
+     * time of an output for large grids.
+     */
+    private static final float COLOR_COMPRESSION_QUALITY = 0.9f;
+    /**
+     * The format name of PNG for ImageIO.
+     */
+    private static final String PNG_FORMAT = "png";
+    /**
+     * The rendered glyphs of every font and size, keyed by font name and size.
+     */
+    private static final Map<String, Map<Character, int[]>> GLYPH_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * The name of the PNG file to be generated.
+     */
+    private final String filename;
+    /**
+     * The font the chars are drawn in.
+     */
+    private final String fontName;
+    /**
+     * Width and height of a cell, in pixels.
+     */
+    private final int glyphSize;
+
+    /**
+     * Constructor for PngAsciiOutput.
+     *
+     * @param filename  The name of the PNG file to be generated.
+     * @param fontName  The font the chars are drawn in.
+     * @param glyphSize Width and height of a cell, in pixels.
+     */
+    public PngAsciiOutput(String filename, String fontName, int glyphSize) {
+        this.filename = filename;
+        this.fontName = fontName;
+        this.glyphSize = glyphSize;
+    }
+
+    /**
+     * Renders a 2D array of characters in black on white to the PNG file.
+     *
+     * @param chars The 2D array of characters.
+     */
+    @Override
+    public void out(char[][] chars) {
+        write(render(chars, null));
+    }
+
+    /**
+     * Renders a 2D array of characters, each in its color on white, to the PNG file.
+     *
+     * @param chars  The 2D array of characters.
+     * @param colors The color of every character, as packed RGB.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        write(render(chars, colors));
+    }
+
+    /**
+     * Renders a 2D array of characters to an image by copying the cached glyph of every cell into the
+     * pixel array of the image: a one bit per pixel image without colors, and a packed RGB image with them.
+     *
+     * @param chars  The 2D array of characters.
+     * @param colors The color of every character, as packed RGB, or null for black.
+     * @return The rendered image.
+     */
+    public BufferedImage render(char[][] chars, int[][] colors) {
+        int columns = 0;
+        for (char[] row : chars) {
+            columns = Math.max(columns, row.length);
+        }
+        Map<Character, int[]> glyphs = GLYPH_CACHE.computeIfAbsent(fontName + ':' + glyphSize,
+                key -> new ConcurrentHashMap<>());
+        if (colors == null) {
+            return renderBlackAndWhite(chars, columns * glyphSize, glyphs);
+        }
+        int width = columns * glyphSize;
+        BufferedImage image = new BufferedImage(width, chars.length * glyphSize, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < chars.length; y++) {
+            for (int x = 0; x < chars[y].length; x++) {
+                int[] glyph = glyphs.computeIfAbsent(chars[y][x], this::renderGlyph);
+                blitInColor(glyph, colors[y][x], pixels, y * glyphSize * width + x * glyphSize, width);
+            }
+            // Cells missing from a short row stay white
+            for (int row = y * glyphSize; row < (y + 1) * glyphSize; row++) {
+                Arrays.fill(pixels, row * width + chars[y].length * glyphSize, (row + 1) * width, WHITE);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Renders a 2D array of characters in black on white to a one bit per pixel image, whose default palette
+     * maps bit 0 to black and bit 1 to white. Cells missing from a short row stay white.
+     *
+     * @param chars  The 2D array of characters.
+     * @param width  The width of the image.
+     * @param glyphs The rendered glyphs of the font and size.
+     * @return The rendered image.
+     */
+    private BufferedImage renderBlackAndWhite(char[][] chars, int width, Map<Character, int[]> glyphs) {
+        BufferedImage image = new BufferedImage(width, chars.length * glyphSize, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] bits = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = (width + BITS_PER_BYTE - 1) / BITS_PER_BYTE;
+        Arrays.fill(bits, (byte) -1);
+        for (int y = 0; y < chars.length; y++) {
+            for (int x = 0; x < chars[y].length; x++) {
+                int[] glyph = glyphs.computeIfAbsent(chars[y][x], this::renderGlyph);
+                for (int row = 0; row < glyphSize; row++) {
+                    int line = (y * glyphSize + row) * stride;
+                    for (int col = 0; col < glyphSize; col++) {
+                        if (glyph[row * glyphSize + col] != WHITE) {
+                            int pixel = x * glyphSize + col;
+                            int mask = LEFTMOST_PIXEL_BIT >>> (pixel % BITS_PER_BYTE);
+                            bits[line + pixel / BITS_PER_BYTE] &= (byte) ~mask;
+                        }
+                    }
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Copies a glyph into the image, replacing its dark pixels by a color.
+     *
+     * @param glyph  The glyph, as rows of packed RGB pixels.
+     * @param color  The color of the glyph.
+     * @param pixels The pixel array of the image.
+     * @param offset The index of the top left pixel of the cell in the pixel array.
+     * @param width  The width of the image.
+     */
+    private void blitInColor(int[] glyph, int color, int[] pixels, int offset, int width) {
+        for (int row = 0; row < glyphSize; row++) {
+            int source = row * glyphSize;
+            int target = offset + row * width;
+            for (int col = 0; col < glyphSize; col++) {
+                pixels[target + col] = glyph[source + col] == WHITE ? WHITE : color;
+            }
+        }
+    }
+
+    /**
+     * Renders a glyph with CharConverter into rows of packed RGB pixels.
+     *
+     * @param c The character.
+     * @return The glyph, glyphSize rows of glyphSize pixels.
+     */
+    private int[] renderGlyph(char c) {
+        boolean[][] matrix = CharConverter.convertToBoolArray(c, fontName, glyphSize);
+        int[] glyph = new int[glyphSize * glyphSize];
+        for (int y = 0; y < glyphSize; y++) {
+            for (int x = 0; x < glyphSize; x++) {
+                // True marks the background
+                glyph[y * glyphSize + x] = matrix[y][x] ? WHITE : BLACK;
+            }
+        }
+        return glyph;
+    }
+
+    /**
+     * Writes an image to the PNG file, compressing colored images with a fast deflate level.
+     *
+     * @param image The image.
+     */
+    private void write(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(PNG_FORMAT).next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (image.getType() == BufferedImage.TYPE_INT_RGB && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(COLOR_COMPRESSION_QUALITY);
+        }
+        File file = new File(filename);
+        // A shorter image would leave the end of a previous, longer one behind
+        file.delete();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        } finally {
+            writer.dispose();
+        }
+    }
+}
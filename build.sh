@@ -0,0 +1,24 @@
+#!/bin/sh
+# Compiles the project into a class directory (out by default) and generates the glyph table resource next
+# to the compiled classes, so the default charset is matched without rendering glyphs at startup.
+# The vectorized luminance sum lives in the optional source root "vector", compiled only on JVMs with the
+# Vector API; VectorSupport loads it by reflection and falls back to scalar code when it is missing.
+# Usage: ./build.sh [class directory]
+set -e
+cd "$(dirname "$0")"
+OUT=${1:-out}
+VECTOR_MODULE=jdk.incubator.vector
+
+rm -rf "$OUT"
+mkdir -p "$OUT"
+javac -Xlint:all -Werror -d "$OUT" $(find ascii_art ascii_output image image_char_matching -name '*.java')
+if java --add-modules "$VECTOR_MODULE" -version > /dev/null 2>&1; then
+    javac --add-modules "$VECTOR_MODULE" -cp "$OUT" -d "$OUT" $(find vector -name '*.java')
+else
+    echo "warning: $VECTOR_MODULE not available, kernel vector falls back to scalar code" >&2
+fi
+
+if ! java -Djava.awt.headless=true -cp "$OUT" image_char_matching.GlyphTableGenerator \
+        "$OUT/image_char_matching/glyphs.bin"; then
+    echo "warning: no glyph table generated, glyphs will be rendered at startup" >&2
+fi
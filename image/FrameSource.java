@@ -0,0 +1,38 @@
+package image;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An object implementing this interface decodes the frames of an animation, one at a time and in order.
+ */
+public interface FrameSource extends Closeable {
+    /**
+     * Character marking a numbered image sequence pattern, such as "frames/frame%04d.png".
+     */
+    String SEQUENCE_PATTERN_MARK = "%";
+
+    /**
+     * Decodes the next frame.
+     *
+     * @return The next frame, or null if there are no more frames.
+     * @throws IOException If there is an issue reading the frame.
+     */
+    Image nextFrame() throws IOException;
+
+    /**
+     * Opens the frames of an animated GIF file, or of a numbered image sequence if the path is a
+     * String.format pattern with a single integer argument, such as "frames/frame%04d.png".
+     *
+     * @param path The path of the GIF file, or the pattern of the image sequence.
+     * @return The frame source.
+     * @throws IOException                        If the file cannot be opened.
+     * @throws java.util.IllegalFormatException If the pattern does not format a single integer.
+     */
+    static FrameSource open(String path) throws IOException {
+        if (path.contains(SEQUENCE_PATTERN_MARK)) {
+            return new ImageSequenceFrameSource(path);
+        }
+        return new GifFrameSource(path);
+    }
+}
@@ -0,0 +1,249 @@
+package image;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * The GifFrameSource class decodes the frames of an animated GIF with an ImageReader, one frame at a time.
+ * GIF frames may cover only part of the logical screen and rely on the previous frames, so every frame is
+ * drawn onto a canvas of the full screen size according to its position and disposal method, and the
+ * composed canvas is returned. The canvas starts white, like the padding of an image.
+ */
+public class GifFrameSource implements FrameSource {
+    /**
+     * Name of the GIF stream metadata format.
+     */
+    private static final String STREAM_METADATA_FORMAT = "javax_imageio_gif_stream_1.0";
+    /**
+     * Name of the GIF image metadata format.
+     */
+    private static final String IMAGE_METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+    /**
+     * Disposal method: restore the frame's area to the background before the next frame.
+     */
+    private static final String RESTORE_TO_BACKGROUND = "restoreToBackgroundColor";
+    /**
+     * Disposal method: restore the frame's area to what it was before this frame.
+     */
+    private static final String RESTORE_TO_PREVIOUS = "restoreToPrevious";
+
+    /**
+     * The open image stream.
+     */
+    private final ImageInputStream stream;
+    /**
+     * The GIF reader.
+     */
+    private final ImageReader reader;
+    /**
+     * The composed logical screen.
+     */
+    private BufferedImage canvas;
+    /**
+     * The index of the next frame.
+     */
+    private int nextIndex = 0;
+    /**
+     * The disposal method of the previous frame.
+     */
+    private String previousDisposal;
+    /**
+     * The area of the previous frame.
+     */
+    private Rectangle previousArea;
+    /**
+     * The canvas before the previous frame was drawn, if its disposal method restores it.
+     */
+    private BufferedImage canvasBeforePrevious;
+
+    /**
+     * Opens an animated GIF file.
+     *
+     * @param filename The path to the GIF file.
+     * @throws IOException If the file cannot be opened or no GIF reader is available.
+     */
+    public GifFrameSource(String filename) throws IOException {
+        stream = ImageIO.createImageInputStream(new File(filename));
+        if (stream == null) {
+            throw new IOException("Cannot open " + filename);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            stream.close();
+            throw new IOException("Unsupported image format: " + filename);
+        }
+        reader = readers.next();
+        reader.setInput(stream, false, false);
+    }
+
+    /**
+     * Decodes the next frame and composes it onto the logical screen.
+     *
+     * @return The composed frame, or null if there are no more frames.
+     * @throws IOException If there is an issue reading the frame.
+     */
+    @Override
+    public Image nextFrame() throws IOException {
+        BufferedImage frame;
+        try {
+            frame = reader.read(nextIndex);
+        } catch (IndexOutOfBoundsException endOfFrames) {
+            return null;
+        }
+        Node frameMetadata = metadataTree(reader.getImageMetadata(nextIndex), IMAGE_METADATA_FORMAT);
+        nextIndex++;
+        if (canvas == null) {
+            createCanvas(frame);
+        }
+        disposePreviousFrame();
+
+        Rectangle area = new Rectangle(0, 0, frame.getWidth(), frame.getHeight());
+        String disposal = null;
+        if (frameMetadata != null) {
+            Node descriptor = child(frameMetadata, "ImageDescriptor");
+            if (descriptor != null) {
+                area.x = intAttribute(descriptor, "imageLeftPosition");
+                area.y = intAttribute(descriptor, "imageTopPosition");
+            }
+            Node control = child(frameMetadata, "GraphicControlExtension");
+            if (control != null) {
+                disposal = control.getAttributes().getNamedItem("disposalMethod").getNodeValue();
+            }
+        }
+        if (RESTORE_TO_PREVIOUS.equals(disposal)) {
+            canvasBeforePrevious = copy(canvas);
+        }
+        Graphics2D graphics = canvas.createGraphics();
+        graphics.drawImage(frame, area.x, area.y, null);
+        graphics.dispose();
+        previousDisposal = disposal;
+        previousArea = area;
+
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        return new Image(canvas.getRGB(0, 0, width, height, null, 0, width), width, height);
+    }
+
+    /**
+     * Closes the GIF file.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        stream.close();
+    }
+
+    /**
+     * Creates the white logical screen, sized from the stream metadata or else from the first frame.
+     *
+     * @param firstFrame The first frame of the animation.
+     * @throws IOException If the stream metadata cannot be read.
+     */
+    private void createCanvas(BufferedImage firstFrame) throws IOException {
+        int width = firstFrame.getWidth();
+        int height = firstFrame.getHeight();
+        Node streamMetadata = metadataTree(reader.getStreamMetadata(), STREAM_METADATA_FORMAT);
+        Node screen = streamMetadata == null ? null : child(streamMetadata, "LogicalScreenDescriptor");
+        if (screen != null) {
+            width = Math.max(width, intAttribute(screen, "logicalScreenWidth"));
+            height = Math.max(height, intAttribute(screen, "logicalScreenHeight"));
+        }
+        canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        fill(new Rectangle(0, 0, width, height));
+    }
+
+    /**
+     * Applies the disposal method of the previous frame to the canvas.
+     */
+    private void disposePreviousFrame() {
+        if (RESTORE_TO_BACKGROUND.equals(previousDisposal)) {
+            fill(previousArea);
+        } else if (RESTORE_TO_PREVIOUS.equals(previousDisposal) && canvasBeforePrevious != null) {
+            canvas = canvasBeforePrevious;
+            canvasBeforePrevious = null;
+        }
+    }
+
+    /**
+     * Fills an area of the canvas with white.
+     *
+     * @param area The area to fill.
+     */
+    private void fill(Rectangle area) {
+        Graphics2D graphics = canvas.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fill(area);
+        graphics.dispose();
+    }
+
+    /**
+     * Copies an image.
+     *
+     * @param image The image to copy.
+     * @return The copy.
+     */
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        Graphics2D graphics = copy.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return copy;
+    }
+
+    /**
+     * Gets the metadata tree of the given format.
+     *
+     * @param metadata The metadata, possibly null.
+     * @param format   The metadata format name.
+     * @return The root of the metadata tree, or null if the format is not available.
+     */
+    private static Node metadataTree(IIOMetadata metadata, String format) {
+        if (metadata == null) {
+            return null;
+        }
+        for (String name : metadata.getMetadataFormatNames()) {
+            if (name.equals(format)) {
+                return metadata.getAsTree(format);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the first child of a metadata node with the given name.
+     *
+     * @param node The parent node.
+     * @param name The child name.
+     * @return The child node, or null if there is none.
+     */
+    private static Node child(Node node, String name) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeName().equals(name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads an integer attribute of a metadata node.
+     *
+     * @param node The node.
+     * @param name The attribute name.
+     * @return The attribute value.
+     */
+    private static int intAttribute(Node node, String name) {
+        return Integer.parseInt(node.getAttributes().getNamedItem(name).getNodeValue());
+    }
+}
@@ -0,0 +1,84 @@
+package image;
+
+/**
+ * The GreyShadeRegion class provides the grey shades of a rectangular region of another GreyShadeSource,
+ * as if the region were an image of its own, without copying any pixels.
+ */
+public class GreyShadeRegion implements GreyShadeSource {
+    /**
+     * The grey shades of the whole image.
+     */
+    private final GreyShadeSource source;
+    /**
+     * The first row of the region in the whole image.
+     */
+    private final int top;
+    /**
+     * The first column of the region in the whole image.
+     */
+    private final int left;
+    /**
+     * The number of rows in the region.
+     */
+    private final int height;
+    /**
+     * The number of columns in the region.
+     */
+    private final int width;
+
+    /**
+     * Constructs a GreyShadeRegion.
+     *
+     * @param source The grey shades of the whole image.
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @throws IllegalArgumentException If the region is empty or not inside the image.
+     */
+    public GreyShadeRegion(GreyShadeSource source, int top, int left, int height, int width) {
+        if (top < 0 || left < 0 || height < 1 || width < 1 ||
+                (long) top + height > source.getHeight() || (long) left + width > source.getWidth()) {
+            throw new IllegalArgumentException("Region outside of the image");
+        }
+        this.source = source;
+        this.top = top;
+        this.left = left;
+        this.height = height;
+        this.width = width;
+    }
+
+    /**
+     * Gets the width of the region.
+     *
+     * @return The width of the region.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the region.
+     *
+     * @return The height of the region.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sums the grey shades of a rectangular part of the region.
+     *
+     * @param top    The first row, relative to the region.
+     * @param left   The first column, relative to the region.
+     * @param height The number of rows.
+     * @param width  The number of columns.
+     * @return The sum of the grey shades, each between 0 and 255.
+     */
+    @Override
+    public double sumOfGreyShades(int top, int left, int height, int width) {
+        return source.sumOfGreyShades(this.top + top, this.left + left, height, width);
+    }
+}
@@ -0,0 +1,32 @@
+package image;
+
+/**
+ * An object implementing this interface provides the grey shades (luminance) of an image, summed over
+ * rectangular regions. Grey shades are on a 0 to 255 scale.
+ */
+public interface GreyShadeSource {
+    /**
+     * Gets the width of the image.
+     *
+     * @return The width of the image.
+     */
+    int getWidth();
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return The height of the image.
+     */
+    int getHeight();
+
+    /**
+     * Sums the grey shades of a rectangular region, which must lie inside the image.
+     *
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @return The sum of the grey shades of the region, each between 0 and 255.
+     */
+    double sumOfGreyShades(int top, int left, int height, int width);
+}
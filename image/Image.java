@@ -1,10 +1,15 @@
 package image;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 
 /**
  * A package-private class of the package image.
@@ -12,9 +17,9 @@ import java.io.IOException;
  */
 public class Image {
     /**
-     * the pixel array representing the image.
+     * the pixels of the image as packed RGB ints, row by row.
      */
-    private final Color[][] pixelArray;
+    private final int[] pixels;
     /**
      * the image width.
      */
@@ -34,16 +39,12 @@ public class Image {
 
     public Image(String filename) throws IOException {
         BufferedImage im = ImageIO.read(new File(filename));
+        if (im == null) {
+            throw new IOException("Unsupported image format: " + filename);
+        }
         width = im.getWidth();
         height = im.getHeight();
-
-
-        pixelArray = new Color[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                pixelArray[i][j]=new Color(im.getRGB(j, i));
-            }
-        }
+        pixels = im.getRGB(0, 0, width, height, null, 0, width);
     }
 
 
@@ -55,12 +56,125 @@ public class Image {
      * @param height     The height of the image.
      */
     public Image(Color[][] pixelArray, int width, int height) {
-        this.pixelArray = pixelArray;
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                pixels[i * width + j] = pixelArray[i][j].getRGB();
+            }
+        }
+    }
+
+    /**
+     * Constructs an Image object using a given array of packed RGB pixels, width, and height.
+     * The array is used as is, without copying.
+     *
+     * @param pixels The packed RGB pixels, row by row.
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     */
+    public Image(int[] pixels, int width, int height) {
+        this.pixels = pixels;
         this.width = width;
         this.height = height;
     }
 
 
+    /**
+     * Reads only a rectangular region of an image file. The region is passed to the image reader, which
+     * skips the rest of the image where the format allows it, so only the pixels of the region are held in
+     * memory.
+     *
+     * @param filename The path to the image file.
+     * @param top      The first row of the region.
+     * @param left     The first column of the region.
+     * @param height   The number of rows in the region.
+     * @param width    The number of columns in the region.
+     * @return The region as an Image.
+     * @throws IOException If there is an issue reading the image file, or the region is not inside the image.
+     */
+    public static Image readRegion(String filename, int top, int left, int height, int width)
+            throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+            ImageReader reader = openReader(input, filename);
+            try {
+                if (top < 0 || left < 0 || height < 1 || width < 1 ||
+                        (long) top + height > reader.getHeight(0) || (long) left + width > reader.getWidth(0)) {
+                    throw new IOException("Region outside of the image: " + filename);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(left, top, width, height));
+                BufferedImage im = reader.read(0, param);
+                return new Image(im.getRGB(0, 0, width, height, null, 0, width), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reads an image file keeping only every factor-th pixel of every factor-th row, so the decoded image
+     * takes about 1 / factor^2 of the memory of the full image.
+     *
+     * @param filename The path to the image file.
+     * @param factor   The subsampling factor, at least 1.
+     * @return The subsampled image.
+     * @throws IOException If there is an issue reading the image file.
+     */
+    public static Image readSubsampled(String filename, int factor) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+            ImageReader reader = openReader(input, filename);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                BufferedImage im = reader.read(0, param);
+                int width = im.getWidth();
+                int height = im.getHeight();
+                return new Image(im.getRGB(0, 0, width, height, null, 0, width), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reads the dimensions of an image from the header of its file, without decoding any pixels.
+     *
+     * @param filename The path to the image file.
+     * @return The width and height of the image.
+     * @throws IOException If there is an issue reading the image file.
+     */
+    public static Dimension readSize(String filename) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+            ImageReader reader = openReader(input, filename);
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Finds an image reader for an image file and attaches it to the file.
+     *
+     * @param input    The stream of the image file, or null if it could not be opened.
+     * @param filename The path to the image file, for error messages.
+     * @return The image reader, which must be disposed of by the caller.
+     * @throws IOException If the file is missing or its format is not supported.
+     */
+    private static ImageReader openReader(ImageInputStream input, String filename) throws IOException {
+        Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+        if (readers == null || !readers.hasNext()) {
+            throw new IOException("Unsupported image format: " + filename);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+
     /**
      * Gets the width of the image.
      *
@@ -88,7 +202,28 @@ public class Image {
      * @return The Color object representing the pixel at the specified coordinates.
      */
     public Color getPixel(int x, int y) {
-        return pixelArray[x][y];
+        return new Color(pixels[x * width + y]);
+    }
+
+    /**
+     * Gets the packed RGB value of the pixel at the specified coordinates, without creating a Color.
+     *
+     * @param x The x-coordinate (row) of the pixel.
+     * @param y The y-coordinate (column) of the pixel.
+     * @return The packed RGB value of the pixel.
+     */
+    public int getRGB(int x, int y) {
+        return pixels[x * width + y];
+    }
+
+    /**
+     * Gets the packed RGB pixels of the image, row by row, with a stride of the image width.
+     * The returned array is the image's own storage and must not be modified.
+     *
+     * @return The packed RGB pixels.
+     */
+    public int[] getPixels() {
+        return pixels;
     }
 
 
@@ -98,15 +233,11 @@ public class Image {
      * @param fileName The desired file name (without extension) for the saved image.
      */
     public void saveImage(String fileName){
-        // Initialize BufferedImage, assuming Color[][] is already properly populated.
-        BufferedImage bufferedImage = new BufferedImage(pixelArray.length, pixelArray[0].length,
-                BufferedImage.TYPE_INT_RGB);
-        // Set each pixel of the BufferedImage to the color from the Color[][].
-        for (int x = 0; x < pixelArray.length; x++) {
-            for (int y = 0; y < pixelArray[x].length; y++) {
-                bufferedImage.setRGB(y, x, pixelArray[x][y].getRGB());
-            }
-        }
+        // Initialize BufferedImage, assuming the pixels are already properly populated.
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        // Copy the whole pixel array straight into the raster; the alpha byte is ignored by the RGB model.
+        int[] raster = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, raster, 0, width * height);
         File outputfile = new File(fileName+".jpeg");
         try {
             ImageIO.write(bufferedImage, "jpeg", outputfile);
@@ -0,0 +1,66 @@
+package image;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The ImageSequenceFrameSource class reads a numbered sequence of image files, such as
+ * frame0000.png, frame0001.png, ... It starts at the first existing index between 0 and 1, and stops at
+ * the first missing file after it.
+ */
+public class ImageSequenceFrameSource implements FrameSource {
+    /**
+     * The largest first index of a sequence.
+     */
+    private static final int MAX_FIRST_INDEX = 1;
+
+    /**
+     * The String.format pattern of the file names.
+     */
+    private final String pattern;
+    /**
+     * The index of the next frame.
+     */
+    private int nextIndex;
+
+    /**
+     * Constructs an ImageSequenceFrameSource for the given file name pattern.
+     *
+     * @param pattern The String.format pattern of the file names, with a single integer argument.
+     * @throws IOException                        If no file matches the pattern.
+     * @throws java.util.IllegalFormatException If the pattern does not format a single integer.
+     */
+    public ImageSequenceFrameSource(String pattern) throws IOException {
+        this.pattern = pattern;
+        nextIndex = 0;
+        while (!new File(String.format(pattern, nextIndex)).isFile()) {
+            if (nextIndex == MAX_FIRST_INDEX) {
+                throw new IOException("No image matches " + pattern);
+            }
+            nextIndex++;
+        }
+    }
+
+    /**
+     * Decodes the next image of the sequence.
+     *
+     * @return The next frame, or null if the next file does not exist.
+     * @throws IOException If there is an issue reading the image file.
+     */
+    @Override
+    public Image nextFrame() throws IOException {
+        String filename = String.format(pattern, nextIndex);
+        if (!new File(filename).isFile()) {
+            return null;
+        }
+        nextIndex++;
+        return new Image(filename);
+    }
+
+    /**
+     * Closes the sequence. Nothing is held open between frames.
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,144 @@
+package image;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The LuminancePlane class holds only the luminance of an image, computed once when the image is loaded,
+ * as one unsigned 16-bit level per pixel. It takes half the memory of packed RGB pixels and a small fraction
+ * of Color objects, and summing a region needs no per-pixel color math.
+ * A level is the grey shade scaled from 0 to 255 to 0 to MAX_LEVEL, so quantizing adds at most
+ * 0.5 / MAX_LEVEL (7.6e-6) to the error of a pixel's normalized brightness.
+ */
+public class LuminancePlane implements GreyShadeSource {
+    /**
+     * The level of a white pixel.
+     */
+    private static final int MAX_LEVEL = 65535;
+    /**
+     * The maximum grey shade.
+     */
+    private static final double MAX_RGB = 255;
+
+    /**
+     * the luminance levels of the image, row by row.
+     */
+    private final char[] levels;
+    /**
+     * the image width.
+     */
+    private final int width;
+    /**
+     * the image height.
+     */
+    private final int height;
+
+    /**
+     * Constructs a LuminancePlane from the given levels, width and height.
+     *
+     * @param levels The luminance levels, row by row, from 0 (black) to 65535 (white).
+     * @param width  The width of the image.
+     * @param height The height of the image.
+     */
+    public LuminancePlane(char[] levels, int width, int height) {
+        this.levels = levels;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Reads an image file directly into a luminance plane. Pixels are converted one row at a time, so no
+     * full-size pixel array is allocated besides the decoded image itself.
+     *
+     * @param filename  The path to the image file.
+     * @param greyShade Computes the grey shade (0 to 255) of a packed RGB pixel.
+     * @return The luminance plane of the image.
+     * @throws IOException If there is an issue reading the image file.
+     */
+    public static LuminancePlane read(String filename, IntToDoubleFunction greyShade) throws IOException {
+        BufferedImage im = ImageIO.read(new File(filename));
+        if (im == null) {
+            throw new IOException("Unsupported image format: " + filename);
+        }
+        int width = im.getWidth();
+        int height = im.getHeight();
+        char[] levels = new char[width * height];
+        int[] row = new int[width];
+        for (int i = 0; i < height; i++) {
+            im.getRGB(0, i, width, 1, row, 0, width);
+            toLevels(row, levels, i * width, greyShade);
+        }
+        return new LuminancePlane(levels, width, height);
+    }
+
+    /**
+     * Converts a color image into a luminance plane.
+     *
+     * @param image     The color image.
+     * @param greyShade Computes the grey shade (0 to 255) of a packed RGB pixel.
+     * @return The luminance plane of the image.
+     */
+    public static LuminancePlane fromImage(Image image, IntToDoubleFunction greyShade) {
+        char[] levels = new char[image.getWidth() * image.getHeight()];
+        toLevels(image.getPixels(), levels, 0, greyShade);
+        return new LuminancePlane(levels, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Converts packed RGB pixels into luminance levels.
+     *
+     * @param pixels    The packed RGB pixels.
+     * @param levels    The levels array to fill.
+     * @param offset    The index in the levels array of the first pixel.
+     * @param greyShade Computes the grey shade (0 to 255) of a packed RGB pixel.
+     */
+    private static void toLevels(int[] pixels, char[] levels, int offset, IntToDoubleFunction greyShade) {
+        for (int i = 0; i < pixels.length; i++) {
+            levels[offset + i] = (char) Math.round(greyShade.applyAsDouble(pixels[i]) * MAX_LEVEL / MAX_RGB);
+        }
+    }
+
+    /**
+     * Gets the width of the image.
+     *
+     * @return The width of the image.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return The height of the image.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sums the grey shades of a rectangular region, accumulating the levels in a long.
+     *
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @return The sum of the grey shades of the region, each between 0 and 255.
+     */
+    @Override
+    public double sumOfGreyShades(int top, int left, int height, int width) {
+        long sumOfLevels = 0;
+        for (int row = top; row < top + height; row++) {
+            int offset = row * this.width;
+            for (int col = left; col < left + width; col++) {
+                sumOfLevels += levels[offset + col];
+            }
+        }
+        return sumOfLevels * MAX_RGB / MAX_LEVEL;
+    }
+}
@@ -0,0 +1,81 @@
+package image;
+
+/**
+ * The SummedAreaTable class caches the grey shades of an image as a summed-area table: every entry holds
+ * the sum of the grey shades above and to the left of a pixel, so the sum over any rectangular region takes
+ * four lookups whatever its size. It is built once per image, with one pass over the source, and makes
+ * converting many regions of the same image (such as the viewports of a pan and zoom viewer) independent
+ * of the number of pixels in each region.
+ * It holds one double per pixel, twice the memory of packed RGB pixels.
+ */
+public class SummedAreaTable implements GreyShadeSource {
+    /**
+     * the sums, (width + 1) per row and (height + 1) rows, with a leading row and column of zeros.
+     */
+    private final double[] sums;
+    /**
+     * the image width.
+     */
+    private final int width;
+    /**
+     * the image height.
+     */
+    private final int height;
+
+    /**
+     * Builds the summed-area table of the grey shades of an image.
+     *
+     * @param source The grey shades of the image.
+     */
+    public SummedAreaTable(GreyShadeSource source) {
+        width = source.getWidth();
+        height = source.getHeight();
+        int stride = width + 1;
+        sums = new double[stride * (height + 1)];
+        for (int row = 0; row < height; row++) {
+            double sumOfRow = 0;
+            int offset = (row + 1) * stride;
+            for (int col = 0; col < width; col++) {
+                sumOfRow += source.sumOfGreyShades(row, col, 1, 1);
+                sums[offset + col + 1] = sums[offset - stride + col + 1] + sumOfRow;
+            }
+        }
+    }
+
+    /**
+     * Gets the width of the image.
+     *
+     * @return The width of the image.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return The height of the image.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sums the grey shades of a rectangular region from the four corners of the region in the table.
+     *
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @return The sum of the grey shades of the region, each between 0 and 255.
+     */
+    @Override
+    public double sumOfGreyShades(int top, int left, int height, int width) {
+        int stride = this.width + 1;
+        int upper = top * stride;
+        int lower = (top + height) * stride;
+        return sums[lower + left + width] - sums[lower + left] - sums[upper + left + width] + sums[upper + left];
+    }
+}
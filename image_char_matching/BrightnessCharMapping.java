@@ -0,0 +1,92 @@
+package image_char_matching;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BrightnessCharMapping class is an immutable snapshot of how a SubImgCharMatcher maps brightness values to
+ * characters. Since every brightness is matched to the character of the nearest normalized brightness, the
+ * mapping is constant between the midpoints of consecutive character brightnesses, and is stored as those
+ * midpoints and the character of every interval between them. Comparing two snapshots gives the brightness
+ * intervals whose character changed between them, so a grid of brightness values only needs its cells in
+ * those intervals matched again.
+ */
+public final class BrightnessCharMapping {
+    /**
+     * The midpoints between consecutive character brightnesses, in increasing order.
+     */
+    private final double[] boundaries;
+    /**
+     * The character of every interval: chars[i] is matched to brightness values between boundaries[i - 1]
+     * (inclusive) and boundaries[i] (exclusive).
+     */
+    private final char[] chars;
+
+    /**
+     * Constructs a BrightnessCharMapping from the normalized brightness of every character, in increasing
+     * order. A mapping that cannot be described, such as one of a single brightness that cannot be
+     * normalized, is represented by null arrays, and differs from every other mapping everywhere.
+     *
+     * @param brightnesses The normalized character brightnesses, in increasing order.
+     * @param chars        The character matched to every brightness.
+     */
+    BrightnessCharMapping(double[] brightnesses, char[] chars) {
+        boolean valid = brightnesses.length > 0;
+        for (double brightness : brightnesses) {
+            valid &= !Double.isNaN(brightness);
+        }
+        if (!valid) {
+            this.boundaries = null;
+            this.chars = null;
+            return;
+        }
+        this.boundaries = new double[brightnesses.length - 1];
+        for (int i = 0; i < boundaries.length; i++) {
+            // Ties go to the brighter character, like SubImgCharMatcher.getCharByImageBrightness
+            boundaries[i] = (brightnesses[i] + brightnesses[i + 1]) / 2;
+        }
+        this.chars = chars.clone();
+    }
+
+    /**
+     * Finds the brightness intervals whose character differs between an earlier mapping and this one.
+     * Adjacent changed intervals are merged, and the first and last intervals extend to minus and plus
+     * infinity.
+     *
+     * @param previous The earlier mapping, or null if there is none, in which case everything changed.
+     * @return The changed intervals, each as {from, to}, in increasing order.
+     */
+    public double[][] changedIntervals(BrightnessCharMapping previous) {
+        if (previous == null || previous.chars == null || chars == null) {
+            return new double[][]{{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY}};
+        }
+        List<double[]> changed = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        double from = Double.NEGATIVE_INFINITY;
+        // Walk the union of both boundary lists, comparing the characters of every segment
+        while (i <= boundaries.length && j <= previous.boundaries.length) {
+            double to = Math.min(i < boundaries.length ? boundaries[i] : Double.POSITIVE_INFINITY,
+                    j < previous.boundaries.length ? previous.boundaries[j] : Double.POSITIVE_INFINITY);
+            if (chars[i] != previous.chars[j]) {
+                double[] last = changed.isEmpty() ? null : changed.get(changed.size() - 1);
+                if (last != null && last[1] == from) {
+                    last[1] = to;
+                } else {
+                    changed.add(new double[]{from, to});
+                }
+            }
+            if (to == Double.POSITIVE_INFINITY) {
+                break;
+            }
+            if (i < boundaries.length && boundaries[i] == to) {
+                i++;
+            }
+            if (j < previous.boundaries.length && previous.boundaries[j] == to) {
+                j++;
+            }
+            from = to;
+        }
+        return changed.toArray(new double[0][]);
+    }
+}
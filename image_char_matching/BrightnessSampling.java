@@ -0,0 +1,93 @@
+package image_char_matching;
+
+/**
+ * The BrightnessSampling class configures the approximate brightness mode of SubImagesControl, in which the
+ * mean brightness of every sub-image is estimated from a deterministic stratified sample of its pixels
+ * instead of from all of them. The sample is sized either to meet an error bound or by a fixed budget of
+ * samples per sub-image, so the cost of a preview no longer grows with the size of the source image.
+ */
+public class BrightnessSampling {
+    /**
+     * Number of pilot samples used to estimate the spread of a sub-image before sizing its sample.
+     */
+    static final int PILOT_SAMPLES = 16;
+    /**
+     * Maximal number of times the sample of a sub-image is sized again from the spread of the last sample.
+     */
+    static final int SIZING_ROUNDS = 3;
+    /**
+     * Multiple of the standard error that bounds the estimation error with about 95% confidence.
+     */
+    static final double CONFIDENCE_FACTOR = 1.96;
+
+    /**
+     * The bound on the estimation error of a sub-image, or 0 if a fixed budget is used.
+     */
+    private final double errorBound;
+    /**
+     * The fixed number of samples per sub-image, or 0 if the sample is sized by the error bound.
+     */
+    private final int samplesPerSubImage;
+
+    /**
+     * Constructs a BrightnessSampling.
+     *
+     * @param errorBound         The error bound, or 0.
+     * @param samplesPerSubImage The samples per sub-image, or 0.
+     */
+    private BrightnessSampling(double errorBound, int samplesPerSubImage) {
+        this.errorBound = errorBound;
+        this.samplesPerSubImage = samplesPerSubImage;
+    }
+
+    /**
+     * Creates a sampling that takes, in every sub-image, enough samples for the estimated mean brightness
+     * to be within the given bound of the exact one with about 95% confidence. The spread of every
+     * sub-image is first estimated from a small pilot sample, so flat sub-images take few samples.
+     *
+     * @param errorBound The error bound on the normalized brightness, between 0 and 1 (exclusive).
+     * @return The sampling.
+     */
+    public static BrightnessSampling withErrorBound(double errorBound) {
+        if (!(errorBound > 0 && errorBound < 1)) {
+            throw new IllegalArgumentException("Error bound out of range: " + errorBound);
+        }
+        return new BrightnessSampling(errorBound, 0);
+    }
+
+    /**
+     * Creates a sampling that takes a fixed number of samples in every sub-image.
+     *
+     * @param samplesPerSubImage The number of samples per sub-image, at least 1.
+     * @return The sampling.
+     */
+    public static BrightnessSampling withSamplesPerSubImage(int samplesPerSubImage) {
+        if (samplesPerSubImage < 1) {
+            throw new IllegalArgumentException("Samples per sub-image out of range: " + samplesPerSubImage);
+        }
+        return new BrightnessSampling(0, samplesPerSubImage);
+    }
+
+    /**
+     * Calculates the number of samples to take in a sub-image.
+     *
+     * @param pilotDeviation The standard deviation of the brightness in the pilot sample.
+     * @return The number of samples.
+     */
+    int sampleSize(double pilotDeviation) {
+        if (samplesPerSubImage > 0) {
+            return samplesPerSubImage;
+        }
+        double samples = Math.ceil(Math.pow(CONFIDENCE_FACTOR * pilotDeviation / errorBound, 2));
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(PILOT_SAMPLES, samples));
+    }
+
+    /**
+     * Checks whether the sample is sized by an error bound, and so needs a pilot sample.
+     *
+     * @return True if the sample is sized by an error bound.
+     */
+    boolean isBounded() {
+        return samplesPerSubImage == 0;
+    }
+}
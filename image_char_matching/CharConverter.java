@@ -30,7 +30,7 @@ public class CharConverter {
     /**
      * Default font name
      */
-    private static final String FONT_NAME = "Courier New";
+    public static final String DEFAULT_FONT_NAME = "Courier New";
     /**
      * Default pixel resolution
      */
@@ -44,13 +44,26 @@ public class CharConverter {
      * @return A boolean 2D array representing the binary image of the character.
      */
     public static boolean[][] convertToBoolArray(char c) {
+        return convertToBoolArray(c, DEFAULT_FONT_NAME, DEFAULT_PIXEL_RESOLUTION);
+    }
+
+    /**
+     * Converts the specified character to a binary 2D array of booleans using the given font and pixel
+     * resolution.
+     *
+     * @param c               The character to be converted.
+     * @param fontName        The name of the font to be used.
+     * @param pixelResolution The pixel resolution per row (and column) of the resulting array.
+     * @return A boolean 2D array representing the binary image of the character.
+     */
+    public static boolean[][] convertToBoolArray(char c, String fontName, int pixelResolution) {
         // Render the character to a buffered image
-        BufferedImage img = getBufferedImage(c, FONT_NAME, DEFAULT_PIXEL_RESOLUTION);
+        BufferedImage img = getBufferedImage(c, fontName, pixelResolution);
 
         // Convert the buffered image to a boolean matrix
-        boolean[][] matrix = new boolean[DEFAULT_PIXEL_RESOLUTION][DEFAULT_PIXEL_RESOLUTION];
-        for (int y = 0; y < DEFAULT_PIXEL_RESOLUTION; y++) {
-            for (int x = 0; x < DEFAULT_PIXEL_RESOLUTION; x++) {
+        boolean[][] matrix = new boolean[pixelResolution][pixelResolution];
+        for (int y = 0; y < pixelResolution; y++) {
+            for (int x = 0; x < pixelResolution; x++) {
                 // Check if the color at the specified pixel is black
                 matrix[y][x] = img.getRGB(x, y) == 0;
             }
@@ -58,6 +71,59 @@ public class CharConverter {
         return matrix;
     }
 
+    /**
+     * Converts the specified character to a bit-packed mask in the default font and pixel resolution.
+     *
+     * @param c The character to be converted.
+     * @return The packed mask of the character, in the layout described by packBits.
+     */
+    public static long[] convertToBitMask(char c) {
+        return packBits(convertToBoolArray(c));
+    }
+
+    /**
+     * Packs a square boolean image into an array of longs. Pixel (y, x) of an image with n pixels per row
+     * is stored in bit (y * n + x) % 64 of word (y * n + x) / 64, so two masks of the same resolution
+     * can be compared with XOR and Long.bitCount.
+     *
+     * @param matrix The boolean image to pack.
+     * @return The packed mask.
+     */
+    public static long[] packBits(boolean[][] matrix) {
+        int pixelsPerRow = matrix.length;
+        long[] mask = new long[maskLength(pixelsPerRow)];
+        for (int y = 0; y < pixelsPerRow; y++) {
+            for (int x = 0; x < pixelsPerRow; x++) {
+                if (matrix[y][x]) {
+                    int bit = y * pixelsPerRow + x;
+                    mask[bit >>> 6] |= 1L << (bit & 63);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the number of longs in a packed mask of the given resolution.
+     *
+     * @param pixelsPerRow The pixel resolution per row (and column) of the mask.
+     * @return The length of the packed mask.
+     */
+    public static int maskLength(int pixelsPerRow) {
+        return (pixelsPerRow * pixelsPerRow + 63) / 64;
+    }
+
+    /**
+     * Checks whether the given font is installed, i.e. whether AWT would render it instead of silently
+     * falling back to a logical font.
+     *
+     * @param fontName The name of the font to check.
+     * @return true if the font is available on this host, false otherwise.
+     */
+    public static boolean isFontAvailable(String fontName) {
+        return new Font(fontName, Font.PLAIN, DEFAULT_PIXEL_RESOLUTION).getFamily().equalsIgnoreCase(fontName);
+    }
+
     /**
      * Creates a buffered image of the specified character using the given font and pixel resolution.
      *
@@ -0,0 +1,152 @@
+package image_char_matching;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The CharsetProfile class is a named, fixed character set together with its matcher, compiled once into an
+ * immutable SubImgCharMatcher. Profiles are kept in a registry by name, like java.nio.charset.Charset, so
+ * switching between them only swaps the matcher a render uses. The registry holds the built-in profiles
+ * "digits", "ascii" and "blocks", and more may be registered; a profile is compiled the first time it is used.
+ */
+public final class CharsetProfile {
+    /**
+     * Name of the profile of the ASCII digits.
+     */
+    public static final String DIGITS = "digits";
+    /**
+     * Name of the profile of all printable ASCII characters.
+     */
+    public static final String ASCII = "ascii";
+    /**
+     * Name of the profile of the space and the block shade characters.
+     */
+    public static final String BLOCKS = "blocks";
+
+    /**
+     * The characters of every registered profile, by name.
+     */
+    private static final Map<String, char[]> DEFINITIONS = new ConcurrentHashMap<>();
+    /**
+     * The profiles compiled so far, by name.
+     */
+    private static final Map<String, CharsetProfile> COMPILED = new ConcurrentHashMap<>();
+
+    static {
+        DEFINITIONS.put(DIGITS, charRange('0', '9'));
+        DEFINITIONS.put(ASCII, charRange(' ', '~'));
+        // Space, light, medium and dark shade, full block
+        DEFINITIONS.put(BLOCKS, new char[]{' ', '\u2591', '\u2592', '\u2593', '\u2588'});
+    }
+
+    /**
+     * The name of the profile.
+     */
+    private final String name;
+    /**
+     * The characters of the profile, in increasing order.
+     */
+    private final char[] chars;
+    /**
+     * The compiled matcher of the profile.
+     */
+    private final SubImgCharMatcher subImgCharMatcher;
+
+    /**
+     * Constructs a CharsetProfile and compiles its matcher.
+     *
+     * @param name  The name of the profile.
+     * @param chars The characters of the profile.
+     */
+    private CharsetProfile(String name, char[] chars) {
+        this.name = name;
+        this.chars = chars.clone();
+        Arrays.sort(this.chars);
+        this.subImgCharMatcher = SubImgCharMatcher.compile(this.chars);
+    }
+
+    /**
+     * Gets a registered profile, compiling it on first use.
+     *
+     * @param name The name of the profile.
+     * @return The profile, or null if no profile of that name is registered.
+     */
+    public static CharsetProfile forName(String name) {
+        char[] chars = DEFINITIONS.get(name);
+        if (chars == null) {
+            return null;
+        }
+        return COMPILED.computeIfAbsent(name, key -> new CharsetProfile(key, chars));
+    }
+
+    /**
+     * Registers a new profile. Registered profiles never change, so a name may only be registered once.
+     *
+     * @param name  The name of the profile.
+     * @param chars The characters of the profile, at least one.
+     * @throws IllegalArgumentException If the name is already registered or there are no characters.
+     */
+    public static void register(String name, char[] chars) {
+        if (chars.length == 0) {
+            throw new IllegalArgumentException("A charset profile needs at least one character: " + name);
+        }
+        if (DEFINITIONS.putIfAbsent(name, chars.clone()) != null) {
+            throw new IllegalArgumentException("Charset profile already registered: " + name);
+        }
+    }
+
+    /**
+     * Gets the names of the registered profiles.
+     *
+     * @return The names, in alphabetical order.
+     */
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(new TreeMap<>(DEFINITIONS).keySet());
+    }
+
+    /**
+     * Gets the name of the profile.
+     *
+     * @return The name of the profile.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the characters of the profile.
+     *
+     * @return A copy of the characters, in increasing order.
+     */
+    public char[] getChars() {
+        return chars.clone();
+    }
+
+    /**
+     * Gets the compiled matcher of the profile, which is immutable and may be shared.
+     *
+     * @return The matcher of the profile.
+     */
+    public SubImgCharMatcher getMatcher() {
+        return subImgCharMatcher;
+    }
+
+    /**
+     * Builds the characters of an inclusive range.
+     *
+     * @param first The first character.
+     * @param last  The last character.
+     * @return The characters from first to last.
+     */
+    private static char[] charRange(char first, char last) {
+        char[] chars = new char[last - first + 1];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (first + i);
+        }
+        return chars;
+    }
+}
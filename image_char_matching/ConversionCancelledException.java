@@ -0,0 +1,36 @@
+package image_char_matching;
+
+/**
+ * The ConversionCancelledException class is thrown out of a conversion whose ConversionControl was
+ * cancelled or whose deadline passed, so that the conversion and everything it allocated are dropped.
+ */
+public class ConversionCancelledException extends RuntimeException {
+    /**
+     * Version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Whether the conversion ran past its deadline, rather than being cancelled.
+     */
+    private final boolean deadlineExceeded;
+
+    /**
+     * Constructs a ConversionCancelledException.
+     *
+     * @param errorMessage     A String representing the error message associated with the exception.
+     * @param deadlineExceeded Whether the conversion ran past its deadline, rather than being cancelled.
+     */
+    public ConversionCancelledException(String errorMessage, boolean deadlineExceeded) {
+        super(errorMessage);
+        this.deadlineExceeded = deadlineExceeded;
+    }
+
+    /**
+     * Tells whether the conversion ran past its deadline, rather than being cancelled.
+     *
+     * @return true if the deadline passed.
+     */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+}
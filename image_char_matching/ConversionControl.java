@@ -0,0 +1,135 @@
+package image_char_matching;
+
+/**
+ * The ConversionControl class lets the caller of a conversion stop it and follow it. It is checked after
+ * every row of sub-images of every stage of the conversion (computing colors, brightness or shapes, then
+ * matching characters): once cancel is called from any thread, or the optional deadline passes, the next
+ * check throws ConversionCancelledException, so an abandoned conversion stops using the CPU within a row
+ * and its arrays become garbage. Every check also reports the progress of the stage, with an estimate of
+ * the time it has left, to an optional ConversionProgress.
+ * A control belongs to one conversion at a time; only cancel may be called from other threads. A conversion
+ * that runs its work on other threads checks its control while it waits for them, and gives every thread a
+ * control of its own that it cancels if the conversion stops.
+ */
+public final class ConversionControl {
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1_000_000;
+    /**
+     * Message of a cancelled conversion.
+     */
+    private static final String CANCELLED_MESSAGE = "Conversion cancelled";
+    /**
+     * Message of a conversion that ran past its deadline.
+     */
+    private static final String DEADLINE_MESSAGE = "Conversion deadline exceeded";
+
+    /**
+     * The deadline as a System.nanoTime value, meaningful only if hasDeadline.
+     */
+    private final long deadline;
+    /**
+     * Whether the conversion has a deadline.
+     */
+    private final boolean hasDeadline;
+    /**
+     * Where progress is reported, or null.
+     */
+    private final ConversionProgress progress;
+    /**
+     * Whether cancel was called.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The System.nanoTime at which the current stage started.
+     */
+    private long stageStart;
+    /**
+     * The number of rows of sub-images of the current stage.
+     */
+    private int stageRows;
+
+    /**
+     * Constructs a ConversionControl with no deadline and no progress reporting, that only stops the
+     * conversion when cancelled.
+     */
+    public ConversionControl() {
+        this(0, null);
+    }
+
+    /**
+     * Constructs a ConversionControl.
+     *
+     * @param timeoutMillis The time the conversion may take from now, in milliseconds, or 0 for no deadline.
+     * @param progress      Where progress is reported, or null.
+     */
+    public ConversionControl(long timeoutMillis, ConversionProgress progress) {
+        this.hasDeadline = timeoutMillis > 0;
+        this.deadline = System.nanoTime() + timeoutMillis * NANOS_PER_MILLI;
+        this.progress = progress;
+    }
+
+    /**
+     * Cancels the conversion. May be called from any thread; the conversion stops at its next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Tells whether the conversion was cancelled.
+     *
+     * @return true if cancel was called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Starts a stage of the conversion.
+     *
+     * @param totalRows The number of rows of sub-images of the stage.
+     * @throws ConversionCancelledException If the conversion was cancelled or its deadline passed.
+     */
+    public void startStage(int totalRows) {
+        check();
+        stageRows = totalRows;
+        stageStart = System.nanoTime();
+        if (progress != null) {
+            progress.progress(0, totalRows, -1);
+        }
+    }
+
+    /**
+     * Records that rows of sub-images of the current stage are complete, and reports the progress.
+     *
+     * @param rowsDone The number of rows completed in the stage so far.
+     * @throws ConversionCancelledException If the conversion was cancelled or its deadline passed.
+     */
+    public void rowsDone(int rowsDone) {
+        check();
+        if (progress != null) {
+            long elapsed = System.nanoTime() - stageStart;
+            // Rows of a stage cost about the same, so the rest takes as long per row as the rows done
+            progress.progress(rowsDone, stageRows, rowsDone == 0 ? -1 :
+                    (long) ((double) elapsed / rowsDone * (stageRows - rowsDone)));
+        }
+    }
+
+    /**
+     * Stops the conversion if it was cancelled or its deadline passed, without reporting progress, for
+     * callers that wait on work running on other threads.
+     *
+     * @throws ConversionCancelledException If the conversion was cancelled or its deadline passed.
+     */
+    public void check() {
+        if (cancelled) {
+            throw new ConversionCancelledException(CANCELLED_MESSAGE, false);
+        }
+        if (hasDeadline && System.nanoTime() - deadline > 0) {
+            throw new ConversionCancelledException(DEADLINE_MESSAGE, true);
+        }
+    }
+}
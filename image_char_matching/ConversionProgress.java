@@ -0,0 +1,17 @@
+package image_char_matching;
+
+/**
+ * An object implementing this interface is told how far a conversion stage has come, every time it
+ * completes a row of sub-images.
+ */
+@FunctionalInterface
+public interface ConversionProgress {
+    /**
+     * Reports the progress of the current stage of a conversion.
+     *
+     * @param rowsDone   The number of rows of sub-images completed in the stage.
+     * @param totalRows  The number of rows of sub-images of the stage.
+     * @param nanosLeft  The estimated time left in the stage, in nanoseconds, or -1 before the first row.
+     */
+    void progress(int rowsDone, int totalRows, long nanosLeft);
+}
@@ -0,0 +1,22 @@
+package image_char_matching;
+
+/**
+ * An object implementing this interface sums the fixed-point grey shades of a rectangular region of packed
+ * RGB pixels, with exactly the weights and result of LuminanceKernel.FIXED_POINT.
+ * It lets the vectorized implementation be loaded reflectively, so that the rest of the package does not
+ * depend on the incubating Vector API.
+ */
+interface FixedPointLuminanceSum {
+    /**
+     * Sums the fixed-point grey shades of a rectangular region of a packed RGB pixel array.
+     *
+     * @param pixels The packed RGB pixels, row by row.
+     * @param stride The number of pixels per row of the array.
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @return The sum of the grey shades of the region, in 16 fractional bits on a 0 to 255 scale.
+     */
+    long fixedPointSum(int[] pixels, int stride, int top, int left, int height, int width);
+}
@@ -0,0 +1,221 @@
+package image_char_matching;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The GlyphTable class holds glyph brightness values (and optionally glyph bitmaps) that were precomputed
+ * by GlyphTableGenerator and bundled as a binary resource next to this class.
+ * SubImgCharMatcher consults it before rendering a character, so that the default font and resolution
+ * never need AWT font rendering at startup. Characters, fonts or resolutions that are not covered by the
+ * table are rendered live by CharConverter as before.
+ * <p>
+ * Binary layout (big endian, as written by DataOutputStream):
+ * <pre>
+ * int    MAGIC
+ * short  VERSION
+ * short  number of sections
+ * per section:
+ *   UTF    font name
+ *   short  pixel resolution
+ *   byte   flags (FLAG_BITMAPS if bitmaps follow each glyph)
+ *   short  number of glyphs
+ *   per glyph:
+ *     char   the character
+ *     int    number of white (background) pixels
+ *     byte[] bitmap, resolution * resolution bits, row-major, if FLAG_BITMAPS is set
+ * </pre>
+ */
+public class GlyphTable {
+    /**
+     * Name of the bundled resource, resolved relative to this class.
+     */
+    public static final String RESOURCE_NAME = "glyphs.bin";
+    /**
+     * Magic number identifying a glyph table ("GLYT").
+     */
+    static final int MAGIC = 0x474C5954;
+    /**
+     * Current format version.
+     */
+    static final short VERSION = 1;
+    /**
+     * Section flag: every glyph is followed by its packed bitmap.
+     */
+    static final byte FLAG_BITMAPS = 1;
+
+    /**
+     * The lazily loaded table from the bundled resource.
+     */
+    private static GlyphTable defaultTable;
+
+    /**
+     * Sections of the table, keyed by font name and resolution.
+     */
+    private final Map<String, Section> sections = new HashMap<>();
+
+    /**
+     * A single (font, resolution) section of the table.
+     */
+    private static class Section {
+        /**
+         * The pixel resolution of the glyphs in this section.
+         */
+        private final int resolution;
+        /**
+         * Number of white pixels per character.
+         */
+        private final Map<Character, Integer> whiteCounts = new HashMap<>();
+        /**
+         * Packed bitmaps per character, empty if the section has no bitmaps.
+         */
+        private final Map<Character, byte[]> bitmaps = new HashMap<>();
+
+        /**
+         * Constructs an empty section.
+         *
+         * @param resolution The pixel resolution of the glyphs in this section.
+         */
+        private Section(int resolution) {
+            this.resolution = resolution;
+        }
+    }
+
+    /**
+     * Constructs an empty glyph table, which covers nothing.
+     */
+    private GlyphTable() {
+    }
+
+    /**
+     * Returns the glyph table bundled with the application. If the resource is missing or unreadable, an
+     * empty table is returned and every lookup falls back to live rendering.
+     *
+     * @return The bundled glyph table.
+     */
+    public static synchronized GlyphTable getDefault() {
+        if (defaultTable == null) {
+            defaultTable = new GlyphTable();
+            try (InputStream in = GlyphTable.class.getResourceAsStream(RESOURCE_NAME)) {
+                if (in != null) {
+                    defaultTable = read(in);
+                }
+            } catch (IOException e) {
+                Logger.getGlobal().warning(String.format("Failed to read glyph table \"%s\"",
+                        RESOURCE_NAME));
+            }
+        }
+        return defaultTable;
+    }
+
+    /**
+     * Reads a glyph table from the given stream.
+     *
+     * @param inputStream The stream to read from.
+     * @return The glyph table.
+     * @throws IOException If the stream is not a valid glyph table.
+     */
+    public static GlyphTable read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+            throw new IOException("Not a glyph table");
+        }
+        GlyphTable table = new GlyphTable();
+        int sectionCount = in.readShort();
+        for (int i = 0; i < sectionCount; i++) {
+            String fontName = in.readUTF();
+            Section section = new Section(in.readShort());
+            boolean hasBitmaps = (in.readByte() & FLAG_BITMAPS) != 0;
+            int glyphCount = in.readShort();
+            for (int j = 0; j < glyphCount; j++) {
+                char c = in.readChar();
+                section.whiteCounts.put(c, in.readInt());
+                if (hasBitmaps) {
+                    byte[] bitmap = new byte[bitmapLength(section.resolution)];
+                    in.readFully(bitmap);
+                    section.bitmaps.put(c, bitmap);
+                }
+            }
+            table.sections.put(sectionKey(fontName, section.resolution), section);
+        }
+        return table;
+    }
+
+    /**
+     * Checks whether the table holds the brightness of a character in the given font and resolution.
+     *
+     * @param fontName   The font name.
+     * @param resolution The pixel resolution.
+     * @param c          The character.
+     * @return true if the character is covered, false otherwise.
+     */
+    public boolean covers(String fontName, int resolution, char c) {
+        Section section = sections.get(sectionKey(fontName, resolution));
+        return section != null && section.whiteCounts.containsKey(c);
+    }
+
+    /**
+     * Returns the precomputed brightness of a character, i.e. the fraction of white pixels in its
+     * rendered image. Only valid if covers returned true for the same arguments.
+     *
+     * @param fontName   The font name.
+     * @param resolution The pixel resolution.
+     * @param c          The character.
+     * @return The brightness of the character, between 0 and 1.
+     */
+    public double brightness(String fontName, int resolution, char c) {
+        int whiteCount = sections.get(sectionKey(fontName, resolution)).whiteCounts.get(c);
+        return (double) whiteCount / (double) (resolution * resolution);
+    }
+
+    /**
+     * Returns the precomputed bitmap of a character, in the same layout as
+     * CharConverter.convertToBoolArray, or null if the table holds no bitmap for it.
+     *
+     * @param fontName   The font name.
+     * @param resolution The pixel resolution.
+     * @param c          The character.
+     * @return The boolean image of the character, or null.
+     */
+    public boolean[][] bitmap(String fontName, int resolution, char c) {
+        Section section = sections.get(sectionKey(fontName, resolution));
+        if (section == null || !section.bitmaps.containsKey(c)) {
+            return null;
+        }
+        byte[] packed = section.bitmaps.get(c);
+        boolean[][] matrix = new boolean[resolution][resolution];
+        for (int y = 0; y < resolution; y++) {
+            for (int x = 0; x < resolution; x++) {
+                int bit = y * resolution + x;
+                matrix[y][x] = (packed[bit >> 3] & (1 << (bit & 7))) != 0;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns the number of bytes needed to store one packed bitmap.
+     *
+     * @param resolution The pixel resolution.
+     * @return The packed bitmap length in bytes.
+     */
+    static int bitmapLength(int resolution) {
+        return (resolution * resolution + 7) / 8;
+    }
+
+    /**
+     * Builds the lookup key of a section.
+     *
+     * @param fontName   The font name.
+     * @param resolution The pixel resolution.
+     * @return The section key.
+     */
+    private static String sectionKey(String fontName, int resolution) {
+        return fontName + "@" + resolution;
+    }
+}
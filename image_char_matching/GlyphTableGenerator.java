@@ -0,0 +1,154 @@
+package image_char_matching;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The GlyphTableGenerator class precomputes glyph brightness values and bitmaps for a set of fonts and
+ * pixel resolutions, and writes them as a GlyphTable binary resource.
+ * It must be run on a host where the requested fonts are installed; fonts that AWT cannot find are
+ * skipped instead of being recorded with the metrics of a fallback font.
+ * <p>
+ * Usage: {@code java image_char_matching.GlyphTableGenerator <output file> [font:resolution ...]}
+ * With no font arguments, the default font and resolution of CharConverter are generated.
+ */
+public class GlyphTableGenerator {
+    /**
+     * First printable ASCII character included in the table.
+     */
+    private static final char FIRST_CHAR = 32;
+    /**
+     * Last printable ASCII character included in the table.
+     */
+    private static final char LAST_CHAR = 126;
+    /**
+     * Separator between font name and resolution in the command-line arguments.
+     */
+    private static final char FONT_RESOLUTION_SEPARATOR = ':';
+    /**
+     * Usage message.
+     */
+    private static final String USAGE = "Usage: GlyphTableGenerator <output file> [font:resolution ...]";
+    /**
+     * Message printed when none of the requested fonts is installed.
+     */
+    private static final String NO_GLYPHS_MESSAGE = "No glyphs rendered: none of the fonts is installed on this " +
+            "host, so no table was written";
+    /**
+     * Exit code of a run that rendered no glyphs.
+     */
+    private static final int NO_GLYPHS_EXIT_CODE = 1;
+    /**
+     * Exit code of a run with malformed arguments.
+     */
+    private static final int USAGE_EXIT_CODE = 2;
+
+    /**
+     * Private default constructor to prevent instantiation of the class.
+     */
+    private GlyphTableGenerator() {
+    }
+
+    /**
+     * Generates the glyph table. Exits with a failure code, without writing the file, if the arguments are
+     * malformed or none of the fonts is installed.
+     *
+     * @param args The output file, followed by optional font:resolution pairs.
+     * @throws IOException If the output file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        List<String> fontNames = new ArrayList<>();
+        List<Integer> resolutions = new ArrayList<>();
+        if (args.length == 1) {
+            fontNames.add(CharConverter.DEFAULT_FONT_NAME);
+            resolutions.add(CharConverter.DEFAULT_PIXEL_RESOLUTION);
+        }
+        for (int i = 1; i < args.length; i++) {
+            int separator = args[i].lastIndexOf(FONT_RESOLUTION_SEPARATOR);
+            int resolution = separator > 0 ? parseResolution(args[i].substring(separator + 1)) : 0;
+            if (resolution == 0) {
+                System.err.println(USAGE);
+                System.exit(USAGE_EXIT_CODE);
+            }
+            fontNames.add(args[i].substring(0, separator));
+            resolutions.add(resolution);
+        }
+        for (int i = fontNames.size() - 1; i >= 0; i--) {
+            if (!CharConverter.isFontAvailable(fontNames.get(i))) {
+                System.out.println("Skipping font not installed on this host: " + fontNames.get(i));
+                fontNames.remove(i);
+                resolutions.remove(i);
+            }
+        }
+        if (fontNames.isEmpty()) {
+            // An empty table would only hide that every glyph is still rendered live
+            System.err.println(NO_GLYPHS_MESSAGE);
+            System.exit(NO_GLYPHS_EXIT_CODE);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(args[0])))) {
+            out.writeInt(GlyphTable.MAGIC);
+            out.writeShort(GlyphTable.VERSION);
+            out.writeShort(fontNames.size());
+            for (int i = 0; i < fontNames.size(); i++) {
+                writeSection(out, fontNames.get(i), resolutions.get(i));
+            }
+        }
+    }
+
+    /**
+     * Parses the pixel resolution of a font:resolution argument.
+     *
+     * @param resolution The resolution, as written after the separator.
+     * @return The resolution, or 0 if it is not a number that fits the table.
+     */
+    private static int parseResolution(String resolution) {
+        try {
+            int parsed = Integer.parseInt(resolution);
+            return parsed > 0 && parsed <= Short.MAX_VALUE ? parsed : 0;
+        } catch (NumberFormatException numberFormatException) {
+            return 0;
+        }
+    }
+
+    /**
+     * Renders every printable ASCII character in the given font and resolution and writes its section.
+     *
+     * @param out        The stream to write to.
+     * @param fontName   The font name.
+     * @param resolution The pixel resolution.
+     * @throws IOException If writing fails.
+     */
+    private static void writeSection(DataOutputStream out, String fontName, int resolution)
+            throws IOException {
+        out.writeUTF(fontName);
+        out.writeShort(resolution);
+        out.writeByte(GlyphTable.FLAG_BITMAPS);
+        out.writeShort(LAST_CHAR - FIRST_CHAR + 1);
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            boolean[][] matrix = CharConverter.convertToBoolArray(c, fontName, resolution);
+            byte[] packed = new byte[GlyphTable.bitmapLength(resolution)];
+            int whiteCount = 0;
+            for (int y = 0; y < resolution; y++) {
+                for (int x = 0; x < resolution; x++) {
+                    if (matrix[y][x]) {
+                        int bit = y * resolution + x;
+                        packed[bit >> 3] |= (byte) (1 << (bit & 7));
+                        whiteCount++;
+                    }
+                }
+            }
+            out.writeChar(c);
+            out.writeInt(whiteCount);
+            out.write(packed);
+        }
+    }
+}
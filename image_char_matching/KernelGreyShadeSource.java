@@ -0,0 +1,64 @@
+package image_char_matching;
+
+import image.GreyShadeSource;
+import image.Image;
+
+/**
+ * The KernelGreyShadeSource class provides the grey shades of a color Image, computed on demand from its
+ * packed RGB pixels with a given LuminanceKernel.
+ */
+public class KernelGreyShadeSource implements GreyShadeSource {
+    /**
+     * The color image.
+     */
+    private final Image image;
+    /**
+     * The kernel used to compute grey shades.
+     */
+    private final LuminanceKernel kernel;
+
+    /**
+     * Constructs a KernelGreyShadeSource for the given image and kernel.
+     *
+     * @param image  The color image.
+     * @param kernel The kernel used to compute grey shades.
+     */
+    public KernelGreyShadeSource(Image image, LuminanceKernel kernel) {
+        this.image = image;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Gets the width of the image.
+     *
+     * @return The width of the image.
+     */
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return The height of the image.
+     */
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * Sums the grey shades of a rectangular region with the kernel.
+     *
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @return The sum of the grey shades of the region, each between 0 and 255.
+     */
+    @Override
+    public double sumOfGreyShades(int top, int left, int height, int width) {
+        return kernel.sumOfGreyShades(image.getPixels(), image.getWidth(), top, left, height, width);
+    }
+}
@@ -0,0 +1,102 @@
+package image_char_matching;
+
+import image.Image;
+
+import java.util.Random;
+
+/**
+ * The LuminanceKernelBenchmark class times every LuminanceKernel on a synthetic image and reports the
+ * largest brightness difference of each kernel against the DOUBLE reference kernel. The VECTOR kernel is
+ * also checked against the scalar FIXED_POINT kernel, whose results it must reproduce exactly.
+ * <p>
+ * Usage: {@code java image_char_matching.LuminanceKernelBenchmark [image size] [resolution] [repetitions]}
+ */
+public class LuminanceKernelBenchmark {
+    /**
+     * Default width and height of the synthetic image.
+     */
+    private static final int DEFAULT_IMAGE_SIZE = 2048;
+    /**
+     * Default resolution of the brightness grid.
+     */
+    private static final int DEFAULT_RESOLUTION = 128;
+    /**
+     * Default number of timed repetitions per kernel.
+     */
+    private static final int DEFAULT_REPETITIONS = 20;
+    /**
+     * Number of untimed warm-up repetitions per kernel.
+     */
+    private static final int WARMUP_REPETITIONS = 20;
+    /**
+     * Seed of the synthetic image, so that runs are comparable.
+     */
+    private static final long SEED = 42;
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Private default constructor to prevent instantiation of the class.
+     */
+    private LuminanceKernelBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional image size, resolution and number of repetitions.
+     */
+    public static void main(String[] args) {
+        int imageSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_IMAGE_SIZE;
+        int resolution = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RESOLUTION;
+        int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_REPETITIONS;
+
+        int[] pixels = new int[imageSize * imageSize];
+        Random random = new Random(SEED);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt() | 0xFF000000;
+        }
+        Image image = new Image(pixels, imageSize, imageSize);
+
+        double[][] reference = SubImagesControl.imageToBrightnessArray(image, resolution, LuminanceKernel.DOUBLE);
+        double[][] scalarFixedPoint = SubImagesControl.imageToBrightnessArray(image, resolution,
+                LuminanceKernel.FIXED_POINT);
+        for (LuminanceKernel kernel : LuminanceKernel.values()) {
+            double[][] brightness = null;
+            for (int i = 0; i < WARMUP_REPETITIONS; i++) {
+                brightness = SubImagesControl.imageToBrightnessArray(image, resolution, kernel);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < repetitions; i++) {
+                brightness = SubImagesControl.imageToBrightnessArray(image, resolution, kernel);
+            }
+            double millisPerRun = (System.nanoTime() - start) / NANOS_PER_MILLI / repetitions;
+            System.out.printf("%-12s %8.2f ms/run   max |error| vs DOUBLE: %.3e%n", kernel, millisPerRun,
+                    maxDifference(reference, brightness));
+            if (kernel == LuminanceKernel.VECTOR) {
+                // The vectorized kernel must reproduce the scalar fixed-point kernel exactly
+                System.out.printf("%-12s vectorized: %b, max |error| vs FIXED_POINT: %.3e%n", kernel,
+                        VectorSupport.vectorSum() != null, maxDifference(scalarFixedPoint, brightness));
+            }
+        }
+    }
+
+    /**
+     * Calculates the largest absolute difference between two brightness grids.
+     *
+     * @param expected The reference grid.
+     * @param actual   The grid to compare.
+     * @return The largest absolute difference.
+     */
+    static double maxDifference(double[][] expected, double[][] actual) {
+        double maxDifference = 0;
+        for (int i = 0; i < expected.length; i++) {
+            for (int j = 0; j < expected[i].length; j++) {
+                maxDifference = Math.max(maxDifference, Math.abs(expected[i][j] - actual[i][j]));
+            }
+        }
+        return maxDifference;
+    }
+}
@@ -0,0 +1,337 @@
+package image_char_matching;
+
+import image.GreyShadeSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The MappedGreyShadeSource class provides the grey shades of an uncompressed image file by memory-mapping
+ * it: regions are summed straight from the mapped file, one row at a time, so loading the image costs no
+ * decoding and no heap memory for its pixels, and a conversion reads every pixel once, sequentially.
+ * Supported files are binary PGM (P5, grey) and PPM (P6, RGB), and the raw format: the ASCII magic "RAWI",
+ * the width and height as big-endian ints, the number of channels (1 for grey, 3 for RGB) and the bits per
+ * sample (8 or 16) as one byte each, followed by the samples row by row, 16-bit samples big-endian.
+ * Samples are scaled to 0 to 255 and summed with a LuminanceKernel, grey pixels as equal channels. With the
+ * fixed-point kernels an 8-bit file converts exactly as the same image decoded by Image; DOUBLE sums every
+ * row on its own, so its sums may differ by floating-point rounding.
+ */
+public class MappedGreyShadeSource implements GreyShadeSource {
+    /**
+     * Magic of the raw format.
+     */
+    public static final String RAW_MAGIC = "RAWI";
+    /**
+     * Magic of binary PGM files.
+     */
+    private static final String PGM_MAGIC = "P5";
+    /**
+     * Magic of binary PPM files.
+     */
+    private static final String PPM_MAGIC = "P6";
+    /**
+     * Number of bytes of the longest magic.
+     */
+    private static final int MAGIC_BYTES = 4;
+    /**
+     * Number of channels of a grey image.
+     */
+    private static final int GREY_CHANNELS = 1;
+    /**
+     * Number of channels of an RGB image.
+     */
+    private static final int RGB_CHANNELS = 3;
+    /**
+     * Largest sample value of 8-bit samples, which is also the largest grey shade.
+     */
+    private static final int MAX_SAMPLE = 255;
+    /**
+     * Largest sample value of 16-bit samples.
+     */
+    private static final int MAX_WIDE_SAMPLE = 65535;
+    /**
+     * Bits per byte.
+     */
+    private static final int BITS_PER_BYTE = 8;
+    /**
+     * Multiplier that copies a grey level into the three channels of a packed RGB pixel.
+     */
+    private static final int GREY_TO_RGB = 0x010101;
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer file;
+    /**
+     * The offset in the file of the first sample.
+     */
+    private final int dataOffset;
+    /**
+     * The image width.
+     */
+    private final int width;
+    /**
+     * The image height.
+     */
+    private final int height;
+    /**
+     * The number of channels per pixel, 1 or 3.
+     */
+    private final int channels;
+    /**
+     * The number of bytes per sample, 1 or 2.
+     */
+    private final int bytesPerSample;
+    /**
+     * The sample value of full intensity.
+     */
+    private final int maxValue;
+    /**
+     * The kernel used to compute grey shades.
+     */
+    private final LuminanceKernel kernel;
+    /**
+     * The row buffer of every thread that sums regions, as wide as the image, so that summing allocates
+     * nothing once a thread has its buffer.
+     */
+    private final ThreadLocal<int[]> rowBuffers;
+
+    /**
+     * Constructs a MappedGreyShadeSource over a mapped file whose header has been read.
+     *
+     * @param file       The mapped file.
+     * @param dataOffset The offset in the file of the first sample.
+     * @param width      The image width.
+     * @param height     The image height.
+     * @param channels   The number of channels per pixel, 1 or 3.
+     * @param maxValue   The sample value of full intensity, which also sets the bytes per sample.
+     * @param kernel     The kernel used to compute grey shades.
+     */
+    private MappedGreyShadeSource(ByteBuffer file, int dataOffset, int width, int height, int channels,
+                                  int maxValue, LuminanceKernel kernel) {
+        this.file = file;
+        this.dataOffset = dataOffset;
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        this.bytesPerSample = maxValue > MAX_SAMPLE ? 2 : 1;
+        this.maxValue = maxValue;
+        this.kernel = kernel;
+        this.rowBuffers = ThreadLocal.withInitial(() -> new int[width]);
+    }
+
+    /**
+     * Checks from its first bytes whether a file is in one of the formats that can be mapped.
+     *
+     * @param filename The path to the file.
+     * @return true if the file starts like a binary PGM or PPM file or a raw file.
+     */
+    public static boolean isMappable(String filename) {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC_BYTES);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Read until the magic is complete or the file ends
+            }
+            String start = new String(magic.array(), 0, magic.position(), StandardCharsets.US_ASCII);
+            boolean pnm = (start.startsWith(PGM_MAGIC) || start.startsWith(PPM_MAGIC)) &&
+                    start.length() > PGM_MAGIC.length() && Character.isWhitespace(start.charAt(PGM_MAGIC.length()));
+            return pnm || start.equals(RAW_MAGIC);
+        } catch (IOException | RuntimeException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Memory-maps an image file and reads its header. No pixel is read until a region is summed.
+     *
+     * @param filename The path to the image file.
+     * @param kernel   The kernel used to compute grey shades.
+     * @return The grey shades of the image.
+     * @throws IOException If the file cannot be mapped, its header is malformed or its samples are cut short.
+     */
+    public static MappedGreyShadeSource open(String filename, LuminanceKernel kernel) throws IOException {
+        ByteBuffer file;
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Image file too large to map: " + filename);
+            }
+            // The mapping stays valid after the channel is closed
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer header = file.duplicate();
+        int width;
+        int height;
+        int channels;
+        int maxValue;
+        try {
+            String start = ascii(header, PGM_MAGIC.length());
+            if (start.equals(PGM_MAGIC) || start.equals(PPM_MAGIC)) {
+                channels = start.equals(PGM_MAGIC) ? GREY_CHANNELS : RGB_CHANNELS;
+                width = nextPnmNumber(header);
+                height = nextPnmNumber(header);
+                maxValue = nextPnmNumber(header);
+                // A single whitespace byte separates the header from the samples
+                header.get();
+            } else if ((start + ascii(header, RAW_MAGIC.length() - start.length())).equals(RAW_MAGIC)) {
+                width = header.getInt();
+                height = header.getInt();
+                channels = header.get();
+                int bitsPerSample = header.get();
+                if (bitsPerSample != BITS_PER_BYTE && bitsPerSample != 2 * BITS_PER_BYTE) {
+                    throw new IOException("Unsupported bits per sample: " + filename);
+                }
+                maxValue = bitsPerSample == BITS_PER_BYTE ? MAX_SAMPLE : MAX_WIDE_SAMPLE;
+            } else {
+                throw new IOException("Unsupported image format: " + filename);
+            }
+        } catch (RuntimeException runtimeException) {
+            // Underflow of a truncated header, or a malformed number
+            throw new IOException("Malformed image header: " + filename, runtimeException);
+        }
+        if (width < 1 || height < 1 || (channels != GREY_CHANNELS && channels != RGB_CHANNELS) ||
+                maxValue < 1 || maxValue > MAX_WIDE_SAMPLE) {
+            throw new IOException("Malformed image header: " + filename);
+        }
+        long samplesBytes = (long) width * height * channels * (maxValue > MAX_SAMPLE ? 2 : 1);
+        if (header.position() + samplesBytes > file.capacity()) {
+            throw new IOException("Truncated image file: " + filename);
+        }
+        return new MappedGreyShadeSource(file, header.position(), width, height, channels, maxValue, kernel);
+    }
+
+    /**
+     * Reads ASCII characters of a header.
+     *
+     * @param header The header, positioned before the characters.
+     * @param length The number of characters.
+     * @return The characters.
+     */
+    private static String ascii(ByteBuffer header, int length) {
+        byte[] bytes = new byte[length];
+        header.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Reads the next number of a PNM header, skipping whitespace and comments before it.
+     *
+     * @param header The header, positioned before the number.
+     * @return The number.
+     * @throws IOException If the next token is not a number.
+     */
+    private static int nextPnmNumber(ByteBuffer header) throws IOException {
+        char c = (char) header.get();
+        while (Character.isWhitespace(c) || c == '#') {
+            if (c == '#') {
+                // Comments run to the end of the line
+                while (c != '\n' && c != '\r') {
+                    c = (char) header.get();
+                }
+            }
+            c = (char) header.get();
+        }
+        if (c < '0' || c > '9') {
+            throw new IOException("Malformed number in image header");
+        }
+        long number = 0;
+        while (c >= '0' && c <= '9') {
+            number = number * 10 + (c - '0');
+            if (number > Integer.MAX_VALUE) {
+                throw new IOException("Number too large in image header");
+            }
+            c = (char) header.get();
+        }
+        // Leave the whitespace that ends the number to the caller
+        header.position(header.position() - 1);
+        return (int) number;
+    }
+
+    /**
+     * Gets the width of the image.
+     *
+     * @return The width of the image.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return The height of the image.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sums the grey shades of a rectangular region, reading its rows from the mapped file one after the
+     * other through the row buffer of the calling thread. Safe to call from several threads at once.
+     *
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @return The sum of the grey shades of the region, each between 0 and 255.
+     */
+    @Override
+    public double sumOfGreyShades(int top, int left, int height, int width) {
+        int[] row = rowBuffers.get();
+        double sumOfGreyShades = 0;
+        for (int i = top; i < top + height; i++) {
+            readRow(dataOffset + ((long) i * this.width + left) * channels * bytesPerSample, row, width);
+            sumOfGreyShades += kernel.sumOfGreyShades(row, width, 0, 0, 1, width);
+        }
+        return sumOfGreyShades;
+    }
+
+    /**
+     * Reads consecutive pixels of the mapped file as packed RGB pixels.
+     *
+     * @param offset The offset in the file of the first pixel.
+     * @param row    The array to fill from its start, one packed RGB pixel per pixel.
+     * @param count  The number of pixels to read.
+     */
+    private void readRow(long offset, int[] row, int count) {
+        int index = (int) offset;
+        if (bytesPerSample == 1 && maxValue == MAX_SAMPLE) {
+            // The common case: samples are the channels of the packed pixels as they are
+            if (channels == RGB_CHANNELS) {
+                for (int j = 0; j < count; j++, index += RGB_CHANNELS) {
+                    row[j] = (file.get(index) & 0xFF) << 16 | (file.get(index + 1) & 0xFF) << 8 |
+                            (file.get(index + 2) & 0xFF);
+                }
+            } else {
+                for (int j = 0; j < count; j++, index++) {
+                    row[j] = (file.get(index) & 0xFF) * GREY_TO_RGB;
+                }
+            }
+            return;
+        }
+        for (int j = 0; j < count; j++) {
+            int rgb = 0;
+            for (int channel = 0; channel < channels; channel++, index += bytesPerSample) {
+                rgb = rgb << BITS_PER_BYTE | scaledSample(index);
+            }
+            row[j] = channels == RGB_CHANNELS ? rgb : rgb * GREY_TO_RGB;
+        }
+    }
+
+    /**
+     * Reads a sample of the mapped file and scales it to 0 to 255, rounding to the nearest value.
+     *
+     * @param index The offset in the file of the sample.
+     * @return The scaled sample.
+     */
+    private int scaledSample(int index) {
+        int sample = bytesPerSample == 1 ? file.get(index) & 0xFF : file.getShort(index) & 0xFFFF;
+        sample = Math.min(sample, maxValue);
+        return (sample * MAX_SAMPLE + maxValue / 2) / maxValue;
+    }
+}
@@ -0,0 +1,16 @@
+package image_char_matching;
+
+/**
+ * The MatchingMode enum selects how a sub-image is matched to a character.
+ */
+public enum MatchingMode {
+    /**
+     * Match the average brightness of the sub-image to the brightness of each character (the default).
+     */
+    BRIGHTNESS,
+    /**
+     * Threshold the sub-image into a bit mask with the glyph layout, and pick the character whose glyph
+     * mask differs from it in the fewest pixels.
+     */
+    SHAPE
+}
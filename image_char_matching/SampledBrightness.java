@@ -0,0 +1,76 @@
+package image_char_matching;
+
+/**
+ * The SampledBrightness class holds the brightness values estimated by the approximate brightness mode of
+ * SubImagesControl, together with the estimated error of the estimates.
+ */
+public class SampledBrightness {
+    /**
+     * The estimated brightness of every sub-image.
+     */
+    private final double[][] brightness;
+    /**
+     * The largest estimated error of a sub-image.
+     */
+    private final double maxError;
+    /**
+     * The mean estimated error over all sub-images.
+     */
+    private final double meanError;
+    /**
+     * The number of pixels sampled over all sub-images.
+     */
+    private final long samples;
+
+    /**
+     * Constructs a SampledBrightness.
+     *
+     * @param brightness The estimated brightness of every sub-image.
+     * @param maxError   The largest estimated error of a sub-image.
+     * @param meanError  The mean estimated error over all sub-images.
+     * @param samples    The number of pixels sampled over all sub-images.
+     */
+    SampledBrightness(double[][] brightness, double maxError, double meanError, long samples) {
+        this.brightness = brightness;
+        this.maxError = maxError;
+        this.meanError = meanError;
+        this.samples = samples;
+    }
+
+    /**
+     * Gets the estimated brightness values.
+     *
+     * @return A 2D array of brightness values for the sub-images.
+     */
+    public double[][] getBrightness() {
+        return brightness;
+    }
+
+    /**
+     * Gets the largest estimated error of a sub-image, as the half-width of its 95% confidence interval on
+     * the normalized brightness. Sub-images read in full have no error.
+     *
+     * @return The largest estimated error.
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Gets the mean estimated error over all sub-images.
+     *
+     * @return The mean estimated error.
+     */
+    public double getMeanError() {
+        return meanError;
+    }
+
+    /**
+     * Gets the number of pixels sampled over all sub-images.
+     *
+     * @return The number of samples.
+     */
+    public long getSamples() {
+        return samples;
+    }
+}
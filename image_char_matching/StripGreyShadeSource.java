@@ -0,0 +1,115 @@
+package image_char_matching;
+
+import image.GreyShadeSource;
+import image.Image;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The StripGreyShadeSource class provides the grey shades of an image file that is never held in memory as
+ * a whole: it decodes one horizontal strip of rows at a time, and decodes the next strip when a region
+ * below the current one is requested. Sub-images are summed row of sub-images by row of sub-images, so
+ * with strips at least as tall as a sub-image every part of the file is decoded about once per conversion,
+ * while memory holds a single strip.
+ */
+public class StripGreyShadeSource implements GreyShadeSource {
+    /**
+     * The path to the image file.
+     */
+    private final String filename;
+    /**
+     * The image width.
+     */
+    private final int width;
+    /**
+     * The image height.
+     */
+    private final int height;
+    /**
+     * The number of rows decoded at a time.
+     */
+    private final int stripRows;
+    /**
+     * The kernel used to compute grey shades.
+     */
+    private final LuminanceKernel kernel;
+
+    /**
+     * The currently decoded strip, or null before the first request.
+     */
+    private Image strip;
+    /**
+     * The first image row of the current strip.
+     */
+    private int stripTop;
+
+    /**
+     * Constructs a StripGreyShadeSource. No pixels are decoded until they are requested.
+     *
+     * @param filename  The path to the image file.
+     * @param width     The width of the image, as read from its header.
+     * @param height    The height of the image, as read from its header.
+     * @param stripRows The number of rows decoded at a time.
+     * @param kernel    The kernel used to compute grey shades.
+     */
+    public StripGreyShadeSource(String filename, int width, int height, int stripRows, LuminanceKernel kernel) {
+        this.filename = filename;
+        this.width = width;
+        this.height = height;
+        this.stripRows = stripRows;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Gets the width of the image.
+     *
+     * @return The width of the image.
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return The height of the image.
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sums the grey shades of a rectangular region, first decoding a strip that starts at the region if the
+     * region is not inside the current strip. A region taller than a strip is summed in parts of a strip
+     * each, so no more than a strip is ever held in memory.
+     *
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @return The sum of the grey shades of the region, each between 0 and 255.
+     * @throws UncheckedIOException If a strip cannot be decoded.
+     */
+    @Override
+    public double sumOfGreyShades(int top, int left, int height, int width) {
+        double sumOfGreyShades = 0;
+        for (int partTop = top; partTop < top + height; partTop += stripRows) {
+            int partRows = Math.min(stripRows, top + height - partTop);
+            if (strip == null || partTop < stripTop || partTop + partRows > stripTop + strip.getHeight()) {
+                try {
+                    strip = Image.readRegion(filename, partTop, 0, Math.min(stripRows, this.height - partTop),
+                            this.width);
+                } catch (IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                }
+                stripTop = partTop;
+            }
+            sumOfGreyShades += kernel.sumOfGreyShades(strip.getPixels(), this.width, partTop - stripTop, left,
+                    partRows, width);
+        }
+        return sumOfGreyShades;
+    }
+}
@@ -0,0 +1,289 @@
+package image_char_matching;
+
+import image.ImagePadding;
+
+import java.util.Arrays;
+
+/**
+ * The SubImageGrid class describes how an image is divided into the sub-images of the ASCII art grid: the
+ * number of rows and columns, and the pixel bounds of every row and column of sub-images.
+ * The square grid is the classic one, resolution by resolution sub-images over the image padded to power of
+ * 2 dimensions with white pixels. The aspect grid has no padding: its row count is derived from the column
+ * count and the aspect ratio of the image, so that every cell covers about cellAspect times as many pixel rows
+ * as pixel columns, and wide or tall images are divided into as many cells as their content needs.
+ * Bounds are in padded coordinates; the padding of the image is the offset of the image inside them.
+ */
+public final class SubImageGrid {
+    /**
+     * Cell aspect (height over width) of square cells.
+     */
+    public static final double SQUARE_CELL_ASPECT = 1;
+
+    /**
+     * The first pixel row of every row of sub-images, followed by the end of the last one.
+     */
+    private final int[] rowBounds;
+    /**
+     * The first pixel column of every column of sub-images, followed by the end of the last one.
+     */
+    private final int[] colBounds;
+    /**
+     * Number of white padding rows above the image.
+     */
+    private final int topPadding;
+    /**
+     * Number of white padding columns left of the image.
+     */
+    private final int leftPadding;
+
+    /**
+     * Constructs a SubImageGrid.
+     *
+     * @param rowBounds   The first pixel row of every row of sub-images, followed by the end of the last one.
+     * @param colBounds   The first pixel column of every column of sub-images, followed by the end of the
+     *                    last one.
+     * @param topPadding  Number of white padding rows above the image.
+     * @param leftPadding Number of white padding columns left of the image.
+     */
+    private SubImageGrid(int[] rowBounds, int[] colBounds, int topPadding, int leftPadding) {
+        this.rowBounds = rowBounds;
+        this.colBounds = colBounds;
+        this.topPadding = topPadding;
+        this.leftPadding = leftPadding;
+    }
+
+    /**
+     * Creates the square grid: resolution by resolution equal sub-images over the image padded to power of
+     * 2 dimensions.
+     *
+     * @param width      The width of the image.
+     * @param height     The height of the image.
+     * @param resolution The number of divisions for both width and height.
+     * @return The square grid.
+     */
+    public static SubImageGrid square(int width, int height, int resolution) {
+        int paddedWidth = ImagePadding.paddedImageDim(width);
+        int paddedHeight = ImagePadding.paddedImageDim(height);
+        return new SubImageGrid(evenBounds(paddedHeight / resolution * resolution, resolution),
+                evenBounds(paddedWidth / resolution * resolution, resolution),
+                (paddedHeight - height) / 2, (paddedWidth - width) / 2);
+    }
+
+    /**
+     * Creates an aspect grid over the image itself, without padding. The image is divided into the given
+     * number of columns, and into as many rows as keep the height of every cell about cellAspect times its
+     * width. Pixels are spread over the cells as evenly as possible, so cell sizes differ by at most one.
+     *
+     * @param width      The width of the image.
+     * @param height     The height of the image.
+     * @param columns    The number of columns, at most the width of the image.
+     * @param cellAspect The height of a cell over its width, in pixels.
+     * @return The aspect grid.
+     */
+    public static SubImageGrid aspect(int width, int height, int columns, double cellAspect) {
+        columns = Math.max(1, Math.min(columns, width));
+        int rows = (int) Math.max(1, Math.min(height, Math.round(height * (double) columns / (width * cellAspect))));
+        return new SubImageGrid(evenBounds(height, rows), evenBounds(width, columns), 0, 0);
+    }
+
+    /**
+     * Creates the square grid or an aspect grid, depending on the cell aspect.
+     *
+     * @param width      The width of the image.
+     * @param height     The height of the image.
+     * @param resolution The number of divisions of the square grid, or of columns of the aspect grid.
+     * @param cellAspect The cell aspect of the aspect grid, or 0 for the square grid.
+     * @return The grid.
+     */
+    public static SubImageGrid of(int width, int height, int resolution, double cellAspect) {
+        if (cellAspect > 0) {
+            return aspect(width, height, resolution, cellAspect);
+        }
+        return square(width, height, resolution);
+    }
+
+    /**
+     * Gets the highest resolution of a grid over an image: every sub-image of the square grid must hold at
+     * least one padded pixel in both directions, and every column of the aspect grid one pixel column.
+     *
+     * @param width      The width of the image.
+     * @param height     The height of the image.
+     * @param cellAspect The cell aspect of the aspect grid, or 0 for the square grid.
+     * @return The highest resolution.
+     */
+    public static int maxResolution(int width, int height, double cellAspect) {
+        if (cellAspect > 0) {
+            return width;
+        }
+        return Math.min(ImagePadding.paddedImageDim(width), ImagePadding.paddedImageDim(height));
+    }
+
+    /**
+     * Gets the lowest resolution of a grid over an image: the square grid keeps sub-images at most as wide
+     * as the padded image is high, while the aspect grid always has at least one row.
+     *
+     * @param width      The width of the image.
+     * @param height     The height of the image.
+     * @param cellAspect The cell aspect of the aspect grid, or 0 for the square grid.
+     * @return The lowest resolution, at most the highest one.
+     */
+    public static int minResolution(int width, int height, double cellAspect) {
+        if (cellAspect > 0) {
+            return 1;
+        }
+        int minResolution = Math.max(1, ImagePadding.paddedImageDim(width) / ImagePadding.paddedImageDim(height));
+        return Math.min(minResolution, maxResolution(width, height, cellAspect));
+    }
+
+    /**
+     * Creates the grid of a band of rows of this grid, over an image of only the pixel rows of the band.
+     * The rows keep their pixel bounds, and the band image is placed where its rows lie in the full image,
+     * so that every sub-image of the band converts exactly as in the full grid.
+     *
+     * @param firstRow  The first row of sub-images of the band.
+     * @param rowCount  The number of rows of sub-images in the band.
+     * @param sourceTop The row of the full image that is the first row of the band image.
+     * @return The grid of the band.
+     */
+    public SubImageGrid band(int firstRow, int rowCount, int sourceTop) {
+        return new SubImageGrid(Arrays.copyOfRange(rowBounds, firstRow, firstRow + rowCount + 1), colBounds,
+                topPadding + sourceTop, leftPadding);
+    }
+
+    /**
+     * Finds the rows of this grid that make up every row of a coarser grid of the same image, when every
+     * row bound of the coarser grid is also a row bound of this grid.
+     *
+     * @param coarser The coarser grid.
+     * @return The first row of this grid in every row of the coarser grid, followed by the end of the last
+     * one, or null if the rows of the coarser grid are not unions of rows of this grid.
+     */
+    public int[] rowsCovering(SubImageGrid coarser) {
+        return topPadding == coarser.topPadding ? covering(rowBounds, coarser.rowBounds) : null;
+    }
+
+    /**
+     * Finds the columns of this grid that make up every column of a coarser grid of the same image, when
+     * every column bound of the coarser grid is also a column bound of this grid.
+     *
+     * @param coarser The coarser grid.
+     * @return The first column of this grid in every column of the coarser grid, followed by the end of the
+     * last one, or null if the columns of the coarser grid are not unions of columns of this grid.
+     */
+    public int[] columnsCovering(SubImageGrid coarser) {
+        return leftPadding == coarser.leftPadding ? covering(colBounds, coarser.colBounds) : null;
+    }
+
+    /**
+     * Finds the position of every coarse bound among the fine bounds.
+     *
+     * @param fineBounds   Increasing fine bounds.
+     * @param coarseBounds Increasing coarse bounds.
+     * @return The index of every coarse bound in the fine bounds, or null if one of them is missing.
+     */
+    private static int[] covering(int[] fineBounds, int[] coarseBounds) {
+        int[] indices = new int[coarseBounds.length];
+        int fine = 0;
+        for (int coarse = 0; coarse < coarseBounds.length; coarse++) {
+            while (fine < fineBounds.length && fineBounds[fine] < coarseBounds[coarse]) {
+                fine++;
+            }
+            if (fine == fineBounds.length || fineBounds[fine] != coarseBounds[coarse]) {
+                return null;
+            }
+            indices[coarse] = fine;
+        }
+        return indices;
+    }
+
+    /**
+     * Divides a length into evenly spread parts.
+     *
+     * @param length The length to divide.
+     * @param parts  The number of parts.
+     * @return The start of every part, followed by the length.
+     */
+    private static int[] evenBounds(int length, int parts) {
+        int[] bounds = new int[parts + 1];
+        for (int i = 0; i <= parts; i++) {
+            bounds[i] = (int) ((long) i * length / parts);
+        }
+        return bounds;
+    }
+
+    /**
+     * Gets the number of rows of sub-images.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rowBounds.length - 1;
+    }
+
+    /**
+     * Gets the number of columns of sub-images.
+     *
+     * @return The number of columns.
+     */
+    public int getColumns() {
+        return colBounds.length - 1;
+    }
+
+    /**
+     * Gets the first pixel row of a row of sub-images, in padded coordinates.
+     *
+     * @param row The row of sub-images.
+     * @return The first pixel row.
+     */
+    public int rowStart(int row) {
+        return rowBounds[row];
+    }
+
+    /**
+     * Gets the end (exclusive) of a row of sub-images, in padded coordinates.
+     *
+     * @param row The row of sub-images.
+     * @return The pixel row after the last one of the row of sub-images.
+     */
+    public int rowEnd(int row) {
+        return rowBounds[row + 1];
+    }
+
+    /**
+     * Gets the first pixel column of a column of sub-images, in padded coordinates.
+     *
+     * @param column The column of sub-images.
+     * @return The first pixel column.
+     */
+    public int colStart(int column) {
+        return colBounds[column];
+    }
+
+    /**
+     * Gets the end (exclusive) of a column of sub-images, in padded coordinates.
+     *
+     * @param column The column of sub-images.
+     * @return The pixel column after the last one of the column of sub-images.
+     */
+    public int colEnd(int column) {
+        return colBounds[column + 1];
+    }
+
+    /**
+     * Gets the number of white padding rows above the image.
+     *
+     * @return The top padding.
+     */
+    public int getTopPadding() {
+        return topPadding;
+    }
+
+    /**
+     * Gets the number of white padding columns left of the image.
+     *
+     * @return The left padding.
+     */
+    public int getLeftPadding() {
+        return leftPadding;
+    }
+}
@@ -1,20 +1,36 @@
 package image_char_matching;
 
+import image.GreyShadeSource;
 import image.Image;
-import image.ImagePadding;
 
-import java.awt.*;
 /**
  * The SubImagesControl class is responsible for processing an image into a matrix of brightness values,
  * divided into sub-images. It provides methods to convert an Image object into a 2D array of brightness
  * values
  * based on a specified resolution.
+ * Images are padded to power of 2 dimensions with white pixels, as ImagePadding does, but the padding is
+ * never materialized: pixels outside the source image simply count as white.
+ * Every conversion also takes a SubImageGrid instead of a resolution, for grids of independent row and
+ * column counts.
  */
 public class SubImagesControl {
     /**
      * The maximum value for each color component in an RGB pixel.
      */
     private static final double MAX_RGB = 255;
+    /**
+     * Brightness threshold above which a sampled pixel of a sub-image counts as white in its shape mask.
+     */
+    private static final double SHAPE_THRESHOLD = 0.5;
+    /**
+     * Largest possible standard deviation of brightness values between 0 and 1, assumed when a sub-image
+     * holds a single sample.
+     */
+    private static final double MAX_DEVIATION = 0.5;
+    /**
+     * Multiplier of the hash that spreads samples inside their strata (the 64-bit golden ratio).
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
 
     /**
      * Private default constructor to prevent instantiation of the class.
@@ -28,75 +44,584 @@ public class SubImagesControl {
      * @param resolution The resolution value, indicating the number of divisions for both width and height.
      * @return A 2D array of brightness values for the sub-images.
      */
-    public static double[][] imageToBrightnessArray(image.Image image, int resolution){
-        image = ImagePadding.paddedImage(image);
-        image.Image[][] dividedImage = divideImage(image, resolution);
-        return brightnessOfSubImages(dividedImage);
+    public static double[][] imageToBrightnessArray(Image image, int resolution){
+        return imageToBrightnessArray(image, resolution, LuminanceKernel.DOUBLE);
     }
 
     /**
-     * Divides an image into sub-images based on the specified resolution.
+     * Converts an Image object into a matrix of brightness values, divided into sub-images based on
+     * the specified resolution, using the given luminance kernel.
      *
      * @param image      The input Image object.
      * @param resolution The resolution value, indicating the number of divisions for both width and height.
-     * @return A 2D array of Image objects representing the sub-images.
-     */
-    private static image.Image[][] divideImage(image.Image image, int resolution) {
-        int subImageWidth = image.getWidth() / resolution;
-        int subImageHeight = image.getHeight() / resolution;
-        image.Image[][] dividedImage = new image.Image[resolution][resolution];
-        for (int i = 0; i < resolution; i++) {
-            for (int j = 0; j < resolution; j++) {
-                Color[][] subImagePixels = new Color[subImageHeight][subImageWidth];
-                for (int rowSubImage = 0; rowSubImage < subImageHeight; rowSubImage++) {
-                    for (int colSubImage = 0; colSubImage < subImageWidth; colSubImage++) {
-                        subImagePixels[rowSubImage][colSubImage] = image.getPixel(i * subImageHeight +
-                                rowSubImage, j * subImageWidth + colSubImage);
+     * @param kernel     The kernel used to compute and sum pixel grey shades.
+     * @return A 2D array of brightness values for the sub-images.
+     */
+    public static double[][] imageToBrightnessArray(Image image, int resolution, LuminanceKernel kernel){
+        return imageToBrightnessArray(new KernelGreyShadeSource(image, kernel), resolution);
+    }
+
+    /**
+     * Converts the grey shades of an image into a matrix of brightness values, divided into sub-images
+     * based on the specified resolution.
+     *
+     * @param source     The grey shades of the input image.
+     * @param resolution The resolution value, indicating the number of divisions for both width and height.
+     * @return A 2D array of brightness values for the sub-images.
+     */
+    public static double[][] imageToBrightnessArray(GreyShadeSource source, int resolution){
+        return imageToBrightnessArray(source, SubImageGrid.square(source.getWidth(), source.getHeight(),
+                resolution));
+    }
+
+    /**
+     * Converts the grey shades of an image into a matrix of brightness values, one per sub-image of a grid.
+     *
+     * @param source The grey shades of the input image.
+     * @param grid   The division of the image into sub-images.
+     * @return A 2D array of brightness values for the sub-images, one row per row of the grid.
+     */
+    public static double[][] imageToBrightnessArray(GreyShadeSource source, SubImageGrid grid){
+        return imageToBrightnessArray(source, grid, null);
+    }
+
+    /**
+     * Converts the grey shades of an image into a matrix of brightness values, one per sub-image of a grid,
+     * under the control of the caller, which is checked and told the progress after every row.
+     *
+     * @param source  The grey shades of the input image.
+     * @param grid    The division of the image into sub-images.
+     * @param control The control of the conversion, or null.
+     * @return A 2D array of brightness values for the sub-images, one row per row of the grid.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    public static double[][] imageToBrightnessArray(GreyShadeSource source, SubImageGrid grid,
+                                                    ConversionControl control){
+        double[][] brightnessOfSubImages = new double[grid.getRows()][grid.getColumns()];
+        startStage(control, grid.getRows());
+        for (int i = 0; i < grid.getRows(); i++) {
+            for (int j = 0; j < grid.getColumns(); j++) {
+                brightnessOfSubImages[i][j] = averageOfImageBrightness(source, grid, grid.rowStart(i),
+                        grid.colStart(j), grid.rowEnd(i) - grid.rowStart(i), grid.colEnd(j) - grid.colStart(j));
+            }
+            rowsDone(control, i + 1);
+        }
+        return brightnessOfSubImages;
+    }
+
+    /**
+     * Sums the grey shades of every sub-image of a grid, with padding pixels counted as white. Unlike
+     * brightness values, sums of adjacent sub-images add up to the sum of their union, so the sums of a
+     * coarser grid can be derived from these with aggregateGreyShadeSums.
+     *
+     * @param source The grey shades of the input image.
+     * @param grid   The division of the image into sub-images.
+     * @return A 2D array of grey shade sums for the sub-images, one row per row of the grid.
+     */
+    public static double[][] imageToGreyShadeSums(GreyShadeSource source, SubImageGrid grid) {
+        return imageToGreyShadeSums(source, grid, null);
+    }
+
+    /**
+     * Sums the grey shades of every sub-image of a grid, as imageToGreyShadeSums does, under the control of
+     * the caller, which is checked and told the progress after every row.
+     *
+     * @param source  The grey shades of the input image.
+     * @param grid    The division of the image into sub-images.
+     * @param control The control of the conversion, or null.
+     * @return A 2D array of grey shade sums for the sub-images, one row per row of the grid.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    public static double[][] imageToGreyShadeSums(GreyShadeSource source, SubImageGrid grid,
+                                                  ConversionControl control) {
+        double[][] sumsOfSubImages = new double[grid.getRows()][grid.getColumns()];
+        startStage(control, grid.getRows());
+        for (int i = 0; i < grid.getRows(); i++) {
+            for (int j = 0; j < grid.getColumns(); j++) {
+                sumsOfSubImages[i][j] = sumOfImageGreyShades(source, grid, grid.rowStart(i), grid.colStart(j),
+                        grid.rowEnd(i) - grid.rowStart(i), grid.colEnd(j) - grid.colStart(j));
+            }
+            rowsDone(control, i + 1);
+        }
+        return sumsOfSubImages;
+    }
+
+    /**
+     * Derives the grey shade sums of every sub-image of a coarse grid from those of a finer grid of the same
+     * image, without reading any pixel: every coarse sub-image is a union of fine sub-images, so its sum is
+     * the sum of theirs. For kernels whose grey shades are multiples of 2^-16, the result is exactly the sum
+     * read from the pixels.
+     *
+     * @param fineSums The grey shade sums of every sub-image of the fine grid.
+     * @param fineGrid The fine grid.
+     * @param grid     The coarse grid.
+     * @return A 2D array of grey shade sums for the sub-images of the coarse grid, or null if its sub-images
+     * are not unions of sub-images of the fine grid.
+     */
+    public static double[][] aggregateGreyShadeSums(double[][] fineSums, SubImageGrid fineGrid,
+                                                    SubImageGrid grid) {
+        int[] rows = fineGrid.rowsCovering(grid);
+        int[] columns = fineGrid.columnsCovering(grid);
+        if (rows == null || columns == null) {
+            return null;
+        }
+        double[][] sumsOfSubImages = new double[grid.getRows()][grid.getColumns()];
+        for (int i = 0; i < grid.getRows(); i++) {
+            for (int fineRow = rows[i]; fineRow < rows[i + 1]; fineRow++) {
+                for (int j = 0; j < grid.getColumns(); j++) {
+                    for (int fineColumn = columns[j]; fineColumn < columns[j + 1]; fineColumn++) {
+                        sumsOfSubImages[i][j] += fineSums[fineRow][fineColumn];
                     }
                 }
-                dividedImage[i][j] = new image.Image(subImagePixels, subImageWidth, subImageHeight);
             }
         }
-        return dividedImage;
+        return sumsOfSubImages;
     }
 
-
     /**
-     * Calculates the average brightness of each sub-image in the matrix.
+     * Converts the grey shade sums of every sub-image of a grid into brightness values.
      *
-     * @param dividedImage A 2D array of Image objects representing sub-images.
-     * @return A 2D array of average brightness values for each sub-image.
+     * @param sums The grey shade sums of every sub-image, padding included.
+     * @param grid The grid of the sums.
+     * @return A 2D array of brightness values for the sub-images, as imageToBrightnessArray computes them.
      */
-    private static double[][] brightnessOfSubImages(image.Image[][] dividedImage) {
-        double[][] brightnessOfSubImages = new double[dividedImage.length][dividedImage[0].length];
-        for (int i = 0; i < dividedImage.length; i++) {
-            for (int j = 0; j < dividedImage[0].length; j++) {
-                brightnessOfSubImages[i][j] =
-                        averageOfImageBrightness(dividedImage[i][j]);
+    public static double[][] greyShadeSumsToBrightnessArray(double[][] sums, SubImageGrid grid) {
+        double[][] brightnessOfSubImages = new double[grid.getRows()][grid.getColumns()];
+        for (int i = 0; i < grid.getRows(); i++) {
+            for (int j = 0; j < grid.getColumns(); j++) {
+                long pixels = (long) (grid.rowEnd(i) - grid.rowStart(i)) * (grid.colEnd(j) - grid.colStart(j));
+                brightnessOfSubImages[i][j] = sums[i][j] / (pixels * MAX_RGB);
             }
         }
         return brightnessOfSubImages;
     }
 
     /**
-     * Calculates the average brightness of an individual image.
+     * Estimates the brightness of every sub-image from a deterministic stratified sample of its pixels,
+     * sized as configured by the sampling, and reports the estimated error. Every sub-image is divided into
+     * a grid of strata and one pixel is read from each, at a position that is fixed for a given image and
+     * resolution. Padding is accounted for exactly, and sub-images with no more pixels than samples are
+     * read in full.
+     *
+     * @param source     The grey shades of the input image.
+     * @param resolution The resolution value, indicating the number of divisions for both width and height.
+     * @param sampling   How many pixels to sample in every sub-image.
+     * @return The estimated brightness values and their estimated error.
+     */
+    public static SampledBrightness imageToSampledBrightnessArray(GreyShadeSource source, int resolution,
+                                                                  BrightnessSampling sampling) {
+        return imageToSampledBrightnessArray(source, SubImageGrid.square(source.getWidth(), source.getHeight(),
+                resolution), sampling);
+    }
+
+    /**
+     * Estimates the brightness of every sub-image of a grid from a stratified sample of its pixels, as
+     * imageToSampledBrightnessArray does for the square grid of a resolution.
+     *
+     * @param source   The grey shades of the input image.
+     * @param grid     The division of the image into sub-images.
+     * @param sampling How many pixels to sample in every sub-image.
+     * @return The estimated brightness values and their estimated error.
+     */
+    public static SampledBrightness imageToSampledBrightnessArray(GreyShadeSource source, SubImageGrid grid,
+                                                                  BrightnessSampling sampling) {
+        return imageToSampledBrightnessArray(source, grid, sampling, null);
+    }
+
+    /**
+     * Estimates the brightness of every sub-image of a grid from a stratified sample of its pixels, under
+     * the control of the caller, which is checked and told the progress after every row.
+     *
+     * @param source   The grey shades of the input image.
+     * @param grid     The division of the image into sub-images.
+     * @param sampling How many pixels to sample in every sub-image.
+     * @param control  The control of the conversion, or null.
+     * @return The estimated brightness values and their estimated error.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    public static SampledBrightness imageToSampledBrightnessArray(GreyShadeSource source, SubImageGrid grid,
+                                                                  BrightnessSampling sampling,
+                                                                  ConversionControl control) {
+        int topPadding = grid.getTopPadding();
+        int leftPadding = grid.getLeftPadding();
+        double[][] brightnessOfSubImages = new double[grid.getRows()][grid.getColumns()];
+        // Mean, standard deviation and number of samples of the current sub-image
+        double[] estimate = new double[3];
+        double maxError = 0;
+        double sumOfErrors = 0;
+        long samples = 0;
+        startStage(control, grid.getRows());
+        for (int i = 0; i < grid.getRows(); i++) {
+            for (int j = 0; j < grid.getColumns(); j++) {
+                int rowStart = Math.max(grid.rowStart(i) - topPadding, 0);
+                int rowEnd = Math.min(grid.rowEnd(i) - topPadding, source.getHeight());
+                int colStart = Math.max(grid.colStart(j) - leftPadding, 0);
+                int colEnd = Math.min(grid.colEnd(j) - leftPadding, source.getWidth());
+                if (rowEnd <= rowStart || colEnd <= colStart) {
+                    // Only padding
+                    brightnessOfSubImages[i][j] = 1;
+                    continue;
+                }
+                long seed = (long) i * grid.getColumns() + j;
+                sampleRegion(source, rowStart, colStart, rowEnd - rowStart, colEnd - colStart, sampling,
+                        seed, estimate);
+                double inSourceFraction = (double) (rowEnd - rowStart) * (colEnd - colStart) /
+                        ((double) (grid.rowEnd(i) - grid.rowStart(i)) * (grid.colEnd(j) - grid.colStart(j)));
+                brightnessOfSubImages[i][j] = inSourceFraction * estimate[0] + (1 - inSourceFraction);
+                double error = inSourceFraction * BrightnessSampling.CONFIDENCE_FACTOR * estimate[1] /
+                        Math.sqrt(estimate[2]);
+                maxError = Math.max(maxError, error);
+                sumOfErrors += error;
+                samples += (long) estimate[2];
+            }
+            rowsDone(control, i + 1);
+        }
+        return new SampledBrightness(brightnessOfSubImages, maxError,
+                sumOfErrors / ((double) grid.getRows() * grid.getColumns()), samples);
+    }
+
+    /**
+     * Estimates the mean brightness of a region of the source image as configured by the sampling. If the
+     * sample is sized by an error bound, it is sized from the spread of a pilot sample first.
+     *
+     * @param source   The grey shades of the image.
+     * @param top      The first row of the region.
+     * @param left     The first column of the region.
+     * @param height   The number of rows in the region.
+     * @param width    The number of columns in the region.
+     * @param sampling How many pixels to sample.
+     * @param seed     Seed of the sample positions, distinct for every sub-image.
+     * @param estimate Receives the mean, the standard deviation and the number of samples.
+     */
+    private static void sampleRegion(GreyShadeSource source, int top, int left, int height, int width,
+                                     BrightnessSampling sampling, long seed, double[] estimate) {
+        if (sampling.isBounded()) {
+            stratifiedSample(source, top, left, height, width, BrightnessSampling.PILOT_SAMPLES, seed,
+                    estimate);
+            // The spread seen by a small sample may be too low, so the sample is sized again from the
+            // spread of the larger one, until it stops growing
+            for (int round = 0; round < BrightnessSampling.SIZING_ROUNDS; round++) {
+                int samples = sampling.sampleSize(estimate[1]);
+                if (samples <= estimate[2]) {
+                    return;
+                }
+                stratifiedSample(source, top, left, height, width, samples, seed, estimate);
+            }
+        } else {
+            stratifiedSample(source, top, left, height, width, sampling.sampleSize(0), seed, estimate);
+        }
+    }
+
+    /**
+     * Reads about the given number of pixels of a region, one from each cell of a grid of strata shaped
+     * like the region, or every pixel if the region is not larger than the sample.
+     *
+     * @param source   The grey shades of the image.
+     * @param top      The first row of the region.
+     * @param left     The first column of the region.
+     * @param height   The number of rows in the region.
+     * @param width    The number of columns in the region.
+     * @param samples  The number of pixels to read.
+     * @param seed     Seed of the sample positions, distinct for every sub-image.
+     * @param estimate Receives the mean, the standard deviation and the number of samples.
+     */
+    private static void stratifiedSample(GreyShadeSource source, int top, int left, int height, int width,
+                                         int samples, long seed, double[] estimate) {
+        long pixels = (long) height * width;
+        if (samples >= pixels) {
+            estimate[0] = source.sumOfGreyShades(top, left, height, width) / (pixels * MAX_RGB);
+            estimate[1] = 0;
+            estimate[2] = pixels;
+            return;
+        }
+        // Strata shaped like the region, so that samples are spread evenly in both directions
+        double aspectColumns = Math.sqrt((double) samples * width / height);
+        int columns = (int) Math.max(1, Math.min(width, Math.round(aspectColumns)));
+        int rows = (int) Math.max(1, Math.min(height, Math.ceil((double) samples / columns)));
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int y = 0; y < rows; y++) {
+            int rowStart = (int) ((long) y * height / rows);
+            int rowEnd = (int) ((long) (y + 1) * height / rows);
+            for (int x = 0; x < columns; x++) {
+                int colStart = (int) ((long) x * width / columns);
+                int colEnd = (int) ((long) (x + 1) * width / columns);
+                long hash = mix(seed * HASH_MULTIPLIER + (long) y * columns + x);
+                int row = rowStart + (int) Long.remainderUnsigned(hash, rowEnd - rowStart);
+                int col = colStart + (int) Long.remainderUnsigned(hash >>> 32, colEnd - colStart);
+                double brightness = source.sumOfGreyShades(top + row, left + col, 1, 1) / MAX_RGB;
+                sum += brightness;
+                sumOfSquares += brightness * brightness;
+            }
+        }
+        int taken = rows * columns;
+        estimate[0] = sum / taken;
+        estimate[1] = taken == 1 ? MAX_DEVIATION :
+                Math.sqrt(Math.max(0, (sumOfSquares - sum * sum / taken) / (taken - 1)));
+        estimate[2] = taken;
+    }
+
+    /**
+     * Scrambles the bits of a value (the SplitMix64 finalizer), to place samples inside their strata.
+     *
+     * @param value The value.
+     * @return The scrambled value.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Calculates the average color of every sub-image of an Image object, with white padding as for the
+     * brightness values.
+     *
+     * @param image      The input Image object.
+     * @param resolution The resolution value, indicating the number of divisions for both width and height.
+     * @return A 2D array of the average colors of the sub-images, as packed RGB.
+     */
+    public static int[][] imageToColorArray(Image image, int resolution) {
+        return imageToColorArray(image, SubImageGrid.square(image.getWidth(), image.getHeight(), resolution));
+    }
+
+    /**
+     * Calculates the average color of every sub-image of a grid over an Image object.
      *
      * @param image The input Image object.
-     * @return The average brightness value of the image.
+     * @param grid  The division of the image into sub-images.
+     * @return A 2D array of the average colors of the sub-images, as packed RGB.
      */
-    private static double averageOfImageBrightness(Image image){
-        double sumOfGreyShades = 0;
-        for (int pixelRow = 0; pixelRow < image.getHeight();
-             pixelRow++) {
-            for (int pixelCol = 0; pixelCol < image.getWidth();
-                 pixelCol++) {
-                Color colorOfPixel = image.getPixel(pixelRow, pixelCol);
-                sumOfGreyShades +=
-                        colorOfPixel.getRed() * 0.2126 + colorOfPixel.getGreen() * 0.7152 +
-                                colorOfPixel.getBlue() * 0.0722;
+    public static int[][] imageToColorArray(Image image, SubImageGrid grid) {
+        return imageToColorArray(image, grid, null);
+    }
+
+    /**
+     * Calculates the average color of every sub-image of a grid over an Image object, under the control of
+     * the caller, which is checked and told the progress after every row.
+     *
+     * @param image   The input image.
+     * @param grid    The division of the image into sub-images.
+     * @param control The control of the conversion, or null.
+     * @return A 2D array of the average colors of the sub-images, as packed RGB.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    public static int[][] imageToColorArray(Image image, SubImageGrid grid, ConversionControl control) {
+        int topPadding = grid.getTopPadding();
+        int leftPadding = grid.getLeftPadding();
+        int[] pixels = image.getPixels();
+        int[][] colors = new int[grid.getRows()][grid.getColumns()];
+        startStage(control, grid.getRows());
+        for (int i = 0; i < grid.getRows(); i++) {
+            for (int j = 0; j < grid.getColumns(); j++) {
+                int rowStart = Math.max(grid.rowStart(i) - topPadding, 0);
+                int rowEnd = Math.min(grid.rowEnd(i) - topPadding, image.getHeight());
+                int colStart = Math.max(grid.colStart(j) - leftPadding, 0);
+                int colEnd = Math.min(grid.colEnd(j) - leftPadding, image.getWidth());
+                long pixelsInImage = 0;
+                long sumOfRed = 0;
+                long sumOfGreen = 0;
+                long sumOfBlue = 0;
+                for (int row = rowStart; row < rowEnd; row++) {
+                    for (int col = colStart; col < colEnd; col++) {
+                        int rgb = pixels[row * image.getWidth() + col];
+                        sumOfRed += (rgb >> 16) & 0xFF;
+                        sumOfGreen += (rgb >> 8) & 0xFF;
+                        sumOfBlue += rgb & 0xFF;
+                        pixelsInImage++;
+                    }
+                }
+                // Padding pixels are white
+                long paddingPixels = (long) (grid.rowEnd(i) - grid.rowStart(i)) *
+                        (grid.colEnd(j) - grid.colStart(j)) - pixelsInImage;
+                long pixelCount = pixelsInImage + paddingPixels;
+                colors[i][j] = averageChannel(sumOfRed, paddingPixels, pixelCount) << 16 |
+                        averageChannel(sumOfGreen, paddingPixels, pixelCount) << 8 |
+                        averageChannel(sumOfBlue, paddingPixels, pixelCount);
+            }
+            rowsDone(control, i + 1);
+        }
+        return colors;
+    }
+
+    /**
+     * Calculates the rounded average of a color channel over a sub-image.
+     *
+     * @param sumOfChannel  The sum of the channel over the pixels inside the image.
+     * @param paddingPixels The number of white padding pixels in the sub-image.
+     * @param pixelCount    The total number of pixels in the sub-image.
+     * @return The average channel value, between 0 and 255.
+     */
+    private static int averageChannel(long sumOfChannel, long paddingPixels, long pixelCount) {
+        return (int) ((sumOfChannel + paddingPixels * (long) MAX_RGB + pixelCount / 2) / pixelCount);
+    }
+
+    /**
+     * Converts an Image object into a matrix of bit-packed shape masks, using the given luminance kernel.
+     *
+     * @param image      The input Image object.
+     * @param resolution The resolution value, indicating the number of divisions for both width and height.
+     * @param kernel     The kernel used to compute and sum pixel grey shades.
+     * @return A 2D array of packed masks for the sub-images.
+     */
+    public static long[][][] imageToShapeArray(Image image, int resolution, LuminanceKernel kernel) {
+        return imageToShapeArray(new KernelGreyShadeSource(image, kernel), resolution);
+    }
+
+    /**
+     * Converts the grey shades of an image into a matrix of bit-packed shape masks, one per sub-image. Each
+     * sub-image is resampled to the glyph resolution of CharConverter by averaging the pixels that fall into
+     * each glyph pixel, and thresholded into the same bit layout as CharConverter.packBits.
+     *
+     * @param source     The grey shades of the input image.
+     * @param resolution The resolution value, indicating the number of divisions for both width and height.
+     * @return A 2D array of packed masks for the sub-images.
+     */
+    public static long[][][] imageToShapeArray(GreyShadeSource source, int resolution) {
+        return imageToShapeArray(source, SubImageGrid.square(source.getWidth(), source.getHeight(), resolution));
+    }
+
+    /**
+     * Converts the grey shades of an image into a matrix of bit-packed shape masks, one per sub-image of a
+     * grid.
+     *
+     * @param source The grey shades of the input image.
+     * @param grid   The division of the image into sub-images.
+     * @return A 2D array of packed masks for the sub-images.
+     */
+    public static long[][][] imageToShapeArray(GreyShadeSource source, SubImageGrid grid) {
+        return imageToShapeArray(source, grid, null);
+    }
+
+    /**
+     * Converts the grey shades of an image into a matrix of bit-packed shape masks, one per sub-image of a
+     * grid, under the control of the caller, which is checked and told the progress after every row.
+     *
+     * @param source  The grey shades of the input image.
+     * @param grid    The division of the image into sub-images.
+     * @param control The control of the conversion, or null.
+     * @return A 2D array of packed masks for the sub-images.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    public static long[][][] imageToShapeArray(GreyShadeSource source, SubImageGrid grid,
+                                               ConversionControl control) {
+        long[][][] shapes = new long[grid.getRows()][grid.getColumns()][];
+        startStage(control, grid.getRows());
+        for (int i = 0; i < grid.getRows(); i++) {
+            for (int j = 0; j < grid.getColumns(); j++) {
+                shapes[i][j] = shapeOfSubImage(source, grid, grid.rowStart(i), grid.colStart(j),
+                        grid.rowEnd(i) - grid.rowStart(i), grid.colEnd(j) - grid.colStart(j));
             }
+            rowsDone(control, i + 1);
+        }
+        return shapes;
+    }
+
+    /**
+     * Starts a stage of a conversion on its control, if it has one.
+     *
+     * @param control   The control of the conversion, or null.
+     * @param totalRows The number of rows of sub-images of the stage.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    private static void startStage(ConversionControl control, int totalRows) {
+        if (control != null) {
+            control.startStage(totalRows);
+        }
+    }
+
+    /**
+     * Records completed rows of a stage of a conversion on its control, if it has one.
+     *
+     * @param control  The control of the conversion, or null.
+     * @param rowsDone The number of rows completed in the stage so far.
+     * @throws ConversionCancelledException If the conversion is cancelled or runs past its deadline.
+     */
+    private static void rowsDone(ConversionControl control, int rowsDone) {
+        if (control != null) {
+            control.rowsDone(rowsDone);
+        }
+    }
+
+    /**
+     * Calculates the thresholded shape mask of a single sub-image.
+     *
+     * @param source         The grey shades of the image.
+     * @param grid           The grid of the sub-image, which gives the padding of the image.
+     * @param top            The first pixel row of the sub-image, in padded coordinates.
+     * @param left           The first pixel column of the sub-image, in padded coordinates.
+     * @param subImageHeight The height of the sub-image in pixels.
+     * @param subImageWidth  The width of the sub-image in pixels.
+     * @return The packed mask of the sub-image.
+     */
+    private static long[] shapeOfSubImage(GreyShadeSource source, SubImageGrid grid, int top, int left,
+                                          int subImageHeight, int subImageWidth) {
+        int glyphResolution = CharConverter.DEFAULT_PIXEL_RESOLUTION;
+        long[] mask = new long[CharConverter.maskLength(glyphResolution)];
+        for (int y = 0; y < glyphResolution; y++) {
+            int rowStart = top + y * subImageHeight / glyphResolution;
+            int rowEnd = Math.max(rowStart + 1, top + (y + 1) * subImageHeight / glyphResolution);
+            for (int x = 0; x < glyphResolution; x++) {
+                int colStart = left + x * subImageWidth / glyphResolution;
+                int colEnd = Math.max(colStart + 1, left + (x + 1) * subImageWidth / glyphResolution);
+                double brightness = averageOfImageBrightness(source, grid, rowStart, colStart,
+                        rowEnd - rowStart, colEnd - colStart);
+                if (brightness >= SHAPE_THRESHOLD) {
+                    int bit = y * glyphResolution + x;
+                    mask[bit >>> 6] |= 1L << (bit & 63);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Calculates the average brightness of a rectangular sub-image of the padded image. The part of the
+     * sub-image inside the source image is summed by the source, and the rest counts as white padding.
+     *
+     * @param source         The grey shades of the image.
+     * @param grid           The grid of the sub-image, which gives the padding of the image.
+     * @param top            The first pixel row of the sub-image, in padded coordinates.
+     * @param left           The first pixel column of the sub-image, in padded coordinates.
+     * @param subImageHeight The height of the sub-image in pixels.
+     * @param subImageWidth  The width of the sub-image in pixels.
+     * @return The average brightness value of the sub-image.
+     */
+    private static double averageOfImageBrightness(GreyShadeSource source, SubImageGrid grid, int top, int left,
+                                                   int subImageHeight, int subImageWidth) {
+        long pixels = (long) subImageHeight * subImageWidth;
+        return (sumOfImageGreyShades(source, grid, top, left, subImageHeight, subImageWidth) /
+                (pixels * MAX_RGB));
+    }
+
+    /**
+     * Sums the grey shades of a rectangular sub-image of the padded image. The part of the sub-image inside
+     * the source image is summed by the source, and every padding pixel adds the shade of white.
+     *
+     * @param source         The grey shades of the image.
+     * @param grid           The grid of the sub-image, which gives the padding of the image.
+     * @param top            The first pixel row of the sub-image, in padded coordinates.
+     * @param left           The first pixel column of the sub-image, in padded coordinates.
+     * @param subImageHeight The height of the sub-image in pixels.
+     * @param subImageWidth  The width of the sub-image in pixels.
+     * @return The sum of the grey shades of the sub-image.
+     */
+    private static double sumOfImageGreyShades(GreyShadeSource source, SubImageGrid grid, int top, int left,
+                                               int subImageHeight, int subImageWidth) {
+        int topPadding = grid.getTopPadding();
+        int leftPadding = grid.getLeftPadding();
+        int rowStart = Math.max(top - topPadding, 0);
+        int rowEnd = Math.min(top + subImageHeight - topPadding, source.getHeight());
+        int colStart = Math.max(left - leftPadding, 0);
+        int colEnd = Math.min(left + subImageWidth - leftPadding, source.getWidth());
+        double sumOfGreyShades = 0;
+        long pixelsInSource = 0;
+        if (rowEnd > rowStart && colEnd > colStart) {
+            sumOfGreyShades = source.sumOfGreyShades(rowStart, colStart, rowEnd - rowStart, colEnd - colStart);
+            pixelsInSource = (long) (rowEnd - rowStart) * (colEnd - colStart);
         }
-        return (sumOfGreyShades / (image.getHeight() * image.getWidth() * MAX_RGB));
+        long pixels = (long) subImageHeight * subImageWidth;
+        return sumOfGreyShades + (pixels - pixelsInSource) * MAX_RGB;
     }
 
 }
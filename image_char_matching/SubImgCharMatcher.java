@@ -23,6 +23,20 @@ public class SubImgCharMatcher {
      * A TreeMap storing the mapping between normalized brightness values and characters.
      */
     private final TreeMap<Double, String> charToBrightnessNormal;
+    /**
+     * A TreeMap storing the bit-packed glyph mask of every character, ordered by character so that ties
+     * in shape matching resolve to the minimal ASCII value.
+     */
+    private final TreeMap<Character, long[]> charToMask;
+    /**
+     * Snapshot of the current mapping from brightness values to characters, built on demand and dropped
+     * whenever the character set changes.
+     */
+    private BrightnessCharMapping charMapping;
+    /**
+     * Whether the character set is fixed, as in a compiled charset profile shared between renders.
+     */
+    private boolean immutable;
     /**
      * Constructs a SubImgCharMatcher object with an initial character set.
      *
@@ -31,16 +45,42 @@ public class SubImgCharMatcher {
     public SubImgCharMatcher (char[] charset){
         charToBrightness = new TreeMap<>();
         charToBrightnessNormal = new TreeMap<>();
+        charToMask = new TreeMap<>();
         findBrightnessOfCharset(charset);
         normalizeBrightnessOfChars();
     }
 
 
+    /**
+     * Compiles a fixed character set into an immutable matcher: the glyphs are rendered, their brightness
+     * normalized and the brightness to character mapping built once, after which the matcher may be shared
+     * by any number of renders and threads.
+     *
+     * @param charset An array of characters representing the character set.
+     * @return The immutable matcher.
+     */
+    public static SubImgCharMatcher compile(char[] charset) {
+        SubImgCharMatcher subImgCharMatcher = new SubImgCharMatcher(charset);
+        subImgCharMatcher.getCharMapping();
+        subImgCharMatcher.immutable = true;
+        return subImgCharMatcher;
+    }
+
+    /**
+     * Checks whether the character set of the matcher is fixed.
+     *
+     * @return true if the matcher was compiled and rejects edits, false otherwise.
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
     /**
      * Normalizes the brightness values of characters.
      */
     private void normalizeBrightnessOfChars(){
         charToBrightnessNormal.clear();
+        charMapping = null;
         if(charToBrightness.isEmpty()){
             return;
         }
@@ -70,7 +110,38 @@ public class SubImgCharMatcher {
      * @return The brightness value of the character.
      */
     private double findCharBrightness(char c) {
-        boolean[][] charBooleanImage = CharConverter.convertToBoolArray(c);
+        // Use the bundled precomputed table when it covers the character, to avoid AWT font rendering
+        GlyphTable glyphTable = GlyphTable.getDefault();
+        if (glyphTable.covers(CharConverter.DEFAULT_FONT_NAME, CharConverter.DEFAULT_PIXEL_RESOLUTION, c)) {
+            return glyphTable.brightness(CharConverter.DEFAULT_FONT_NAME,
+                    CharConverter.DEFAULT_PIXEL_RESOLUTION, c);
+        }
+        return brightnessOfCharImage(CharConverter.convertToBoolArray(c));
+    }
+
+    /**
+     * Finds the binary image of a single character, from the precomputed table if it holds the glyph's
+     * bitmap, or by rendering it otherwise.
+     *
+     * @param c The input character.
+     * @return The boolean image of the character.
+     */
+    private boolean[][] findCharImage(char c) {
+        boolean[][] bitmap = GlyphTable.getDefault().bitmap(CharConverter.DEFAULT_FONT_NAME,
+                CharConverter.DEFAULT_PIXEL_RESOLUTION, c);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        return CharConverter.convertToBoolArray(c);
+    }
+
+    /**
+     * Calculates the brightness of a binary character image, i.e. its fraction of white pixels.
+     *
+     * @param charBooleanImage The boolean image of the character.
+     * @return The brightness value of the character.
+     */
+    private static double brightnessOfCharImage(boolean[][] charBooleanImage) {
         int counterWhites = 0;
         for (boolean[] booleans : charBooleanImage) {
             for (int j = 0; j < charBooleanImage[0].length; j++) {
@@ -82,6 +153,31 @@ public class SubImgCharMatcher {
         return (double) counterWhites / (double)(charBooleanImage.length*charBooleanImage[0].length);
     }
 
+    /**
+     * Retrieves the character whose glyph is closest in shape to the given sub-image mask, i.e. the one
+     * with the fewest differing pixels. Ties are resolved to the minimal ASCII value.
+     *
+     * @param subImageMask The thresholded sub-image, packed with CharConverter.packBits at the default
+     *                     pixel resolution.
+     * @return The character whose glyph best matches the mask.
+     */
+    public char getCharByShape(long[] subImageMask) {
+        char bestChar = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Map.Entry<Character, long[]> entry : charToMask.entrySet()) {
+            long[] charMask = entry.getValue();
+            int distance = 0;
+            for (int i = 0; i < charMask.length; i++) {
+                distance += Long.bitCount(charMask[i] ^ subImageMask[i]);
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestChar = entry.getKey();
+            }
+        }
+        return bestChar;
+    }
+
     /**
      * Retrieves the character associated with a given brightness value.
      *
@@ -98,6 +194,16 @@ public class SubImgCharMatcher {
         }else {
             chars = charToBrightnessNormal.get(charToBrightnessNormal.ceilingKey(brightness));
         }
+        return minimalAscii(chars);
+    }
+
+    /**
+     * Finds the character with the minimal ASCII value among characters of equal brightness.
+     *
+     * @param chars The characters of equal brightness.
+     * @return The character with the minimal ASCII value.
+     */
+    private static char minimalAscii(String chars) {
         if(chars.length() == 1){
             return chars.charAt(0);
         }
@@ -111,12 +217,47 @@ public class SubImgCharMatcher {
         return minimalAscii;
     }
 
+    /**
+     * Gets a snapshot of the current mapping from brightness values to characters. The same snapshot is
+     * returned until the character set changes, and comparing it with an earlier one gives the brightness
+     * intervals whose character was changed by the edits in between.
+     *
+     * @return The current brightness to character mapping.
+     */
+    public BrightnessCharMapping getCharMapping() {
+        if (charMapping == null) {
+            double[] brightnesses = new double[charToBrightnessNormal.size()];
+            char[] chars = new char[brightnesses.length];
+            int i = 0;
+            for (Map.Entry<Double, String> entry : charToBrightnessNormal.entrySet()) {
+                brightnesses[i] = entry.getKey();
+                chars[i] = minimalAscii(entry.getValue());
+                i++;
+            }
+            charMapping = new BrightnessCharMapping(brightnesses, chars);
+        }
+        return charMapping;
+    }
+
+    /**
+     * Finds the brightness intervals whose character changed since an earlier snapshot of the mapping,
+     * i.e. the only brightness values whose sub-images need to be matched again after the edits.
+     *
+     * @param previous The earlier snapshot, from getCharMapping, or null if there is none.
+     * @return The changed intervals, each as {from, to}, in increasing order.
+     */
+    public double[][] changedBrightnessIntervals(BrightnessCharMapping previous) {
+        return getCharMapping().changedIntervals(previous);
+    }
+
     /**
      * Adds a character to the character set and updates the brightness values.
      *
      * @param c The character to be added.
+     * @throws UnsupportedOperationException If the matcher is immutable.
      */
     public void addChar (char c){
+        checkMutable();
         addCharCommonCode(c);
         normalizeBrightnessOfChars();
     }
@@ -127,7 +268,10 @@ public class SubImgCharMatcher {
      * @param c The character to be added.
      */
     private void addCharCommonCode(char c){
-        double charBrightness = findCharBrightness(c);
+        // Render (or look up) the glyph once, and derive both its brightness and its shape mask
+        boolean[][] charImage = findCharImage(c);
+        charToMask.put(c, CharConverter.packBits(charImage));
+        double charBrightness = brightnessOfCharImage(charImage);
         if(charToBrightness.containsKey(charBrightness)){
             charToBrightness.put(charBrightness, charToBrightness.get(charBrightness) + c);
         }
@@ -140,8 +284,11 @@ public class SubImgCharMatcher {
      * Removes a character from the character set and updates the brightness values.
      *
      * @param c The character to be removed.
+     * @throws UnsupportedOperationException If the matcher is immutable.
      */
     public void removeChar (char c){
+        checkMutable();
+        charToMask.remove(c);
         double charBrightness = findCharBrightness(c);
         String charsWithSameBrightness = charToBrightness.get(charBrightness);
         if(charsWithSameBrightness == null){
@@ -159,4 +306,15 @@ public class SubImgCharMatcher {
         }
         normalizeBrightnessOfChars();
     }
+
+    /**
+     * Rejects edits of an immutable matcher.
+     *
+     * @throws UnsupportedOperationException If the matcher is immutable.
+     */
+    private void checkMutable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("The character set of a compiled matcher is fixed");
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package image_char_matching;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * The VectorSupport class detects whether the vectorized luminance sum can be used. It is enabled only when
+ * the jdk.incubator.vector module is present, VectorLuminanceSum (compiled from the optional source root
+ * "vector", and only referenced by name) loads, and its result on a random region equals that of the scalar
+ * fixed-point kernel; otherwise LuminanceKernel.VECTOR falls back to scalar code.
+ */
+class VectorSupport {
+    /**
+     * Name of the Vector API module.
+     */
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    /**
+     * Name of the class implementing the vectorized sum.
+     */
+    private static final String VECTOR_CLASS = "image_char_matching.VectorLuminanceSum";
+    /**
+     * Width and height of the region used to check the vectorized sum against the scalar one.
+     */
+    private static final int CHECK_SIZE = 67;
+    /**
+     * Seed of the check region.
+     */
+    private static final long CHECK_SEED = 7;
+
+    /**
+     * The vectorized sum, or null if it is unavailable.
+     */
+    private static final FixedPointLuminanceSum VECTOR_SUM = loadVectorSum();
+
+    /**
+     * Private default constructor to prevent instantiation of the class.
+     */
+    private VectorSupport() {
+    }
+
+    /**
+     * Returns the vectorized sum.
+     *
+     * @return The vectorized sum, or null if the Vector API is unavailable on this JVM.
+     */
+    static FixedPointLuminanceSum vectorSum() {
+        return VECTOR_SUM;
+    }
+
+    /**
+     * Loads the vectorized sum and checks it against the scalar fixed-point kernel.
+     *
+     * @return The vectorized sum, or null if it is unavailable or disagrees with the scalar kernel.
+     */
+    private static FixedPointLuminanceSum loadVectorSum() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        FixedPointLuminanceSum vectorSum;
+        try {
+            vectorSum = (FixedPointLuminanceSum) Class.forName(VECTOR_CLASS).getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            Logger.getGlobal().warning("Vector API present but vectorized luminance sum failed to load");
+            return null;
+        }
+        // Odd sizes and offsets exercise both the vector loop and the scalar tail of every row
+        int[] pixels = new int[CHECK_SIZE * CHECK_SIZE];
+        Random random = new Random(CHECK_SEED);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        int regionSize = CHECK_SIZE - 2;
+        long expected = 0;
+        for (int row = 1; row <= regionSize; row++) {
+            for (int col = 1; col <= regionSize; col++) {
+                expected += LuminanceKernel.fixedPointGreyShade(pixels[row * CHECK_SIZE + col]);
+            }
+        }
+        if (vectorSum.fixedPointSum(pixels, CHECK_SIZE, 1, 1, regionSize, regionSize) != expected) {
+            Logger.getGlobal().warning("Vectorized luminance sum disagrees with scalar kernel, disabled");
+            return null;
+        }
+        return vectorSum;
+    }
+}
@@ -0,0 +1,83 @@
+package image_char_matching;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vectorized implementation of FixedPointLuminanceSum with the Java Vector API.
+ * Each vector lane sums the raw red, green and blue channel values of its pixels; the channel sums are
+ * weighted only once per region, which gives exactly the result of the scalar fixed-point kernel.
+ * This class lives in the optional source root "vector" and must be compiled and run with
+ * {@code --add-modules jdk.incubator.vector}; it is only loaded by reflection through VectorSupport, which falls
+ * back to the scalar kernel when the module or the class is missing.
+ */
+class VectorLuminanceSum implements FixedPointLuminanceSum {
+    /**
+     * The widest integer vector shape supported by the CPU.
+     */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    /**
+     * Mask of a single color channel.
+     */
+    private static final int CHANNEL_MASK = 0xFF;
+    /**
+     * Number of pixels that may be summed into the int lanes before they could overflow when reduced
+     * (255 * 8,000,000 is below Integer.MAX_VALUE).
+     */
+    private static final int PIXELS_PER_FLUSH = 8_000_000;
+
+    /**
+     * Sums the fixed-point grey shades of a rectangular region of a packed RGB pixel array.
+     *
+     * @param pixels The packed RGB pixels, row by row.
+     * @param stride The number of pixels per row of the array.
+     * @param top    The first row of the region.
+     * @param left   The first column of the region.
+     * @param height The number of rows in the region.
+     * @param width  The number of columns in the region.
+     * @return The sum of the grey shades of the region, in 16 fractional bits on a 0 to 255 scale.
+     */
+    @Override
+    public long fixedPointSum(int[] pixels, int stride, int top, int left, int height, int width) {
+        long sumOfRed = 0;
+        long sumOfGreen = 0;
+        long sumOfBlue = 0;
+        IntVector red = IntVector.zero(SPECIES);
+        IntVector green = IntVector.zero(SPECIES);
+        IntVector blue = IntVector.zero(SPECIES);
+        int pixelsInLanes = 0;
+        int vectorWidth = SPECIES.loopBound(width);
+        for (int row = top; row < top + height; row++) {
+            int offset = row * stride + left;
+            for (int col = 0; col < vectorWidth; col += SPECIES.length()) {
+                IntVector rgb = IntVector.fromArray(SPECIES, pixels, offset + col);
+                red = red.add(rgb.lanewise(VectorOperators.LSHR, 16).and(CHANNEL_MASK));
+                green = green.add(rgb.lanewise(VectorOperators.LSHR, 8).and(CHANNEL_MASK));
+                blue = blue.add(rgb.and(CHANNEL_MASK));
+            }
+            // Remaining pixels of the row that do not fill a whole vector
+            for (int col = vectorWidth; col < width; col++) {
+                int rgb = pixels[offset + col];
+                sumOfRed += (rgb >> 16) & CHANNEL_MASK;
+                sumOfGreen += (rgb >> 8) & CHANNEL_MASK;
+                sumOfBlue += rgb & CHANNEL_MASK;
+            }
+            pixelsInLanes += vectorWidth;
+            if (pixelsInLanes >= PIXELS_PER_FLUSH - width) {
+                sumOfRed += red.reduceLanes(VectorOperators.ADD);
+                sumOfGreen += green.reduceLanes(VectorOperators.ADD);
+                sumOfBlue += blue.reduceLanes(VectorOperators.ADD);
+                red = IntVector.zero(SPECIES);
+                green = IntVector.zero(SPECIES);
+                blue = IntVector.zero(SPECIES);
+                pixelsInLanes = 0;
+            }
+        }
+        sumOfRed += red.reduceLanes(VectorOperators.ADD);
+        sumOfGreen += green.reduceLanes(VectorOperators.ADD);
+        sumOfBlue += blue.reduceLanes(VectorOperators.ADD);
+        return sumOfRed * LuminanceKernel.FIXED_RED_WEIGHT + sumOfGreen * LuminanceKernel.FIXED_GREEN_WEIGHT +
+                sumOfBlue * LuminanceKernel.FIXED_BLUE_WEIGHT;
+    }
+}